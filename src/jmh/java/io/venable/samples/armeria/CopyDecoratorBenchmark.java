@@ -0,0 +1,70 @@
+package io.venable.samples.armeria;
+
+import com.linecorp.armeria.common.AggregatedHttpResponse;
+import com.linecorp.armeria.common.HttpMethod;
+import com.linecorp.armeria.common.HttpRequest;
+import com.linecorp.armeria.common.HttpResponse;
+import com.linecorp.armeria.common.HttpStatus;
+import com.linecorp.armeria.common.MediaType;
+import com.linecorp.armeria.server.HttpService;
+import com.linecorp.armeria.server.ServiceRequestContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link CopyDecorator} in isolation, using a test {@link ServiceRequestContext}
+ * and a wrapped service which only drains the request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CopyDecoratorBenchmark {
+
+    @Param({"64", "4096", "65536"})
+    private int payloadSize;
+
+    private byte[] payload;
+    private HttpService drainingService;
+    private HttpService decoratedService;
+
+    @Setup
+    public void setUp() {
+        payload = new byte[payloadSize];
+        new Random(42).nextBytes(payload);
+
+        drainingService = (ctx, req) -> HttpResponse.of(req.aggregate().thenApply(aggregated ->
+                HttpResponse.of(HttpStatus.OK)));
+        decoratedService = drainingService.decorate(CopyDecorator.newDecorator());
+    }
+
+    @Benchmark
+    public AggregatedHttpResponse undecorated() throws Exception {
+        return serve(drainingService);
+    }
+
+    @Benchmark
+    public AggregatedHttpResponse decorated() throws Exception {
+        return serve(decoratedService);
+    }
+
+    private AggregatedHttpResponse serve(final HttpService service) throws Exception {
+        final HttpRequest req = HttpRequest.of(HttpMethod.POST, "/echo", MediaType.OCTET_STREAM, payload);
+        final ServiceRequestContext ctx = ServiceRequestContext.of(req);
+        return service.serve(ctx, req).aggregate().join();
+    }
+}
@@ -0,0 +1,128 @@
+package io.venable.samples.armeria.http;
+
+import com.linecorp.armeria.client.WebClient;
+import com.linecorp.armeria.common.AggregatedHttpResponse;
+import com.linecorp.armeria.common.HttpData;
+import com.linecorp.armeria.common.HttpHeaderNames;
+import com.linecorp.armeria.common.HttpMethod;
+import com.linecorp.armeria.common.HttpRequest;
+import com.linecorp.armeria.common.MediaType;
+import com.linecorp.armeria.common.RequestHeaders;
+import com.linecorp.armeria.common.stream.StreamMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the records per second echoed by one {@code POST /echo} per record with those echoed by
+ * {@code POST /echo/batch}, against an in-process {@link SampleHttpServer}. Every invocation echoes
+ * {@value #RECORDS} records; the single requests are all sent at once over one HTTP/2 connection, and the
+ * batches are uploaded in chunks which do not line up with the records.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@OperationsPerInvocation(EchoBatchBenchmark.RECORDS)
+public class EchoBatchBenchmark {
+    static final int RECORDS = 1000;
+    private static final int CHUNK_SIZE = 8192;
+
+    @Param({"64", "512"})
+    private int recordSize;
+
+    private SampleHttpServer server;
+    private WebClient webClient;
+    private byte[][] records;
+    private HttpData[] lineChunks;
+    private HttpData[] lengthPrefixedChunks;
+
+    @Setup
+    public void setUp() {
+        final Random random = new Random(42);
+        records = new byte[RECORDS][];
+        final ByteBuffer lines = ByteBuffer.allocate(RECORDS * (recordSize + 1));
+        final ByteBuffer lengthPrefixed = ByteBuffer.allocate(RECORDS * (Integer.BYTES + recordSize));
+        for (int i = 0; i < RECORDS; i++) {
+            records[i] = record(random, recordSize);
+            lines.put(records[i]).put((byte) '\n');
+            lengthPrefixed.putInt(recordSize).put(records[i]);
+        }
+        lineChunks = chunks(lines.array());
+        lengthPrefixedChunks = chunks(lengthPrefixed.array());
+
+        server = SampleHttpServer.createServer();
+        webClient = WebClient.builder("http://127.0.0.1:8080").maxResponseLength(0).build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.shutdown().join();
+    }
+
+    @Benchmark
+    public void singleRequests() {
+        final CompletableFuture<?>[] responses = new CompletableFuture<?>[RECORDS];
+        for (int i = 0; i < RECORDS; i++) {
+            responses[i] = webClient.execute(HttpRequest.of(HttpMethod.POST, "/echo", MediaType.JSON, records[i]))
+                                    .aggregate();
+        }
+        CompletableFuture.allOf(responses).join();
+    }
+
+    @Benchmark
+    public AggregatedHttpResponse batchOfLines() {
+        return batch(MediaType.JSON_LINES, lineChunks);
+    }
+
+    @Benchmark
+    public AggregatedHttpResponse batchOfLengthPrefixedRecords() {
+        return batch(MediaType.OCTET_STREAM, lengthPrefixedChunks);
+    }
+
+    private AggregatedHttpResponse batch(final MediaType contentType, final HttpData[] chunks) {
+        return webClient.execute(HttpRequest.of(
+                RequestHeaders.of(HttpMethod.POST, "/echo/batch", HttpHeaderNames.CONTENT_TYPE, contentType),
+                StreamMessage.of(chunks))).aggregate().join();
+    }
+
+    /**
+     * Builds a JSON object of exactly {@code size} bytes, without a newline.
+     */
+    private static byte[] record(final Random random, final int size) {
+        final StringBuilder json = new StringBuilder(size);
+        json.append("{\"id\":").append(random.nextInt(1_000_000)).append(",\"token\":\"");
+        while (json.length() < size - 2) {
+            json.append(Character.forDigit(random.nextInt(16), 16));
+        }
+        return json.append("\"}").toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static HttpData[] chunks(final byte[] body) {
+        final HttpData[] chunks = new HttpData[(body.length + CHUNK_SIZE - 1) / CHUNK_SIZE];
+        for (int i = 0; i < chunks.length; i++) {
+            final int offset = i * CHUNK_SIZE;
+            chunks[i] = HttpData.wrap(Arrays.copyOfRange(body, offset, Math.min(body.length, offset + CHUNK_SIZE)));
+        }
+        return chunks;
+    }
+}
@@ -0,0 +1,60 @@
+package io.venable.samples.armeria.http;
+
+import com.linecorp.armeria.common.AggregatedHttpRequest;
+import com.linecorp.armeria.common.AggregatedHttpResponse;
+import com.linecorp.armeria.common.HttpMethod;
+import com.linecorp.armeria.common.HttpRequest;
+import com.linecorp.armeria.common.MediaType;
+import com.linecorp.armeria.server.ServiceRequestContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures both {@link EchoService} modes at several payload sizes, without a server.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EchoServiceBenchmark {
+
+    @Param({"64", "4096", "65536", "1048576"})
+    private int payloadSize;
+
+    private final EchoService echoService = new EchoService();
+    private byte[] payload;
+
+    @Setup
+    public void setUp() {
+        payload = new byte[payloadSize];
+        new Random(42).nextBytes(payload);
+    }
+
+    @Benchmark
+    public AggregatedHttpResponse aggregated() {
+        final AggregatedHttpRequest req =
+                AggregatedHttpRequest.of(HttpMethod.POST, "/echo", MediaType.OCTET_STREAM, payload);
+        return echoService.doPost(req).aggregate().join();
+    }
+
+    @Benchmark
+    public AggregatedHttpResponse streaming() {
+        final HttpRequest req = HttpRequest.of(HttpMethod.POST, "/echo/stream", MediaType.OCTET_STREAM, payload);
+        final ServiceRequestContext ctx = ServiceRequestContext.of(req);
+        return echoService.stream(ctx, req).aggregate().join();
+    }
+}
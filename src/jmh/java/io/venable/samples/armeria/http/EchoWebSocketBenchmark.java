@@ -0,0 +1,137 @@
+package io.venable.samples.armeria.http;
+
+import com.linecorp.armeria.client.WebClient;
+import com.linecorp.armeria.client.websocket.WebSocketClient;
+import com.linecorp.armeria.client.websocket.WebSocketSession;
+import com.linecorp.armeria.common.AggregatedHttpResponse;
+import com.linecorp.armeria.common.websocket.WebSocketFrame;
+import com.linecorp.armeria.common.websocket.WebSocketWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.Properties;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares echoing a message over one {@code /echo/ws} WebSocket connection with echoing it by
+ * {@code POST /echo}, against an in-process {@link SampleHttpServer} without a message rate limit.
+ * The round trip benchmarks send one message at a time, which gives the latency per message; the window
+ * benchmarks keep {@value #WINDOW} messages in flight, which gives the messages per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EchoWebSocketBenchmark {
+    static final int WINDOW = 64;
+
+    @Param({"64", "4096"})
+    private int payloadSize;
+
+    private SampleHttpServer server;
+    private WebClient webClient;
+    private WebSocketWriter outbound;
+    private final Queue<CompletableFuture<Void>> pendingEchoes = new ConcurrentLinkedQueue<>();
+    private byte[] payload;
+
+    @Setup
+    public void setUp() {
+        payload = new byte[payloadSize];
+        new Random(42).nextBytes(payload);
+
+        final Properties properties = new Properties();
+        properties.setProperty("sample.server.metricsPort", "0");
+        properties.setProperty("sample.server.echo.webSocket.messagesPerSecond", "0");
+        server = SampleHttpServer.createServer(ServerSettings.of(properties));
+        webClient = WebClient.of("http://127.0.0.1:8080");
+
+        final WebSocketSession session = WebSocketClient.of("ws://127.0.0.1:8080").connect("/echo/ws").join();
+        outbound = session.outbound();
+        // Echoes arrive in the order the messages were sent.
+        session.inbound().subscribe(new Subscriber<WebSocketFrame>() {
+            @Override
+            public void onSubscribe(final Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(final WebSocketFrame frame) {
+                final CompletableFuture<Void> echo = pendingEchoes.poll();
+                if (echo != null) {
+                    echo.complete(null);
+                }
+            }
+
+            @Override
+            public void onError(final Throwable cause) {
+                pendingEchoes.forEach(echo -> echo.completeExceptionally(cause));
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+    }
+
+    @TearDown
+    public void tearDown() {
+        outbound.close();
+        server.shutdown().join();
+    }
+
+    @Benchmark
+    public void webSocketRoundTrip() {
+        send().join();
+    }
+
+    @Benchmark
+    public AggregatedHttpResponse httpPostRoundTrip() {
+        return webClient.post("/echo", payload).aggregate().join();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WINDOW)
+    public void webSocketWindow() {
+        CompletableFuture<Void> last = null;
+        for (int i = 0; i < WINDOW; i++) {
+            last = send();
+        }
+        last.join();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WINDOW)
+    public void httpPostWindow() {
+        final CompletableFuture<?>[] responses = new CompletableFuture<?>[WINDOW];
+        for (int i = 0; i < WINDOW; i++) {
+            responses[i] = webClient.post("/echo", payload).aggregate();
+        }
+        CompletableFuture.allOf(responses).join();
+    }
+
+    private CompletableFuture<Void> send() {
+        final CompletableFuture<Void> echo = new CompletableFuture<>();
+        pendingEchoes.add(echo);
+        outbound.write(payload);
+        return echo;
+    }
+}
@@ -0,0 +1,68 @@
+package io.venable.samples.armeria.http;
+
+import com.linecorp.armeria.client.WebClient;
+import com.linecorp.armeria.common.AggregatedHttpResponse;
+import com.linecorp.armeria.common.MediaType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures full request round trips against an in-process {@link SampleHttpServer}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SampleHttpServerBenchmark {
+
+    @Param({"64", "65536"})
+    private int payloadSize;
+
+    private SampleHttpServer server;
+    private WebClient webClient;
+    private byte[] payload;
+
+    @Setup
+    public void setUp() {
+        payload = new byte[payloadSize];
+        new Random(42).nextBytes(payload);
+
+        server = SampleHttpServer.createServer();
+        webClient = WebClient.of("http://127.0.0.1:8080");
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.shutdown().join();
+    }
+
+    @Benchmark
+    public AggregatedHttpResponse getRoot() {
+        return webClient.get("/").aggregate().join();
+    }
+
+    @Benchmark
+    public AggregatedHttpResponse postEcho() {
+        return webClient.post("/echo", payload).aggregate().join();
+    }
+
+    @Benchmark
+    public AggregatedHttpResponse postEchoStream() {
+        return webClient.post("/echo/stream", payload).aggregate().join();
+    }
+}
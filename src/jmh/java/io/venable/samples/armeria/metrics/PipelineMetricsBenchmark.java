@@ -0,0 +1,84 @@
+package io.venable.samples.armeria.metrics;
+
+import com.linecorp.armeria.common.AggregatedHttpResponse;
+import com.linecorp.armeria.common.HttpMethod;
+import com.linecorp.armeria.common.HttpRequest;
+import com.linecorp.armeria.common.HttpResponse;
+import com.linecorp.armeria.common.HttpStatus;
+import com.linecorp.armeria.common.MediaType;
+import com.linecorp.armeria.common.ResponseHeaders;
+import com.linecorp.armeria.common.logging.RequestLogBuilder;
+import com.linecorp.armeria.server.HttpService;
+import com.linecorp.armeria.server.ServiceRequestContext;
+import io.venable.samples.armeria.CopyDecorator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of the {@link PipelineMetrics} layer decorators around {@link CopyDecorator}, as the
+ * server wires them, against the same pipeline without metrics. The request log is completed in both,
+ * so the instrumented case includes recording into the histograms.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PipelineMetricsBenchmark {
+
+    @Param({"64", "4096"})
+    private int payloadSize;
+
+    private byte[] payload;
+    private HttpService plainService;
+    private HttpService instrumentedService;
+
+    @Setup
+    public void setUp() {
+        payload = new byte[payloadSize];
+        new Random(42).nextBytes(payload);
+
+        final HttpService drainingService = (ctx, req) -> HttpResponse.of(req.aggregate().thenApply(aggregated ->
+                HttpResponse.of(HttpStatus.OK)));
+        plainService = drainingService.decorate(CopyDecorator.newDecorator());
+
+        final PipelineMetrics metrics = new PipelineMetrics();
+        instrumentedService = drainingService.decorate(metrics.newDecorator(Layer.SERVICE))
+                .decorate(CopyDecorator.newDecorator())
+                .decorate(metrics.newDecorator(Layer.COPY_DECORATOR));
+    }
+
+    @Benchmark
+    public AggregatedHttpResponse plain() throws Exception {
+        return serve(plainService);
+    }
+
+    @Benchmark
+    public AggregatedHttpResponse instrumented() throws Exception {
+        return serve(instrumentedService);
+    }
+
+    private AggregatedHttpResponse serve(final HttpService service) throws Exception {
+        final HttpRequest req = HttpRequest.of(HttpMethod.POST, "/echo", MediaType.OCTET_STREAM, payload);
+        final ServiceRequestContext ctx = ServiceRequestContext.of(req);
+        final AggregatedHttpResponse response = service.serve(ctx, req).aggregate().join();
+        final RequestLogBuilder logBuilder = ctx.logBuilder();
+        logBuilder.endRequest();
+        logBuilder.responseHeaders(ResponseHeaders.of(response.status()));
+        logBuilder.endResponse();
+        return response;
+    }
+}
@@ -0,0 +1,97 @@
+package io.venable.samples.armeria.throttling;
+
+import com.linecorp.armeria.common.HttpRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link KeyedRateLimitingStrategy} with a map of buckets guarded by a single lock,
+ * with 32 threads acquiring permits for random keys.
+ * <p>
+ * Every key count stays below {@link KeyedRateLimitingStrategy#DEFAULT_MAX_KEYS}, so both limiters track
+ * every key and the benchmark measures the steady state of lookups and bucket updates. It does not measure
+ * the overflow path, where a full map rejects requests from new keys without creating a bucket.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(32)
+public class KeyedRateLimiterBenchmark {
+
+    private static final double PERMITS_PER_SECOND = 1_000;
+    private static final int BURST = 100;
+
+    @Param({"1", "1024", "524288"})
+    private int keyCount;
+
+    private String[] keys;
+    private KeyedRateLimitingStrategy<HttpRequest> lockFree;
+    private SynchronizedRateLimiter synchronizedBaseline;
+
+    @Setup
+    public void setUp() {
+        keys = new String[keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            keys[i] = "10.0." + (i >> 8) + '.' + (i & 0xff);
+        }
+        lockFree = KeyedRateLimitingStrategy.of(ctx -> "", PERMITS_PER_SECOND, BURST);
+        synchronizedBaseline = new SynchronizedRateLimiter(PERMITS_PER_SECOND, BURST);
+    }
+
+    @Benchmark
+    public boolean lockFree() {
+        return lockFree.tryAcquire(randomKey());
+    }
+
+    @Benchmark
+    public boolean synchronizedBaseline() {
+        return synchronizedBaseline.tryAcquire(randomKey());
+    }
+
+    private String randomKey() {
+        return keys[ThreadLocalRandom.current().nextInt(keyCount)];
+    }
+
+    /**
+     * The straightforward implementation: the same algorithm over a {@link HashMap} behind one lock.
+     */
+    private static class SynchronizedRateLimiter {
+        private final long emissionIntervalNanos;
+        private final long burstToleranceNanos;
+        private final Map<String, Long> theoreticalArrivalNanos = new HashMap<>();
+
+        SynchronizedRateLimiter(final double permitsPerSecond, final int burst) {
+            emissionIntervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+            burstToleranceNanos = emissionIntervalNanos * burst;
+        }
+
+        synchronized boolean tryAcquire(final String key) {
+            final long now = System.nanoTime();
+            final long current = theoreticalArrivalNanos.getOrDefault(key, now);
+            final long next = Math.max(current, now) + emissionIntervalNanos;
+            if (next - now > burstToleranceNanos) {
+                return false;
+            }
+            theoreticalArrivalNanos.put(key, next);
+            return true;
+        }
+    }
+}
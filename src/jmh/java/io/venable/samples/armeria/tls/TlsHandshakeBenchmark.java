@@ -0,0 +1,124 @@
+package io.venable.samples.armeria.tls;
+
+import com.linecorp.armeria.common.HttpResponse;
+import com.linecorp.armeria.common.util.TlsEngineType;
+import com.linecorp.armeria.server.Server;
+import com.linecorp.armeria.server.ServerBuilder;
+import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures handshakes per second against a server configured by {@link ServerTls}, with the test
+ * certificates. Every operation opens a connection, sends one HTTP/1.1 request and reads the response,
+ * so a TLS 1.3 client also receives its session ticket.
+ * <p>
+ * {@code fullHandshake} connects under a new peer name each time, so the client has no session to offer.
+ * {@code resumedHandshake} reconnects to the same peer, so the client offers its cached session or ticket.
+ * The JDK client runs in the same process, so its share of the handshake cost is included.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TlsHandshakeBenchmark {
+    private static final int PORT = 8447;
+    private static final String BODY = "Hello, Armeria!";
+    private static final byte[] REQUEST =
+            "GET / HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    @Param({"OPENSSL", "JDK"})
+    private TlsEngineType engine;
+
+    @Param({"TLSv1.2", "TLSv1.3"})
+    private String protocol;
+
+    private Server server;
+    private SSLContext fullContext;
+    private SSLContext resumingContext;
+    private long connections;
+
+    @Setup
+    public void setUp() throws Exception {
+        final ServerBuilder serverBuilder = Server.builder().https(PORT);
+        ServerTls.of(Paths.get("src/test/resources/cert.pem"), Paths.get("src/test/resources/key.pem"))
+                 .withEngineType(engine)
+                 .applyTo(serverBuilder);
+        server = serverBuilder.service("/", (ctx, req) -> HttpResponse.of(BODY)).build();
+        server.start().join();
+
+        fullContext = newClientContext();
+        fullContext.getClientSessionContext().setSessionCacheSize(1);
+        resumingContext = newClientContext();
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.stop().join();
+    }
+
+    @Benchmark
+    public int fullHandshake() throws IOException {
+        return exchange(fullContext, "peer-" + connections++);
+    }
+
+    @Benchmark
+    public int resumedHandshake() throws IOException {
+        return exchange(resumingContext, "localhost");
+    }
+
+    private int exchange(final SSLContext clientContext, final String peerName) throws IOException {
+        final Socket plainSocket = new Socket("127.0.0.1", PORT);
+        // Otherwise Nagle's algorithm and delayed acknowledgements add tens of milliseconds per exchange.
+        plainSocket.setTcpNoDelay(true);
+        try (SSLSocket socket = (SSLSocket) clientContext.getSocketFactory()
+                                                         .createSocket(plainSocket, peerName, PORT, true)) {
+            socket.setEnabledProtocols(new String[] { protocol });
+            final OutputStream out = socket.getOutputStream();
+            out.write(REQUEST);
+            out.flush();
+            final InputStream in = socket.getInputStream();
+            final StringBuilder response = new StringBuilder();
+            final byte[] buffer = new byte[1024];
+            int read;
+            // Stop at the end of the body rather than waiting for the server to close the connection.
+            while (!endsWith(response, BODY) && (read = in.read(buffer)) >= 0) {
+                response.append(new String(buffer, 0, read, StandardCharsets.US_ASCII));
+            }
+            return response.length();
+        }
+    }
+
+    private static boolean endsWith(final StringBuilder response, final String suffix) {
+        return response.length() >= suffix.length() &&
+               response.indexOf(suffix, response.length() - suffix.length()) >= 0;
+    }
+
+    private static SSLContext newClientContext() throws Exception {
+        final SSLContext clientContext = SSLContext.getInstance("TLS");
+        clientContext.init(null, InsecureTrustManagerFactory.INSTANCE.getTrustManagers(), null);
+        return clientContext;
+    }
+}
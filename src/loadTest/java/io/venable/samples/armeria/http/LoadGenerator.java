@@ -0,0 +1,381 @@
+package io.venable.samples.armeria.http;
+
+import com.linecorp.armeria.client.ClientFactory;
+import com.linecorp.armeria.client.ClientFactoryBuilder;
+import com.linecorp.armeria.client.Endpoint;
+import com.linecorp.armeria.client.WebClient;
+import com.linecorp.armeria.common.HttpMethod;
+import com.linecorp.armeria.common.HttpRequest;
+import com.linecorp.armeria.common.MediaType;
+import com.linecorp.armeria.common.SessionProtocol;
+import io.venable.samples.armeria.client.ClientProfile;
+import io.venable.samples.armeria.tls.ServerTls;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives an in-process {@link SampleHttpServer} at a fixed request rate and reports latency percentiles.
+ * <p>
+ * Requests are sent on a fixed schedule no matter how quickly responses arrive (an open model).
+ * Latency is measured from the time each request was scheduled to be sent, so a stalled server
+ * cannot hide behind a generator that slows down with it (coordinated omission).
+ * <p>
+ * Run with:
+ * <pre>
+ * gradle loadTest -PloadTestArgs="--protocol=h2c --rate=2000 --duration=30 --path=/echo --payload=1024"
+ * </pre>
+ * Protocols are {@code h1c}, {@code h2c}, {@code h1} and {@code h2}. The TLS protocols use the test
+ * certificates in {@code src/test/resources}. With {@code --maxP99Millis}, the process exits with a
+ * non-zero status when the p99 latency is above the limit, any request failed, or any request was
+ * dropped because {@code --maxOutstanding} requests were already in flight. Dropped requests are not in the
+ * latency histogram, so a run which dropped any cannot pass on its p99 alone.
+ * <p>
+ * {@code --blockingExecution=virtual} runs the blocking echo service on virtual threads instead of the
+ * shared platform pool, and so does the load test's own {@link SlowEchoService}, which holds its thread for
+ * its {@code delayMillis} query parameter. Combined with it, thousands of requests are in flight at once:
+ * <pre>
+ * gradle loadTest -PloadTestJavaHome=/path/to/jdk21 \
+ *     -PloadTestArgs="--blockingExecution=virtual --rate=5000 --path=/slow-echo?delayMillis=500 --payload=64"
+ * </pre>
+ * The report includes the peak number of live threads and the heap in use at the end of the run.
+ * <p>
+ * {@code --backgroundPath}, {@code --backgroundRate} and {@code --backgroundPayload} drive a second route
+ * at the same time, with its own schedule and report, to see whether one route slows down another:
+ * <pre>
+ * gradle loadTest -PloadTestArgs="--path=/ --rate=500 --backgroundPath=/echo --backgroundRate=2000 --backgroundPayload=65536"
+ * </pre>
+ * The limit of {@code --maxP99Millis} applies to the main route only.
+ */
+public class LoadGenerator {
+    private static final Logger log = LoggerFactory.getLogger(LoadGenerator.class);
+
+    private static final File CERTIFICATE = new File("src/test/resources/cert.pem");
+    private static final File KEY = new File("src/test/resources/key.pem");
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final Options options;
+    private final WebClient webClient;
+    private final byte[] payload;
+
+    private final Histogram histogram = new ConcurrentHistogram(HIGHEST_TRACKABLE_NANOS, 3);
+    private final AtomicLong outstanding = new AtomicLong();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    LoadGenerator(final Options options, final WebClient webClient) {
+        this.options = options;
+        this.webClient = webClient;
+        payload = new byte[options.payload];
+        new Random(42).nextBytes(payload);
+    }
+
+    public static void main(final String[] args) {
+        final Options options = Options.parse(args);
+        final SessionProtocol protocol = options.protocol;
+
+        final SampleHttpServer server = SampleHttpServer.createServer(serverBuilder -> {
+            if (protocol.isTls()) {
+                serverBuilder.https(0);
+                ServerTls.of(CERTIFICATE.toPath(), KEY.toPath()).applyTo(serverBuilder);
+            } else {
+                serverBuilder.http(0);
+            }
+            SlowEchoService.bind(serverBuilder, options.blockingExecution);
+        }, options.blockingExecution);
+        final ClientFactory clientFactory = newClientFactory();
+        // The background load comes from a client of its own, with connections of its own.
+        final ClientFactory backgroundClientFactory = newClientFactory();
+
+        int status = 0;
+        try {
+            final int port = server.activeLocalPort(protocol.isTls() ? SessionProtocol.HTTPS : SessionProtocol.HTTP);
+            final WebClient webClient = newWebClient(protocol, port, clientFactory);
+
+            final Options backgroundOptions = options.background();
+            CompletableFuture<Report> backgroundReport = null;
+            if (backgroundOptions != null) {
+                final CompletableFuture<Report> future = new CompletableFuture<>();
+                new Thread(() -> {
+                    try {
+                        future.complete(new LoadGenerator(backgroundOptions,
+                                newWebClient(protocol, port, backgroundClientFactory)).run());
+                    } catch (Throwable t) {
+                        future.completeExceptionally(t);
+                    }
+                }, "load-generator-background").start();
+                backgroundReport = future;
+            }
+            final Report report = new LoadGenerator(options, webClient).run();
+            if (backgroundReport != null) {
+                log.info("Background:");
+                backgroundReport.get().log(backgroundOptions);
+                log.info("Main:");
+            }
+            report.log(options);
+            if (options.maxP99Millis > 0 &&
+                (report.p99Millis() > options.maxP99Millis || report.errors > 0 || report.dropped > 0)) {
+                log.error("Load test failed: p99 {} ms (limit {} ms), {} errors, {} dropped",
+                        report.p99Millis(), options.maxP99Millis, report.errors, report.dropped);
+                status = 1;
+            }
+        } catch (ExecutionException e) {
+            log.error("Background load failed", e.getCause());
+            status = 1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            status = 1;
+        } finally {
+            clientFactory.close();
+            backgroundClientFactory.close();
+            server.shutdown().join();
+        }
+        System.exit(status);
+    }
+
+    private static ClientFactory newClientFactory() {
+        final ClientFactoryBuilder clientFactoryBuilder = ClientFactory.builder()
+                .tlsCustomizer(sslContextBuilder -> sslContextBuilder.trustManager(CERTIFICATE));
+        ClientProfile.of().applyTo(clientFactoryBuilder);
+        return clientFactoryBuilder.build();
+    }
+
+    private static WebClient newWebClient(final SessionProtocol protocol, final int port,
+                                          final ClientFactory clientFactory) {
+        return WebClient.builder(protocol, Endpoint.of("localhost", port))
+                .factory(clientFactory)
+                .responseTimeout(Duration.ofSeconds(10))
+                .maxResponseLength(0)
+                .build();
+    }
+
+    Report run() {
+        if (options.warmupSeconds > 0) {
+            log.info("Warming up for {} seconds", options.warmupSeconds);
+            drive(TimeUnit.SECONDS.toNanos(options.warmupSeconds));
+            reset();
+        }
+        final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        threadMXBean.resetPeakThreadCount();
+
+        log.info("Running {} {} at {} req/s for {} seconds",
+                options.protocol.uriText(), options.path, options.rate, options.durationSeconds);
+        final long start = System.nanoTime();
+        final long sent = drive(TimeUnit.SECONDS.toNanos(options.durationSeconds));
+        final long elapsedNanos = System.nanoTime() - start;
+
+        final long heapUsedBytes = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+
+        return new Report(histogram.copy(), sent, completed.sum(), errors.sum(), dropped.sum(), elapsedNanos,
+                threadMXBean.getPeakThreadCount(), heapUsedBytes);
+    }
+
+    /**
+     * Sends requests on a fixed schedule for the given duration and waits for the outstanding ones.
+     *
+     * @return the number of requests that were scheduled
+     */
+    private long drive(final long durationNanos) {
+        final long start = System.nanoTime();
+        long scheduled = 0;
+        while (true) {
+            final long intended = start + (long) (scheduled * (double) TimeUnit.SECONDS.toNanos(1) / options.rate);
+            if (intended - start >= durationNanos) {
+                break;
+            }
+            long now;
+            while ((now = System.nanoTime()) < intended) {
+                LockSupport.parkNanos(intended - now);
+            }
+            if (outstanding.get() >= options.maxOutstanding) {
+                dropped.increment();
+            } else {
+                send(intended);
+            }
+            scheduled++;
+        }
+
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (outstanding.get() > 0 && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        return scheduled;
+    }
+
+    private void send(final long intendedStartNanos) {
+        outstanding.incrementAndGet();
+        final HttpRequest request = payload.length > 0 ?
+                HttpRequest.of(HttpMethod.POST, options.path, MediaType.OCTET_STREAM, payload) :
+                HttpRequest.of(HttpMethod.GET, options.path);
+
+        webClient.execute(request).aggregate().handle((response, cause) -> {
+            final long latency = System.nanoTime() - intendedStartNanos;
+            histogram.recordValue(Math.min(latency, HIGHEST_TRACKABLE_NANOS));
+            if (cause != null || !response.status().isSuccess()) {
+                errors.increment();
+            } else {
+                completed.increment();
+            }
+            outstanding.decrementAndGet();
+            return null;
+        });
+    }
+
+    private void reset() {
+        histogram.reset();
+        completed.reset();
+        errors.reset();
+        dropped.reset();
+    }
+
+    static class Report {
+        private final Histogram histogram;
+        private final long sent;
+        private final long completed;
+        private final long errors;
+        private final long dropped;
+        private final long elapsedNanos;
+        private final int peakThreads;
+        private final long heapUsedBytes;
+
+        Report(final Histogram histogram, final long sent, final long completed, final long errors,
+               final long dropped, final long elapsedNanos, final int peakThreads, final long heapUsedBytes) {
+            this.histogram = histogram;
+            this.sent = sent;
+            this.completed = completed;
+            this.errors = errors;
+            this.dropped = dropped;
+            this.elapsedNanos = elapsedNanos;
+            this.peakThreads = peakThreads;
+            this.heapUsedBytes = heapUsedBytes;
+        }
+
+        double p99Millis() {
+            return millisAtPercentile(99.0);
+        }
+
+        double millisAtPercentile(final double percentile) {
+            return millis(histogram.getValueAtPercentile(percentile));
+        }
+
+        long errors() {
+            return errors;
+        }
+
+        double throughput() {
+            return completed / (elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1));
+        }
+
+        void log(final Options options) {
+            log.info("Protocol {}, path {}, payload {} bytes, target {} req/s, {} blocking execution",
+                    options.protocol.uriText(), options.path, options.payload, options.rate,
+                    options.blockingExecution);
+            log.info("Scheduled {}, completed {}, errors {}, dropped {}, achieved {} req/s",
+                    sent, completed, errors, dropped, String.format(Locale.ROOT, "%.1f", throughput()));
+            log.info("Latency (ms): p50 {}, p99 {}, p99.9 {}, max {}",
+                    format(histogram.getValueAtPercentile(50.0)),
+                    format(histogram.getValueAtPercentile(99.0)),
+                    format(histogram.getValueAtPercentile(99.9)),
+                    format(histogram.getMaxValue()));
+            log.info("Peak live threads {}, heap used {} MiB", peakThreads, heapUsedBytes >> 20);
+        }
+
+        private static double millis(final long nanos) {
+            return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+        }
+
+        private static String format(final long nanos) {
+            return String.format(Locale.ROOT, "%.3f", millis(nanos));
+        }
+    }
+
+    static class Options {
+        SessionProtocol protocol = SessionProtocol.H2C;
+        String path = "/";
+        int payload;
+        double rate = 1000;
+        long durationSeconds = 30;
+        long warmupSeconds = 5;
+        long maxOutstanding = 10_000;
+        double maxP99Millis;
+        BlockingExecution blockingExecution = BlockingExecution.PLATFORM;
+        String backgroundPath = "/echo";
+        int backgroundPayload;
+        double backgroundRate;
+
+        static Options parse(final String[] args) {
+            final Map<String, String> values = values(args);
+            final Options options = new Options();
+            options.protocol = SessionProtocol.of(values.getOrDefault("protocol", options.protocol.uriText()));
+            options.path = values.getOrDefault("path", options.path);
+            options.payload = Integer.parseInt(values.getOrDefault("payload", String.valueOf(options.payload)));
+            options.rate = Double.parseDouble(values.getOrDefault("rate", String.valueOf(options.rate)));
+            options.durationSeconds = Long.parseLong(values.getOrDefault("duration", String.valueOf(options.durationSeconds)));
+            options.warmupSeconds = Long.parseLong(values.getOrDefault("warmup", String.valueOf(options.warmupSeconds)));
+            options.maxOutstanding = Long.parseLong(values.getOrDefault("maxOutstanding", String.valueOf(options.maxOutstanding)));
+            options.maxP99Millis = Double.parseDouble(values.getOrDefault("maxP99Millis", String.valueOf(options.maxP99Millis)));
+            options.blockingExecution = BlockingExecution.of(
+                    values.getOrDefault("blockingExecution", options.blockingExecution.name()));
+            options.backgroundPath = values.getOrDefault("backgroundPath", options.backgroundPath);
+            options.backgroundPayload = Integer.parseInt(
+                    values.getOrDefault("backgroundPayload", String.valueOf(options.backgroundPayload)));
+            options.backgroundRate = Double.parseDouble(
+                    values.getOrDefault("backgroundRate", String.valueOf(options.backgroundRate)));
+            if (options.rate <= 0) {
+                throw new IllegalArgumentException("rate: " + options.rate + " (expected: > 0)");
+            }
+            return options;
+        }
+
+        /**
+         * Returns the {@code --name=value} arguments by name.
+         */
+        static Map<String, String> values(final String[] args) {
+            final Map<String, String> values = new HashMap<>();
+            for (final String arg : args) {
+                if (!arg.startsWith("--") || !arg.contains("=")) {
+                    throw new IllegalArgumentException("Unexpected argument: " + arg + " (expected: --name=value)");
+                }
+                final int separator = arg.indexOf('=');
+                values.put(arg.substring(2, separator), arg.substring(separator + 1));
+            }
+            return values;
+        }
+
+        /**
+         * Returns the options of the background load, or {@code null} if there is none.
+         */
+        Options background() {
+            if (backgroundRate <= 0) {
+                return null;
+            }
+            final Options background = new Options();
+            background.protocol = protocol;
+            background.path = backgroundPath;
+            background.payload = backgroundPayload;
+            background.rate = backgroundRate;
+            background.durationSeconds = durationSeconds;
+            background.warmupSeconds = warmupSeconds;
+            background.maxOutstanding = maxOutstanding;
+            background.blockingExecution = blockingExecution;
+            return background;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package io.venable.samples.armeria.http;
+
+import com.linecorp.armeria.client.ClientFactory;
+import com.linecorp.armeria.client.ClientFactoryBuilder;
+import com.linecorp.armeria.client.ConnectionPoolListener;
+import com.linecorp.armeria.client.WebClient;
+import com.linecorp.armeria.common.SessionProtocol;
+import io.netty.util.AttributeMap;
+import io.venable.samples.armeria.client.ClientProfile;
+import io.venable.samples.armeria.client.ConnectionMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Replays one workload against an in-process {@link SampleHttpServer} over each {@link ConnectionMode} in
+ * turn, with clients from {@link ClientProfile}, and reports the connections each mode needed next to its
+ * throughput and latency.
+ * <p>
+ * Run with:
+ * <pre>
+ * gradle protocolComparison -PprotocolComparisonArgs="--rate=2000 --duration=20 --payload=1024"
+ * </pre>
+ * The workload takes the options of {@link LoadGenerator}, except {@code --protocol}, and is {@code POST /echo}
+ * with 1 KiB bodies unless {@code --path} or {@code --payload} say otherwise. {@code --modes} lists the
+ * modes to run, {@code http1-pooled,http1-pipelined,h2c} by default, and {@code --connections} and
+ * {@code --maxConcurrentRequests} tune the profile of every mode. Each mode warms up before it is measured,
+ * so the modes run later do not simply meet a warmer server.
+ */
+public final class ProtocolComparison {
+    private static final Logger log = LoggerFactory.getLogger(ProtocolComparison.class);
+
+    private ProtocolComparison() {
+    }
+
+    public static void main(final String[] args) {
+        final Map<String, String> values = LoadGenerator.Options.values(args);
+        final LoadGenerator.Options options = LoadGenerator.Options.parse(args);
+        if (!values.containsKey("path")) {
+            options.path = "/echo";
+        }
+        if (!values.containsKey("payload")) {
+            options.payload = 1024;
+        }
+        final int connections = Integer.parseInt(values.getOrDefault("connections", "1"));
+        final int maxConcurrentRequests = Integer.parseInt(values.getOrDefault("maxConcurrentRequests", "0"));
+        final List<ConnectionMode> modes = new ArrayList<>();
+        for (final String mode : values.getOrDefault("modes", "http1-pooled,http1-pipelined,h2c").split(",")) {
+            modes.add(ConnectionMode.of(mode));
+        }
+
+        final SampleHttpServer server = SampleHttpServer.createServer(serverBuilder -> serverBuilder.http(0),
+                options.blockingExecution);
+        final List<String> rows = new ArrayList<>();
+        try {
+            final int port = server.activeLocalPort(SessionProtocol.HTTP);
+            for (final ConnectionMode mode : modes) {
+                final ClientProfile profile = ClientProfile.of(mode, connections, maxConcurrentRequests);
+                log.info("Client profile: {}", profile);
+                rows.add(run(profile, options, port));
+            }
+        } finally {
+            server.shutdown().join();
+        }
+
+        log.info("{} {} at {} req/s, payload {} bytes, {} connections, {} concurrent requests at most:",
+                options.payload > 0 ? "POST" : "GET", options.path, options.rate,
+                options.payload, connections, maxConcurrentRequests > 0 ? maxConcurrentRequests : "unlimited");
+        log.info(String.format(Locale.ROOT, "%-16s %8s %8s %10s %9s %9s %9s %9s %8s",
+                "mode", "opened", "peak", "req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "errors"));
+        for (final String row : rows) {
+            log.info(row);
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Runs the workload over {@code profile} and returns its row of the summary.
+     */
+    private static String run(final ClientProfile profile, final LoadGenerator.Options options, final int port) {
+        final ConnectionCounter connectionCounter = new ConnectionCounter();
+        final ClientFactoryBuilder clientFactoryBuilder = ClientFactory.builder()
+                .connectionPoolListener(connectionCounter);
+        profile.applyTo(clientFactoryBuilder);
+        try (ClientFactory clientFactory = clientFactoryBuilder.build()) {
+            final WebClient webClient = profile.newWebClientBuilder(clientFactory, "127.0.0.1", port)
+                    .responseTimeout(Duration.ofSeconds(10))
+                    .maxResponseLength(0)
+                    .build();
+            options.protocol = profile.mode().sessionProtocol();
+            final LoadGenerator.Report report = new LoadGenerator(options, webClient).run();
+            report.log(options);
+            log.info("Connections opened {}, at most {} open at once",
+                    connectionCounter.opened.sum(), connectionCounter.peak.get());
+            return String.format(Locale.ROOT, "%-16s %8d %8d %10.1f %9.3f %9.3f %9.3f %9.3f %8d",
+                    profile.mode().lowerCasedName(), connectionCounter.opened.sum(), connectionCounter.peak.get(),
+                    report.throughput(), report.millisAtPercentile(50.0), report.millisAtPercentile(99.0),
+                    report.millisAtPercentile(99.9), report.millisAtPercentile(100.0), report.errors());
+        }
+    }
+
+    /**
+     * Counts the connections a client factory opens, and the most it has open at once.
+     */
+    private static final class ConnectionCounter implements ConnectionPoolListener {
+        private final LongAdder opened = new LongAdder();
+        private final AtomicInteger open = new AtomicInteger();
+        private final AtomicInteger peak = new AtomicInteger();
+
+        @Override
+        public void connectionOpen(final SessionProtocol protocol, final InetSocketAddress remoteAddr,
+                                   final InetSocketAddress localAddr, final AttributeMap attrs) {
+            opened.increment();
+            peak.accumulateAndGet(open.incrementAndGet(), Math::max);
+        }
+
+        @Override
+        public void connectionClosed(final SessionProtocol protocol, final InetSocketAddress remoteAddr,
+                                     final InetSocketAddress localAddr, final AttributeMap attrs) {
+            open.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package io.venable.samples.armeria.http;
+
+import com.linecorp.armeria.common.AggregatedHttpRequest;
+import com.linecorp.armeria.common.HttpResponse;
+import com.linecorp.armeria.common.HttpStatus;
+import com.linecorp.armeria.common.MediaType;
+import com.linecorp.armeria.common.util.BlockingTaskExecutor;
+import com.linecorp.armeria.server.AnnotatedServiceBindingBuilder;
+import com.linecorp.armeria.server.ServerBuilder;
+import com.linecorp.armeria.server.annotation.Blocking;
+import com.linecorp.armeria.server.annotation.Default;
+import com.linecorp.armeria.server.annotation.Param;
+import com.linecorp.armeria.server.annotation.Post;
+
+/**
+ * Echoes the request body after holding its blocking thread for the {@code delayMillis} query parameter,
+ * which stands in for slow blocking work such as a call to a downstream system.
+ * <p>
+ * Only the load tests bind it, next to the sample server's own routes, so that no production route lets a
+ * client hold a thread for as long as it asks. Delays are capped at {@value #MAX_DELAY_MILLIS} ms all the same.
+ */
+public final class SlowEchoService {
+    static final String PATH = "/slow-echo";
+
+    private static final long MAX_DELAY_MILLIS = 10_000;
+
+    private SlowEchoService() {
+    }
+
+    /**
+     * Binds the service at {@link #PATH}, running its blocking work as chosen by {@code execution}.
+     */
+    static void bind(final ServerBuilder serverBuilder, final BlockingExecution execution) {
+        final AnnotatedServiceBindingBuilder binding = serverBuilder.annotatedService().pathPrefix(PATH);
+        execution.configure(binding, "slow-echo",
+                () -> BlockingTaskExecutor.builder().threadNamePrefix("slow-echo-blocking").build());
+        binding.build(new SlowEchoService());
+    }
+
+    @Blocking
+    @Post
+    public HttpResponse doPost(final AggregatedHttpRequest aggregatedHttpRequest,
+                               @Param("delayMillis") @Default("0") final long delayMillis) throws InterruptedException {
+        if (delayMillis > 0) {
+            Thread.sleep(Math.min(delayMillis, MAX_DELAY_MILLIS));
+        }
+        final MediaType contentType = aggregatedHttpRequest.contentType();
+        return HttpResponse.of(HttpStatus.OK, contentType != null ? contentType : MediaType.OCTET_STREAM,
+                               aggregatedHttpRequest.content());
+    }
+}
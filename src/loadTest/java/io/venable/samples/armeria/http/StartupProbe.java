@@ -0,0 +1,267 @@
+package io.venable.samples.armeria.http;
+
+import com.linecorp.armeria.client.ClientFactory;
+import com.linecorp.armeria.client.WebClient;
+import com.linecorp.armeria.common.AggregatedHttpResponse;
+import com.linecorp.armeria.common.HttpResponse;
+import com.linecorp.armeria.common.HttpStatus;
+import com.linecorp.armeria.server.Server;
+import io.venable.samples.armeria.client.ClientProfile;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Starts {@link io.venable.samples.armeria.Main} in a new JVM and measures how long it takes to serve:
+ * <ul>
+ *   <li>time to first request: from launching the JVM until {@code GET /} first succeeds,</li>
+ *   <li>time to ready: until {@code /internal/ready} first succeeds, after the server's warm-up,</li>
+ *   <li>time to p99 steady: from launching the JVM until the p99 latency of {@code GET /}, sent at a fixed
+ *       rate from the moment the server is ready, first comes within twice its steady value.</li>
+ * </ul>
+ * Latency is bucketed into windows by the time each request was scheduled. The p99 is rolled over
+ * {@value #ROLLING_WINDOWS} windows, and the steady value is the p99 of the second half of the run.
+ * The probe warms its own client against an in-process server first, so that the JIT warm-up being
+ * measured is the server's.
+ * <p>
+ * Run with:
+ * <pre>
+ * gradle cdsArchive startupTest -PstartupTestArgs="--runs=3 --cds=true --warmupRounds=500"
+ * </pre>
+ * {@code --cds=true} starts the JVM with the archive built by the {@code cdsArchive} task.
+ */
+public final class StartupProbe {
+    private static final Logger log = LoggerFactory.getLogger(StartupProbe.class);
+
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+    /**
+     * Long enough for polling not to take the CPU from a server starting on a single core.
+     */
+    private static final long POLL_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    /**
+     * Windows merged for the rolling p99, so that it rests on enough requests to mean something.
+     */
+    private static final int ROLLING_WINDOWS = 4;
+    private static final ClientProfile CLIENT_PROFILE = ClientProfile.of();
+
+    private final Options options;
+    private final WebClient webClient;
+
+    private StartupProbe(final Options options, final WebClient webClient) {
+        this.options = options;
+        this.webClient = webClient;
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final Options options = Options.parse(args);
+        final String classpath = System.getProperty("sample.startup.classpath");
+        if (classpath == null) {
+            throw new IllegalStateException("sample.startup.classpath is not set; run with gradle startupTest");
+        }
+        try (ClientFactory clientFactory = CLIENT_PROFILE.newClientFactory()) {
+            warmUpClient(clientFactory);
+            final StartupProbe probe = new StartupProbe(options,
+                    CLIENT_PROFILE.newWebClientBuilder(clientFactory, "127.0.0.1", options.port)
+                            .responseTimeout(Duration.ofSeconds(10))
+                            .build());
+            for (int run = 1; run <= options.runs; run++) {
+                probe.run(run, classpath);
+            }
+        }
+        System.exit(0);
+    }
+
+    private void run(final int run, final String classpath) throws IOException, InterruptedException {
+        final List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        if (options.cds) {
+            final String archive = System.getProperty("sample.startup.cdsArchive");
+            if (archive == null || !new File(archive).isFile()) {
+                throw new IllegalStateException("No AppCDS archive at " + archive + "; run gradle cdsArchive first");
+            }
+            command.add("-XX:SharedArchiveFile=" + archive);
+        }
+        command.add("-Dsample.server.listeners=" + options.port);
+        command.add("-Dsample.server.metricsPort=0");
+        command.add("-Dsample.server.warmup.rounds=" + options.warmupRounds);
+        command.add("-Dsample.server.drain.quietPeriodMillis=0");
+        command.add("-Dorg.slf4j.simpleLogger.defaultLogLevel=warn");
+        command.add("-cp");
+        command.add(classpath);
+        command.add("io.venable.samples.armeria.Main");
+
+        final long launchNanos = System.nanoTime();
+        final Process process = new ProcessBuilder(command)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        try {
+            final long firstResponseNanos = awaitSuccess("/", process) - launchNanos;
+            final long readyNanos = awaitSuccess(SampleHttpServer.READINESS_PATH, process) - launchNanos;
+            final Histogram[] windows = drive();
+            report(run, firstResponseNanos, readyNanos, windows);
+        } finally {
+            // SIGTERM, so that the server drains through its shutdown hook.
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+        }
+    }
+
+    private long awaitSuccess(final String path, final Process process) {
+        while (true) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException("The server exited with " + process.exitValue());
+            }
+            final AggregatedHttpResponse response = webClient.get(path).aggregate()
+                    .handle((aggregated, cause) -> aggregated).join();
+            if (response != null && response.status().equals(HttpStatus.OK)) {
+                return System.nanoTime();
+            }
+            LockSupport.parkNanos(POLL_INTERVAL_NANOS);
+        }
+    }
+
+    /**
+     * Sends {@code GET /} at a fixed rate and returns the latencies by the window of their scheduled time.
+     */
+    private Histogram[] drive() {
+        final long windowNanos = TimeUnit.MILLISECONDS.toNanos(options.windowMillis);
+        final long durationNanos = TimeUnit.SECONDS.toNanos(options.durationSeconds);
+        final Histogram[] windows = new Histogram[(int) (durationNanos / windowNanos)];
+        for (int i = 0; i < windows.length; i++) {
+            windows[i] = new ConcurrentHistogram(HIGHEST_TRACKABLE_NANOS, 3);
+        }
+        final AtomicLong outstanding = new AtomicLong();
+        final long start = System.nanoTime();
+        for (long scheduled = 0; ; scheduled++) {
+            final long intended = start + (long) (scheduled * (double) TimeUnit.SECONDS.toNanos(1) / options.rate);
+            final int window = (int) ((intended - start) / windowNanos);
+            if (window >= windows.length) {
+                break;
+            }
+            long now;
+            while ((now = System.nanoTime()) < intended) {
+                LockSupport.parkNanos(intended - now);
+            }
+            outstanding.incrementAndGet();
+            final HttpResponse response = webClient.get("/");
+            response.aggregate().handle((aggregated, cause) -> {
+                windows[window].recordValue(Math.min(System.nanoTime() - intended, HIGHEST_TRACKABLE_NANOS));
+                outstanding.decrementAndGet();
+                return null;
+            });
+        }
+        while (outstanding.get() > 0) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        return windows;
+    }
+
+    private void report(final int run, final long firstResponseNanos, final long readyNanos,
+                        final Histogram[] windows) {
+        // The second half of the traffic stands for the steady state.
+        final Histogram steady = new Histogram(HIGHEST_TRACKABLE_NANOS, 3);
+        for (int i = windows.length / 2; i < windows.length; i++) {
+            steady.add(windows[i]);
+        }
+        final long steadyP99 = steady.getValueAtPercentile(99.0);
+        int settled = 0;
+        while (settled + ROLLING_WINDOWS < windows.length && rollingP99(windows, settled) > 2 * steadyP99) {
+            settled++;
+        }
+        final long p99SteadyNanos = readyNanos +
+                                    TimeUnit.MILLISECONDS.toNanos((long) (settled + ROLLING_WINDOWS) * options.windowMillis);
+
+        log.info("Run {}: cds {}, warm-up rounds {}", run, options.cds, options.warmupRounds);
+        log.info("Time to first request {} ms, to ready {} ms, to p99 steady {} ms",
+                millis(firstResponseNanos), millis(readyNanos), millis(p99SteadyNanos));
+        log.info("p99 (ms) of the first second {}, steady {}", format(rollingP99(windows, 0)), format(steadyP99));
+    }
+
+    private static long rollingP99(final Histogram[] windows, final int first) {
+        final Histogram merged = new Histogram(HIGHEST_TRACKABLE_NANOS, 3);
+        for (int i = first; i < Math.min(first + ROLLING_WINDOWS, windows.length); i++) {
+            merged.add(windows[i]);
+        }
+        return merged.getValueAtPercentile(99.0);
+    }
+
+    /**
+     * Runs the client's request path until it is compiled, against a server in this JVM.
+     */
+    private static void warmUpClient(final ClientFactory clientFactory) {
+        final Server server = Server.builder()
+                .http(0)
+                .service("/", (ctx, req) -> HttpResponse.of("Hello"))
+                .build();
+        server.start().join();
+        try {
+            final WebClient client = CLIENT_PROFILE.newWebClientBuilder(clientFactory, "127.0.0.1",
+                    server.activeLocalPort()).build();
+            for (int i = 0; i < 20_000; i++) {
+                client.get("/").aggregate().join();
+            }
+        } finally {
+            server.stop().join();
+        }
+    }
+
+    private static long millis(final long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    private static String format(final long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    static class Options {
+        int port = 18080;
+        int runs = 1;
+        boolean cds;
+        int warmupRounds;
+        double rate = 500;
+        long durationSeconds = 20;
+        long windowMillis = 250;
+
+        static Options parse(final String[] args) {
+            final Map<String, String> values = new HashMap<>();
+            for (final String arg : args) {
+                if (!arg.startsWith("--") || !arg.contains("=")) {
+                    throw new IllegalArgumentException("Unexpected argument: " + arg + " (expected: --name=value)");
+                }
+                final int separator = arg.indexOf('=');
+                values.put(arg.substring(2, separator), arg.substring(separator + 1));
+            }
+
+            final Options options = new Options();
+            options.port = Integer.parseInt(values.getOrDefault("port", String.valueOf(options.port)));
+            options.runs = Integer.parseInt(values.getOrDefault("runs", String.valueOf(options.runs)));
+            options.cds = Boolean.parseBoolean(values.getOrDefault("cds", String.valueOf(options.cds)));
+            options.warmupRounds = Integer.parseInt(
+                    values.getOrDefault("warmupRounds", String.valueOf(options.warmupRounds)));
+            options.rate = Double.parseDouble(values.getOrDefault("rate", String.valueOf(options.rate)));
+            options.durationSeconds = Long.parseLong(values.getOrDefault("duration", String.valueOf(options.durationSeconds)));
+            options.windowMillis = Long.parseLong(values.getOrDefault("window", String.valueOf(options.windowMillis)));
+            if (options.rate <= 0) {
+                throw new IllegalArgumentException("rate: " + options.rate + " (expected: > 0)");
+            }
+            return options;
+        }
+    }
+}
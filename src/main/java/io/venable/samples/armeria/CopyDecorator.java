@@ -1,38 +1,92 @@
 package io.venable.samples.armeria;
 
+import com.linecorp.armeria.common.HttpData;
 import com.linecorp.armeria.common.HttpRequest;
 import com.linecorp.armeria.common.HttpResponse;
+import com.linecorp.armeria.common.annotation.Nullable;
 import com.linecorp.armeria.server.HttpService;
 import com.linecorp.armeria.server.ServiceRequestContext;
 import com.linecorp.armeria.server.SimpleDecoratingHttpService;
+import io.venable.samples.armeria.accesslog.PayloadSample;
+import io.venable.samples.armeria.accesslog.PayloadSampler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.function.Consumer;
 import java.util.function.Function;
 
+/**
+ * Copies the request body without aggregating it.
+ * <p>
+ * Each {@link HttpData} chunk is observed in-line as the wrapped service consumes the
+ * request, so the original bytes are forwarded untouched and the wrapped service keeps
+ * control of backpressure. Nothing blocks the event loop, so a slow uploader only holds
+ * its own stream open.
+ * <p>
+ * Sampled requests have the start of their body attached as a {@link PayloadSample}, which the
+ * access log writes out. Nothing is logged per request here, so the request path does no I/O.
+ */
 public class CopyDecorator extends SimpleDecoratingHttpService {
     private static final Logger log = LoggerFactory.getLogger(CopyDecorator.class);
 
-    private CopyDecorator(HttpService httpService) {
+    static final PayloadSampler DEFAULT_SAMPLER = PayloadSampler.of(0.01, 256);
+
+    private final PayloadSampler payloadSampler;
+
+    private CopyDecorator(HttpService httpService, final PayloadSampler payloadSampler) {
         super(httpService);
+        this.payloadSampler = payloadSampler;
     }
 
     public static Function<? super HttpService, CopyDecorator> newDecorator() {
-        return CopyDecorator::new;
+        return newDecorator(DEFAULT_SAMPLER);
+    }
+
+    public static Function<? super HttpService, CopyDecorator> newDecorator(final PayloadSampler payloadSampler) {
+        return httpService -> new CopyDecorator(httpService, payloadSampler);
     }
 
     @Override
     public HttpResponse serve(final ServiceRequestContext ctx, final HttpRequest req) throws Exception {
-        log.info("In decorator");
-        final String content = req.aggregate().get().content().toStringAscii();
-        log.info("Content: {}", content);
-
-        final HttpRequest newRequest = HttpRequest.builder()
-                .content(content)
-                .headers(req.headers())
-                .path(req.path())
-                .method(req.method())
-                .build();
-        return unwrap().serve(ctx, newRequest);
+        log.debug("In decorator");
+        final CopyObserver copyObserver = new CopyObserver(payloadSampler.start(ctx));
+        final HttpRequest forwarded = req.peekData(copyObserver);
+        forwarded.whenComplete().handle((unused, throwable) -> {
+            copyObserver.complete(throwable);
+            return null;
+        });
+
+        return unwrap().serve(ctx, forwarded);
+    }
+
+    private static class CopyObserver implements Consumer<HttpData> {
+        @Nullable
+        private final PayloadSample payloadSample;
+        private long bytes;
+        private int chunks;
+
+        CopyObserver(@Nullable final PayloadSample payloadSample) {
+            this.payloadSample = payloadSample;
+        }
+
+        @Override
+        public void accept(final HttpData data) {
+            bytes += data.length();
+            chunks++;
+            if (payloadSample != null) {
+                payloadSample.append(data);
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("Content chunk: {}", data.toStringUtf8());
+            }
+        }
+
+        void complete(final Throwable throwable) {
+            if (throwable != null) {
+                log.debug("Copy aborted after {} bytes in {} chunks", bytes, chunks, throwable);
+            } else {
+                log.debug("Copied {} bytes in {} chunks", bytes, chunks);
+            }
+        }
     }
 }
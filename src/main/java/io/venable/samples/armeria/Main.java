@@ -1,11 +1,24 @@
 package io.venable.samples.armeria;
 
 import io.venable.samples.armeria.http.SampleHttpServer;
+import io.venable.samples.armeria.http.ServerSettings;
 
 public class Main {
     private static SampleHttpServer sampleHttpServer;
 
+    /**
+     * Starts the server. With {@code --training-run}, stops it again once it is warmed up and exits, which
+     * loads the classes of a real run for {@code -XX:ArchiveClassesAtExit}.
+     */
     public static void main(final String[] args) {
-        sampleHttpServer = SampleHttpServer.createServer();
+        final ServerSettings settings = ServerSettings.load();
+        settings.applyGlobalFlags();
+        sampleHttpServer = SampleHttpServer.createServer(settings);
+        if (args.length > 0 && "--training-run".equals(args[0])) {
+            sampleHttpServer.whenReady().join();
+            sampleHttpServer.shutdown().join();
+            System.exit(0);
+        }
+        sampleHttpServer.closeOnJvmShutdown();
     }
 }
@@ -0,0 +1,227 @@
+package io.venable.samples.armeria.accesslog;
+
+import com.linecorp.armeria.common.RequestHeaders;
+import com.linecorp.armeria.common.logging.RequestLog;
+import com.linecorp.armeria.server.ServiceRequestContext;
+import com.linecorp.armeria.server.logging.AccessLogWriter;
+import io.venable.samples.armeria.metrics.MetricsSource;
+import io.venable.samples.armeria.metrics.PipelineMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes one JSON line per request to a file, without doing any I/O on the request path.
+ * <p>
+ * {@link #log(RequestLog)} only puts the completed {@link RequestLog} into a {@link BoundedRingBuffer}.
+ * If the buffer is full, the record is dropped and counted instead of waiting. A single background
+ * thread formats the records and writes them in batches, flushing whenever it runs out of work.
+ * A record which cannot be formatted is logged and counted as dropped, and the writer carries on.
+ * Payload samples are taken from the {@link PayloadSample} of the request, if there is one.
+ * <p>
+ * The written and dropped counts are exported through {@link PipelineMetrics#include(MetricsSource)}.
+ */
+public final class AsyncAccessLogWriter implements AccessLogWriter, MetricsSource {
+    private static final Logger log = LoggerFactory.getLogger(AsyncAccessLogWriter.class);
+
+    static final int DEFAULT_CAPACITY = 8192;
+    private static final int BATCH_SIZE = 256;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final Path file;
+    private final BoundedRingBuffer<RequestLog> buffer;
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final CompletableFuture<Void> shutdownFuture = new CompletableFuture<>();
+    private final StringBuilder line = new StringBuilder(512);
+    private final Thread thread;
+    private volatile boolean shuttingDown;
+
+    AsyncAccessLogWriter(final Path file, final int capacity) {
+        this.file = file;
+        buffer = new BoundedRingBuffer<>(capacity);
+        thread = new Thread(this::run, "access-log-writer");
+        thread.setDaemon(true);
+    }
+
+    public static AsyncAccessLogWriter of(final Path file) {
+        return of(file, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a writer which appends to {@code file} and buffers up to {@code capacity} records,
+     * rounded up to a power of two.
+     */
+    public static AsyncAccessLogWriter of(final Path file, final int capacity) {
+        final AsyncAccessLogWriter writer = new AsyncAccessLogWriter(file, capacity);
+        writer.start();
+        return writer;
+    }
+
+    /**
+     * Starts the background thread. Records logged before are buffered, up to the capacity.
+     */
+    void start() {
+        thread.start();
+    }
+
+    @Override
+    public void log(final RequestLog requestLog) {
+        if (shuttingDown || !buffer.offer(requestLog)) {
+            dropped.increment();
+        }
+    }
+
+    /**
+     * Returns the number of records dropped because the buffer was full or the writer was shut down.
+     */
+    public long droppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * Returns the number of records written to the file.
+     */
+    public long writtenCount() {
+        return written.sum();
+    }
+
+    @Override
+    public void appendTo(final StringBuilder out) {
+        out.append("# HELP sample_access_log_written_total Access log records written.\n")
+           .append("# TYPE sample_access_log_written_total counter\n")
+           .append("sample_access_log_written_total ").append(written.sum()).append('\n');
+        out.append("# HELP sample_access_log_dropped_total Access log records dropped because the buffer was full, ")
+           .append("the writer was shut down or the record could not be formatted.\n")
+           .append("# TYPE sample_access_log_dropped_total counter\n")
+           .append("sample_access_log_dropped_total ").append(dropped.sum()).append('\n');
+    }
+
+    /**
+     * Writes the records that are already buffered and stops the background thread.
+     */
+    @Override
+    public CompletableFuture<Void> shutdown() {
+        shuttingDown = true;
+        LockSupport.unpark(thread);
+        return shutdownFuture;
+    }
+
+    private void run() {
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                boolean dirty = false;
+                while (true) {
+                    // Read the flag before draining, so that nothing offered before shutdown is left behind.
+                    final boolean stopping = shuttingDown;
+                    final int drained = buffer.drain(requestLog -> write(writer, requestLog), BATCH_SIZE);
+                    if (drained > 0) {
+                        dirty = true;
+                        continue;
+                    }
+                    if (dirty) {
+                        writer.flush();
+                        dirty = false;
+                    }
+                    if (stopping) {
+                        break;
+                    }
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+            }
+            shutdownFuture.complete(null);
+        } catch (Throwable t) {
+            // Complete the future whatever happened, since the server waits for it when it stops.
+            log.error("Access log writer for {} stopped", file, t);
+            shutdownFuture.completeExceptionally(t);
+        }
+    }
+
+    private void write(final Writer writer, final RequestLog requestLog) {
+        line.setLength(0);
+        try {
+            format(requestLog, line);
+        } catch (RuntimeException e) {
+            dropped.increment();
+            log.warn("Dropping an access log record which could not be formatted: {}", requestLog, e);
+            return;
+        }
+        line.append('\n');
+        try {
+            writer.append(line);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        written.increment();
+    }
+
+    static void format(final RequestLog requestLog, final StringBuilder line) {
+        final RequestHeaders headers = requestLog.requestHeaders();
+        final InetAddress clientAddress = ((ServiceRequestContext) requestLog.context()).clientAddress();
+        final long startMillis = TimeUnit.MICROSECONDS.toMillis(requestLog.requestStartTimeMicros());
+        line.append("{\"time\":\"").append(Instant.ofEpochMilli(startMillis))
+                .append("\",\"client\":\"").append(clientAddress.getHostAddress())
+                .append("\",\"method\":\"").append(headers.method())
+                .append("\",\"path\":");
+        appendString(line, headers.path());
+        line.append(",\"protocol\":\"").append(requestLog.sessionProtocol().uriText())
+                .append("\",\"status\":").append(requestLog.responseStatus().code())
+                .append(",\"requestLength\":").append(requestLog.requestLength())
+                .append(",\"responseLength\":").append(requestLog.responseLength())
+                .append(",\"durationMicros\":").append(TimeUnit.NANOSECONDS.toMicros(requestLog.totalDurationNanos()));
+        final PayloadSample sample = PayloadSample.get(requestLog.context());
+        if (sample != null) {
+            line.append(",\"payload\":");
+            appendString(line, sample.toString());
+        }
+        line.append('}');
+    }
+
+    private static void appendString(final StringBuilder line, final String value) {
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    line.append("\\\"");
+                    break;
+                case '\\':
+                    line.append("\\\\");
+                    break;
+                case '\n':
+                    line.append("\\n");
+                    break;
+                case '\r':
+                    line.append("\\r");
+                    break;
+                case '\t':
+                    line.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        line.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        line.append(c);
+                    }
+            }
+        }
+        line.append('"');
+    }
+}
@@ -0,0 +1,83 @@
+package io.venable.samples.armeria.accesslog;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * A bounded lock-free queue for many producers and a single consumer.
+ * <p>
+ * Every slot has a sequence number which tells producers whether the slot is free for the current lap
+ * and tells the consumer whether it has been published. Producers claim a slot with one compare-and-set
+ * on the tail and never wait: when the buffer is full, {@link #offer(Object)} returns {@code false}.
+ */
+final class BoundedRingBuffer<E> {
+    private final int mask;
+    private final AtomicReferenceArray<E> elements;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private long head;
+
+    BoundedRingBuffer(final int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("capacity: " + capacity + " (expected: 1 to 2^30)");
+        }
+        final int size = Integer.highestOneBit(capacity) == capacity ? capacity : Integer.highestOneBit(capacity) << 1;
+        mask = size - 1;
+        elements = new AtomicReferenceArray<>(size);
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Adds the element, or returns {@code false} without blocking if the buffer is full.
+     */
+    boolean offer(final E element) {
+        long position = tail.get();
+        while (true) {
+            final int index = (int) position & mask;
+            final long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements.lazySet(index, element);
+                    sequences.lazySet(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Removes up to {@code limit} published elements in order. Must only be called by the consumer thread.
+     *
+     * @return the number of elements removed
+     */
+    int drain(final Consumer<? super E> consumer, final int limit) {
+        int drained = 0;
+        while (drained < limit) {
+            final int index = (int) head & mask;
+            if (sequences.get(index) != head + 1) {
+                break;
+            }
+            final E element = elements.get(index);
+            elements.lazySet(index, null);
+            sequences.lazySet(index, head + mask + 1);
+            head++;
+            drained++;
+            consumer.accept(element);
+        }
+        return drained;
+    }
+}
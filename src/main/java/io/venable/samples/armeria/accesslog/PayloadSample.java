@@ -0,0 +1,65 @@
+package io.venable.samples.armeria.accesslog;
+
+import com.linecorp.armeria.common.HttpData;
+import com.linecorp.armeria.common.RequestContext;
+import com.linecorp.armeria.common.annotation.Nullable;
+import io.netty.buffer.ByteBuf;
+import io.netty.util.AttributeKey;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The first bytes of a request payload, kept for the access log.
+ * <p>
+ * Chunks are appended on the event loop of the request and the sample is read by the access log writer
+ * after the request log completes, which happens after the last append.
+ */
+public final class PayloadSample {
+    private static final AttributeKey<PayloadSample> SAMPLE = AttributeKey.valueOf(PayloadSample.class, "SAMPLE");
+
+    private final byte[] bytes;
+    private int sampled;
+    private long length;
+
+    PayloadSample(final int maxBytes) {
+        bytes = new byte[maxBytes];
+    }
+
+    static void attach(final RequestContext ctx, final PayloadSample sample) {
+        ctx.setAttr(SAMPLE, sample);
+    }
+
+    /**
+     * Returns the sample of the request, or {@code null} if its payload was not sampled.
+     */
+    @Nullable
+    public static PayloadSample get(final RequestContext ctx) {
+        return ctx.attr(SAMPLE);
+    }
+
+    public void append(final HttpData data) {
+        final int copied = Math.min(bytes.length - sampled, data.length());
+        if (copied > 0) {
+            final ByteBuf buf = data.byteBuf();
+            buf.getBytes(buf.readerIndex(), bytes, sampled, copied);
+            sampled += copied;
+        }
+        length += data.length();
+    }
+
+    /**
+     * Returns the total number of payload bytes seen, including those which were not kept.
+     */
+    public long length() {
+        return length;
+    }
+
+    /**
+     * Returns the sampled bytes decoded as UTF-8, followed by the number of bytes left out if truncated.
+     */
+    @Override
+    public String toString() {
+        final String text = new String(bytes, 0, sampled, StandardCharsets.UTF_8);
+        return length > sampled ? text + "...(" + (length - sampled) + " more bytes)" : text;
+    }
+}
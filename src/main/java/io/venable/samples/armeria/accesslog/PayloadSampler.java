@@ -0,0 +1,49 @@
+package io.venable.samples.armeria.accesslog;
+
+import com.linecorp.armeria.common.annotation.Nullable;
+import com.linecorp.armeria.server.ServiceRequestContext;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides which requests have a sample of their payload in the access log.
+ */
+public final class PayloadSampler {
+    private final double rate;
+    private final int maxBytes;
+
+    private PayloadSampler(final double rate, final int maxBytes) {
+        this.rate = rate;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Samples the given fraction of requests, keeping up to {@code maxBytes} of each sampled payload.
+     */
+    public static PayloadSampler of(final double rate, final int maxBytes) {
+        if (rate < 0 || rate > 1) {
+            throw new IllegalArgumentException("rate: " + rate + " (expected: 0 to 1)");
+        }
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("maxBytes: " + maxBytes + " (expected: >= 0)");
+        }
+        return new PayloadSampler(rate, maxBytes);
+    }
+
+    public static PayloadSampler disabled() {
+        return new PayloadSampler(0, 0);
+    }
+
+    /**
+     * Returns a new sample attached to the request, or {@code null} if the request was not picked.
+     */
+    @Nullable
+    public PayloadSample start(final ServiceRequestContext ctx) {
+        if (rate == 0 || (rate < 1 && ThreadLocalRandom.current().nextDouble() >= rate)) {
+            return null;
+        }
+        final PayloadSample sample = new PayloadSample(maxBytes);
+        PayloadSample.attach(ctx, sample);
+        return sample;
+    }
+}
@@ -0,0 +1,414 @@
+package io.venable.samples.armeria.caching;
+
+import com.linecorp.armeria.common.AggregatedHttpResponse;
+import com.linecorp.armeria.common.HttpData;
+import com.linecorp.armeria.common.HttpHeaderNames;
+import com.linecorp.armeria.common.HttpHeaders;
+import com.linecorp.armeria.common.HttpMethod;
+import com.linecorp.armeria.common.HttpRequest;
+import com.linecorp.armeria.common.HttpResponse;
+import com.linecorp.armeria.common.HttpStatus;
+import com.linecorp.armeria.common.RequestHeaders;
+import com.linecorp.armeria.common.ResponseHeaders;
+import com.linecorp.armeria.common.ResponseHeadersBuilder;
+import com.linecorp.armeria.common.annotation.Nullable;
+import com.linecorp.armeria.server.HttpService;
+import com.linecorp.armeria.server.ServiceRequestContext;
+import com.linecorp.armeria.server.SimpleDecoratingHttpService;
+import io.netty.util.AsciiString;
+import io.venable.samples.armeria.metrics.MetricsSource;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Serves concurrent identical {@code GET} and {@code HEAD} requests with one call to the service. The
+ * first request of a key calls the service and aggregates its response; requests of the same key which
+ * arrive before it completes wait for that response instead of calling the service themselves. The key
+ * is the method, the path with its query, and the values of the chosen request headers, which must
+ * include every header the response varies by. Other methods pass straight through.
+ * <p>
+ * Waiting requests share the outcome of the call, failures included. Responses are held in memory whole,
+ * so decorate only routes whose responses are small.
+ * <p>
+ * Only public responses are shared. Requests with an {@code Authorization} or {@code Cookie} header pass
+ * straight through, since their responses may be about one client. A response which sets a cookie, or whose
+ * {@code Cache-Control} says {@code no-store} or {@code private}, is neither cached nor handed to the
+ * requests waiting for it; each of those calls the service on its own instead.
+ * <p>
+ * With a time to live, {@code 200 OK} responses are also kept for that long, up to {@code maxEntries}
+ * keys, after which the oldest key is dropped. Cached responses carry an {@code ETag}, derived from the
+ * body unless the service set one, and a request whose {@code If-None-Match} matches it is answered with
+ * {@code 304 Not Modified}.
+ * <p>
+ * The counters are rendered through {@link io.venable.samples.armeria.metrics.PipelineMetrics#include(MetricsSource)}.
+ */
+public final class SingleFlight implements MetricsSource {
+    private final String name;
+    private final List<AsciiString> keyHeaders;
+    private final long ttlNanos;
+    private final LongSupplier nanoClock;
+    private final ConcurrentHashMap<String, CompletableFuture<Entry>> inFlight = new ConcurrentHashMap<>();
+    @Nullable
+    private final Map<String, Entry> cache;
+    private final LongAdder invocations = new LongAdder();
+    private final LongAdder fanOut = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+    private final LongAdder notModified = new LongAdder();
+
+    private SingleFlight(final String name, final List<String> keyHeaders, final Duration ttl,
+                         final int maxEntries, final LongSupplier nanoClock) {
+        if (ttl.isNegative()) {
+            throw new IllegalArgumentException("ttl: " + ttl + " (expected: >= 0)");
+        }
+        if (!ttl.isZero() && maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries: " + maxEntries + " (expected: > 0)");
+        }
+        this.name = name;
+        final List<AsciiString> headerNames = new ArrayList<>();
+        for (final String keyHeader : keyHeaders) {
+            headerNames.add(HttpHeaderNames.of(keyHeader));
+        }
+        this.keyHeaders = Collections.unmodifiableList(headerNames);
+        ttlNanos = ttl.toNanos();
+        this.nanoClock = nanoClock;
+        if (ttl.isZero()) {
+            cache = null;
+        } else {
+            // Insertion order, so that the eldest entry is the one cached first.
+            cache = Collections.synchronizedMap(new LinkedHashMap<String, Entry>() {
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<String, Entry> eldest) {
+                    return size() > maxEntries;
+                }
+            });
+        }
+    }
+
+    /**
+     * Creates a single flight which coalesces requests by the given headers, without a cache.
+     */
+    public static SingleFlight of(final String name, final List<String> keyHeaders) {
+        return of(name, keyHeaders, Duration.ZERO, 0);
+    }
+
+    /**
+     * Creates a single flight which also caches responses for {@code ttl}, unless it is zero.
+     */
+    public static SingleFlight of(final String name, final List<String> keyHeaders, final Duration ttl,
+                                  final int maxEntries) {
+        return of(name, keyHeaders, ttl, maxEntries, System::nanoTime);
+    }
+
+    static SingleFlight of(final String name, final List<String> keyHeaders, final Duration ttl,
+                           final int maxEntries, final LongSupplier nanoClock) {
+        return new SingleFlight(name, keyHeaders, ttl, maxEntries, nanoClock);
+    }
+
+    /**
+     * Returns a decorator which serves requests through this single flight.
+     */
+    public Function<? super HttpService, HttpService> newDecorator() {
+        return httpService -> new SingleFlightService(httpService, this);
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Returns the number of requests passed on to the service.
+     */
+    public long invocationCount() {
+        return invocations.sum();
+    }
+
+    /**
+     * Returns the number of requests answered with the response of another request's call.
+     */
+    public long fanOutCount() {
+        return fanOut.sum();
+    }
+
+    public long cacheHitCount() {
+        return cacheHits.sum();
+    }
+
+    public long cacheMissCount() {
+        return cacheMisses.sum();
+    }
+
+    /**
+     * Returns the number of requests answered with {@code 304 Not Modified}.
+     */
+    public long notModifiedCount() {
+        return notModified.sum();
+    }
+
+    @Override
+    public void appendTo(final StringBuilder out) {
+        final String labels = "name=\"" + name + '"';
+        appendCounter(out, "sample_single_flight_invocations_total", "Requests passed on to the service.",
+                labels, invocations);
+        appendCounter(out, "sample_single_flight_fan_out_total",
+                "Requests answered with the response of another request's call.", labels, fanOut);
+        if (cache != null) {
+            appendCounter(out, "sample_response_cache_hits_total", "Requests answered from the cache.",
+                    labels, cacheHits);
+            appendCounter(out, "sample_response_cache_misses_total", "Requests not found in the cache.",
+                    labels, cacheMisses);
+            appendCounter(out, "sample_response_cache_not_modified_total",
+                    "Requests answered with 304 Not Modified.", labels, notModified);
+        }
+    }
+
+    private static void appendCounter(final StringBuilder out, final String name, final String help,
+                                      final String labels, final LongAdder counter) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n')
+           .append("# TYPE ").append(name).append(" counter\n")
+           .append(name).append('{').append(labels).append("} ").append(counter.sum()).append('\n');
+    }
+
+    @Override
+    public String toString() {
+        return "name=" + name + ", keyHeaders=" + keyHeaders +
+               (cache != null ? ", ttlMillis=" + Duration.ofNanos(ttlNanos).toMillis() : ", uncached");
+    }
+
+    private String key(final RequestHeaders headers) {
+        final StringBuilder key = new StringBuilder(64).append(headers.method()).append(' ').append(headers.path());
+        for (final AsciiString keyHeader : keyHeaders) {
+            key.append('\n').append(keyHeader).append(':');
+            final List<String> values = headers.getAll(keyHeader);
+            for (int i = 0; i < values.size(); i++) {
+                key.append(i == 0 ? "" : ",").append(values.get(i));
+            }
+        }
+        return key.toString();
+    }
+
+    @Nullable
+    private Entry cached(final String key) {
+        final Entry entry = cache.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (nanoClock.getAsLong() - entry.cachedAtNanos >= ttlNanos) {
+            cache.remove(key, entry);
+            return null;
+        }
+        return entry;
+    }
+
+    private Entry newEntry(final AggregatedHttpResponse response) {
+        final boolean shareable = isShareable(response.headers());
+        if (cache == null || !shareable || !HttpStatus.OK.equals(response.status())) {
+            return new Entry(response.headers(), response.content(), response.trailers(), shareable, null, 0);
+        }
+        ResponseHeaders headers = response.headers();
+        String etag = headers.get(HttpHeaderNames.ETAG);
+        if (etag == null) {
+            etag = etag(headers.get(HttpHeaderNames.CONTENT_ENCODING), response.content());
+            headers = headers.toBuilder().set(HttpHeaderNames.ETAG, etag).build();
+        }
+        return new Entry(headers, response.content(), response.trailers(), true, etag, nanoClock.getAsLong());
+    }
+
+    /**
+     * Tells whether a request may be answered with a response made for another, which it may not when its
+     * credentials could make the response about its client alone.
+     */
+    static boolean isShareable(final RequestHeaders headers) {
+        return !headers.contains(HttpHeaderNames.AUTHORIZATION) && !headers.contains(HttpHeaderNames.COOKIE);
+    }
+
+    /**
+     * Tells whether a response may be handed to other clients, which it may not when it sets a cookie or
+     * its {@code Cache-Control} forbids shared caches from keeping it.
+     */
+    static boolean isShareable(final ResponseHeaders headers) {
+        if (headers.contains(HttpHeaderNames.SET_COOKIE)) {
+            return false;
+        }
+        for (final String cacheControl : headers.getAll(HttpHeaderNames.CACHE_CONTROL)) {
+            for (final String directive : cacheControl.split(",")) {
+                final int equals = directive.indexOf('=');
+                final String name = (equals < 0 ? directive : directive.substring(0, equals)).trim();
+                if ("no-store".equalsIgnoreCase(name) || "private".equalsIgnoreCase(name)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns a strong entity tag for the body, which differs between content codings.
+     */
+    private static String etag(@Nullable final String contentEncoding, final HttpData content) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        if (contentEncoding != null) {
+            digest.update(contentEncoding.getBytes(StandardCharsets.US_ASCII));
+        }
+        digest.update((byte) 0);
+        digest.update(content.array());
+        final byte[] hash = digest.digest();
+        return '"' + Base64.getUrlEncoder().withoutPadding().encodeToString(hash).substring(0, 22) + '"';
+    }
+
+    /**
+     * Tells whether an {@code If-None-Match} value lists the entity tag, comparing weakly as RFC 9110 asks.
+     */
+    static boolean matches(@Nullable final String ifNoneMatch, final String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        final String opaqueTag = etag.startsWith("W/") ? etag.substring(2) : etag;
+        for (final String entry : ifNoneMatch.split(",")) {
+            final String candidate = entry.trim();
+            if ("*".equals(candidate) ||
+                opaqueTag.equals(candidate.startsWith("W/") ? candidate.substring(2) : candidate)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private final class Entry {
+        private final ResponseHeaders headers;
+        private final HttpData content;
+        private final HttpHeaders trailers;
+        private final boolean shareable;
+        @Nullable
+        private final String etag;
+        @Nullable
+        private final ResponseHeaders notModifiedHeaders;
+        private final long cachedAtNanos;
+
+        Entry(final ResponseHeaders headers, final HttpData content, final HttpHeaders trailers,
+              final boolean shareable, @Nullable final String etag, final long cachedAtNanos) {
+            this.headers = headers;
+            this.content = content;
+            this.trailers = trailers;
+            this.shareable = shareable;
+            this.etag = etag;
+            this.cachedAtNanos = cachedAtNanos;
+            if (etag == null) {
+                notModifiedHeaders = null;
+            } else {
+                // A 304 carries the headers which a 200 would have sent about the cached representation.
+                final ResponseHeadersBuilder builder = ResponseHeaders.builder(HttpStatus.NOT_MODIFIED)
+                        .set(HttpHeaderNames.ETAG, etag);
+                for (final AsciiString header : new AsciiString[] {
+                        HttpHeaderNames.VARY, HttpHeaderNames.CACHE_CONTROL, HttpHeaderNames.CONTENT_LOCATION }) {
+                    final String value = headers.get(header);
+                    if (value != null) {
+                        builder.set(header, value);
+                    }
+                }
+                notModifiedHeaders = builder.build();
+            }
+        }
+
+        HttpResponse respond(final RequestHeaders requestHeaders) {
+            if (etag != null && matches(requestHeaders.get(HttpHeaderNames.IF_NONE_MATCH), etag)) {
+                notModified.increment();
+                return HttpResponse.of(notModifiedHeaders);
+            }
+            return HttpResponse.of(headers, content, trailers);
+        }
+    }
+
+    private static final class SingleFlightService extends SimpleDecoratingHttpService {
+        private final SingleFlight singleFlight;
+
+        SingleFlightService(final HttpService httpService, final SingleFlight singleFlight) {
+            super(httpService);
+            this.singleFlight = singleFlight;
+        }
+
+        @Override
+        public HttpResponse serve(final ServiceRequestContext ctx, final HttpRequest req) throws Exception {
+            final RequestHeaders headers = req.headers();
+            if (headers.method() != HttpMethod.GET && headers.method() != HttpMethod.HEAD ||
+                !isShareable(headers)) {
+                return unwrap().serve(ctx, req);
+            }
+            final String key = singleFlight.key(headers);
+            if (singleFlight.cache != null) {
+                final Entry cached = singleFlight.cached(key);
+                if (cached != null) {
+                    singleFlight.cacheHits.increment();
+                    return cached.respond(headers);
+                }
+                singleFlight.cacheMisses.increment();
+            }
+
+            final CompletableFuture<Entry> flight = new CompletableFuture<>();
+            final CompletableFuture<Entry> leader = singleFlight.inFlight.putIfAbsent(key, flight);
+            if (leader != null) {
+                return HttpResponse.of(leader.thenApplyAsync(entry -> {
+                    if (!entry.shareable) {
+                        // The response was meant for the leader's client alone.
+                        return serveAlone(ctx, req);
+                    }
+                    singleFlight.fanOut.increment();
+                    return entry.respond(headers);
+                }, ctx.eventLoop()));
+            }
+            singleFlight.invocations.increment();
+            final HttpResponse response;
+            try {
+                response = unwrap().serve(ctx, req);
+            } catch (Exception e) {
+                singleFlight.inFlight.remove(key, flight);
+                flight.completeExceptionally(e);
+                throw e;
+            }
+            response.aggregate().handle((aggregated, cause) -> {
+                if (cause != null) {
+                    singleFlight.inFlight.remove(key, flight);
+                    flight.completeExceptionally(cause);
+                    return null;
+                }
+                final Entry entry = singleFlight.newEntry(aggregated);
+                if (entry.etag != null) {
+                    // Cached before the flight ends, so that no request finds neither.
+                    singleFlight.cache.put(key, entry);
+                }
+                singleFlight.inFlight.remove(key, flight);
+                flight.complete(entry);
+                return null;
+            });
+            return HttpResponse.of(flight.thenApply(entry -> entry.respond(headers)));
+        }
+
+        private HttpResponse serveAlone(final ServiceRequestContext ctx, final HttpRequest req) {
+            singleFlight.invocations.increment();
+            try {
+                return unwrap().serve(ctx, req);
+            } catch (Exception e) {
+                return HttpResponse.ofFailure(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package io.venable.samples.armeria.client;
+
+import com.linecorp.armeria.client.ClientFactory;
+import com.linecorp.armeria.client.ClientFactoryBuilder;
+import com.linecorp.armeria.client.Endpoint;
+import com.linecorp.armeria.client.WebClient;
+import com.linecorp.armeria.client.WebClientBuilder;
+import com.linecorp.armeria.client.limit.ConcurrencyLimitingClient;
+
+import java.time.Duration;
+
+/**
+ * The client settings which callers of {@link io.venable.samples.armeria.http.SampleHttpServer} share, so
+ * that they reuse connections the same way.
+ * <p>
+ * {@code connections} is the number of event loops that requests to one endpoint are spread over. A
+ * pipelined or multiplexed client opens one connection on each, and more only when the server allows no
+ * more streams on the ones it has. It cannot exceed the size of the client's worker group.
+ * {@code maxConcurrentRequests} caps the requests in flight of each client built by
+ * {@link #newWebClientBuilder(ClientFactory, String, int)}, which queues the others for up to ten seconds;
+ * with {@link ConnectionMode#HTTP1_POOLED} it is the size of the connection pool.
+ * <p>
+ * Every profile also closes connections idle for {@value #IDLE_TIMEOUT_SECONDS} seconds, before the
+ * server's own 15 second idle timeout can close them under a request, and replaces connections older
+ * than {@value #MAX_CONNECTION_AGE_MINUTES} minutes, so that the many requests a long-lived HTTP/2
+ * connection carries are spread again when servers are added behind a load balancer.
+ */
+public final class ClientProfile {
+    private static final int IDLE_TIMEOUT_SECONDS = 10;
+    private static final int MAX_CONNECTION_AGE_MINUTES = 5;
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(2);
+    /**
+     * The HTTP/2 connection window the responses of all streams share, four times Armeria's default, so
+     * that a few large responses do not stall the small ones multiplexed with them.
+     */
+    private static final int HTTP2_CONNECTION_WINDOW_SIZE = 4 * 1024 * 1024;
+
+    private static final ClientProfile DEFAULT = new ClientProfile(ConnectionMode.H2C, 1, 0);
+
+    private final ConnectionMode mode;
+    private final int connections;
+    private final int maxConcurrentRequests;
+
+    private ClientProfile(final ConnectionMode mode, final int connections, final int maxConcurrentRequests) {
+        if (connections <= 0) {
+            throw new IllegalArgumentException("connections: " + connections + " (expected: > 0)");
+        }
+        if (maxConcurrentRequests < 0) {
+            throw new IllegalArgumentException("maxConcurrentRequests: " + maxConcurrentRequests +
+                                               " (expected: >= 0)");
+        }
+        this.mode = mode;
+        this.connections = connections;
+        this.maxConcurrentRequests = maxConcurrentRequests;
+    }
+
+    /**
+     * Returns the profile for most callers: one h2c connection per endpoint, with no limit on the requests
+     * in flight.
+     */
+    public static ClientProfile of() {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns a profile with {@code maxConcurrentRequests} {@code 0} for no limit.
+     */
+    public static ClientProfile of(final ConnectionMode mode, final int connections,
+                                   final int maxConcurrentRequests) {
+        return new ClientProfile(mode, connections, maxConcurrentRequests);
+    }
+
+    public ConnectionMode mode() {
+        return mode;
+    }
+
+    public int connections() {
+        return connections;
+    }
+
+    public int maxConcurrentRequests() {
+        return maxConcurrentRequests;
+    }
+
+    /**
+     * Returns a new client factory with this profile. Close it when its clients are no longer used.
+     */
+    public ClientFactory newClientFactory() {
+        final ClientFactoryBuilder clientFactoryBuilder = ClientFactory.builder();
+        applyTo(clientFactoryBuilder);
+        return clientFactoryBuilder.build();
+    }
+
+    /**
+     * Applies this profile to {@code clientFactoryBuilder}, for callers which set more options, such as TLS.
+     */
+    public void applyTo(final ClientFactoryBuilder clientFactoryBuilder) {
+        clientFactoryBuilder.connectTimeout(CONNECT_TIMEOUT)
+                            .idleTimeout(Duration.ofSeconds(IDLE_TIMEOUT_SECONDS))
+                            .maxConnectionAge(Duration.ofMinutes(MAX_CONNECTION_AGE_MINUTES))
+                            .maxNumEventLoopsPerEndpoint(connections)
+                            .maxNumEventLoopsPerHttp1Endpoint(connections)
+                            .useHttp1Pipelining(mode == ConnectionMode.HTTP1_PIPELINED)
+                            .useHttp2Preface(true)
+                            .http2InitialConnectionWindowSize(HTTP2_CONNECTION_WINDOW_SIZE);
+    }
+
+    /**
+     * Returns a builder of clients of {@code host} and {@code port} which speak the protocol of this profile
+     * over connections from {@code clientFactory}.
+     */
+    public WebClientBuilder newWebClientBuilder(final ClientFactory clientFactory, final String host,
+                                                final int port) {
+        final WebClientBuilder webClientBuilder = WebClient.builder(mode.sessionProtocol(), Endpoint.of(host, port))
+                                                           .factory(clientFactory);
+        if (maxConcurrentRequests > 0) {
+            webClientBuilder.decorator(ConcurrencyLimitingClient.newDecorator(maxConcurrentRequests));
+        }
+        return webClientBuilder;
+    }
+
+    @Override
+    public String toString() {
+        return "mode=" + mode.lowerCasedName() +
+               ", connections=" + connections +
+               ", maxConcurrentRequests=" + (maxConcurrentRequests > 0 ? maxConcurrentRequests : "unlimited");
+    }
+}
@@ -0,0 +1,52 @@
+package io.venable.samples.armeria.client;
+
+import com.linecorp.armeria.common.SessionProtocol;
+
+import java.util.Locale;
+
+/**
+ * How a client shares its connections between the requests it has in flight.
+ */
+public enum ConnectionMode {
+    /**
+     * HTTP/1.1 with one request at a time on each connection, so the pool opens a connection for every
+     * request in flight.
+     */
+    HTTP1_POOLED(SessionProtocol.H1C),
+    /**
+     * HTTP/1.1 with requests written on a busy connection without waiting for the responses before them.
+     * Responses still arrive in order, so a slow one holds up every response behind it. A connection takes
+     * the next request only once the one before is written, so requests sent in the same instant still
+     * open connections of their own.
+     */
+    HTTP1_PIPELINED(SessionProtocol.H1C),
+    /**
+     * Cleartext HTTP/2 with prior knowledge, with the requests in flight multiplexed as streams of one
+     * connection, up to the number of streams the server allows.
+     */
+    H2C(SessionProtocol.H2C);
+
+    private final SessionProtocol sessionProtocol;
+
+    ConnectionMode(final SessionProtocol sessionProtocol) {
+        this.sessionProtocol = sessionProtocol;
+    }
+
+    /**
+     * Returns the mode with the given name, such as {@code http1-pooled}.
+     */
+    public static ConnectionMode of(final String name) {
+        return valueOf(name.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+    }
+
+    public SessionProtocol sessionProtocol() {
+        return sessionProtocol;
+    }
+
+    /**
+     * Returns the name which {@link #of(String)} accepts.
+     */
+    public String lowerCasedName() {
+        return name().toLowerCase(Locale.ROOT).replace('_', '-');
+    }
+}
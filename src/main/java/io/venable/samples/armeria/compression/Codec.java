@@ -0,0 +1,113 @@
+package io.venable.samples.armeria.compression;
+
+import com.aayushatharva.brotli4j.encoder.Encoder;
+import io.netty.handler.codec.compression.Brotli;
+import io.netty.handler.codec.compression.Zstd;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The content codings a whole body can be compressed with, in the order they are preferred when a client
+ * accepts several of them equally. Brotli and zstd need their native libraries, so they are only
+ * used when {@link #isAvailable()}.
+ */
+enum Codec {
+    BROTLI("br", 0, 11) {
+        @Override
+        boolean isAvailable() {
+            return Brotli.isAvailable();
+        }
+
+        @Override
+        byte[] encode(final byte[] data, final int level) throws IOException {
+            return Encoder.compress(data, new Encoder.Parameters().setQuality(level));
+        }
+    },
+    ZSTD("zstd", 1, 19) {
+        @Override
+        boolean isAvailable() {
+            return Zstd.isAvailable();
+        }
+
+        @Override
+        byte[] encode(final byte[] data, final int level) {
+            return com.github.luben.zstd.Zstd.compress(data, level);
+        }
+    },
+    GZIP("gzip", 1, 9) {
+        @Override
+        byte[] encode(final byte[] data, final int level) throws IOException {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 64);
+            try (OutputStream encoder = new GZIPOutputStream(out) {
+                {
+                    def.setLevel(level);
+                }
+            }) {
+                encoder.write(data);
+            }
+            return out.toByteArray();
+        }
+    },
+    DEFLATE("deflate", 1, 9) {
+        @Override
+        byte[] encode(final byte[] data, final int level) throws IOException {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 64);
+            final Deflater deflater = new Deflater(level);
+            // HTTP's deflate is the zlib format, so the wrapper is kept.
+            try (OutputStream encoder = new DeflaterOutputStream(out, deflater)) {
+                encoder.write(data);
+            } finally {
+                deflater.end();
+            }
+            return out.toByteArray();
+        }
+    };
+
+    private final String encoding;
+    private final int minLevel;
+    private final int maxLevel;
+
+    Codec(final String encoding, final int minLevel, final int maxLevel) {
+        this.encoding = encoding;
+        this.minLevel = minLevel;
+        this.maxLevel = maxLevel;
+    }
+
+    /**
+     * Returns the value of the {@code content-encoding} header.
+     */
+    String encoding() {
+        return encoding;
+    }
+
+    int maxLevel() {
+        return maxLevel;
+    }
+
+    boolean isAvailable() {
+        return true;
+    }
+
+    abstract byte[] encode(byte[] data, int level) throws IOException;
+
+    /**
+     * Compresses {@code data} at once, at a level supported by this codec.
+     */
+    byte[] compress(final byte[] data, final int level) {
+        if (level < minLevel || level > maxLevel) {
+            throw new IllegalArgumentException(
+                    encoding + " level: " + level + " (expected: " + minLevel + ".." + maxLevel + ')');
+        }
+        try {
+            return encode(data, level);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to compress with " + encoding, e);
+        }
+    }
+}
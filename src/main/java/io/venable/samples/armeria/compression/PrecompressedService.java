@@ -0,0 +1,140 @@
+package io.venable.samples.armeria.compression;
+
+import com.linecorp.armeria.common.HttpData;
+import com.linecorp.armeria.common.HttpHeaderNames;
+import com.linecorp.armeria.common.HttpRequest;
+import com.linecorp.armeria.common.HttpResponse;
+import com.linecorp.armeria.common.HttpStatus;
+import com.linecorp.armeria.common.MediaType;
+import com.linecorp.armeria.common.ResponseHeaders;
+import com.linecorp.armeria.common.ResponseHeadersBuilder;
+import com.linecorp.armeria.common.annotation.Nullable;
+import com.linecorp.armeria.server.HttpService;
+import com.linecorp.armeria.server.ServiceRequestContext;
+
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Serves a constant body which was compressed once, at the highest level of each available
+ * {@link Codec}, when the service was created. Each request only picks the variant its
+ * {@code accept-encoding} asks for, so no bytes are encoded or compressed per request.
+ * <p>
+ * A variant is only kept if it is smaller than the body itself; short bodies grow when compressed.
+ * Compressed variants carry a {@code content-encoding}, so {@link ResponseCompression} leaves them alone.
+ */
+public final class PrecompressedService implements HttpService {
+    private final Variant identity;
+    private final Map<Codec, Variant> variants = new EnumMap<>(Codec.class);
+
+    private PrecompressedService(final MediaType contentType, final byte[] content) {
+        for (final Codec codec : Codec.values()) {
+            if (codec.isAvailable()) {
+                final byte[] compressed = codec.compress(content, codec.maxLevel());
+                if (compressed.length < content.length) {
+                    variants.put(codec, new Variant(contentType, codec.encoding(), true, compressed));
+                }
+            }
+        }
+        identity = new Variant(contentType, null, !variants.isEmpty(), content);
+    }
+
+    public static PrecompressedService of(final MediaType contentType, final String content) {
+        return of(contentType, content.getBytes(
+                contentType.charset() != null ? contentType.charset() : StandardCharsets.UTF_8));
+    }
+
+    public static PrecompressedService of(final MediaType contentType, final byte[] content) {
+        return new PrecompressedService(contentType, content.clone());
+    }
+
+    @Override
+    public HttpResponse serve(final ServiceRequestContext ctx, final HttpRequest req) {
+        return select(req.headers().get(HttpHeaderNames.ACCEPT_ENCODING)).toResponse();
+    }
+
+    /**
+     * Returns the length of the body sent for the given {@code accept-encoding}.
+     */
+    int contentLength(@Nullable final String acceptEncoding) {
+        return select(acceptEncoding).content.length();
+    }
+
+    /**
+     * Picks the accepted variant with the highest quality value. A {@code *} stands for the codings not
+     * listed, and ties go to the codec declared first.
+     */
+    private Variant select(@Nullable final String acceptEncoding) {
+        if (acceptEncoding == null || variants.isEmpty()) {
+            return identity;
+        }
+        float wildcard = 0;
+        final Map<Codec, Float> qualities = new EnumMap<>(Codec.class);
+        for (final String entry : acceptEncoding.split(",")) {
+            final int separator = entry.indexOf(';');
+            final String coding = (separator < 0 ? entry : entry.substring(0, separator))
+                    .trim().toLowerCase(Locale.ROOT);
+            final float quality = separator < 0 ? 1 : quality(entry.substring(separator + 1));
+            if ("*".equals(coding)) {
+                wildcard = quality;
+                continue;
+            }
+            for (final Codec codec : variants.keySet()) {
+                if (codec.encoding().equals(coding)) {
+                    qualities.put(codec, quality);
+                }
+            }
+        }
+        Variant selected = identity;
+        float best = 0;
+        for (final Map.Entry<Codec, Variant> variant : variants.entrySet()) {
+            final float quality = qualities.getOrDefault(variant.getKey(), wildcard);
+            if (quality > best) {
+                best = quality;
+                selected = variant.getValue();
+            }
+        }
+        return selected;
+    }
+
+    private static float quality(final String parameters) {
+        for (final String parameter : parameters.split(";")) {
+            final String trimmed = parameter.trim();
+            if (trimmed.startsWith("q=")) {
+                try {
+                    return Float.parseFloat(trimmed.substring(2));
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    private static final class Variant {
+        private final ResponseHeaders headers;
+        private final HttpData content;
+
+        Variant(final MediaType contentType, @Nullable final String encoding, final boolean vary,
+                final byte[] content) {
+            final ResponseHeadersBuilder builder = ResponseHeaders.builder(HttpStatus.OK)
+                    .contentType(contentType)
+                    .contentLength(content.length);
+            if (encoding != null) {
+                builder.set(HttpHeaderNames.CONTENT_ENCODING, encoding);
+            }
+            if (vary) {
+                // Caches must keep the variants apart, including the uncompressed one.
+                builder.set(HttpHeaderNames.VARY, HttpHeaderNames.ACCEPT_ENCODING.toString());
+            }
+            headers = builder.build();
+            this.content = HttpData.wrap(content);
+        }
+
+        HttpResponse toResponse() {
+            return HttpResponse.of(headers, content);
+        }
+    }
+}
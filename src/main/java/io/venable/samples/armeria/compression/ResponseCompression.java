@@ -0,0 +1,91 @@
+package io.venable.samples.armeria.compression;
+
+import com.linecorp.armeria.common.MediaType;
+import com.linecorp.armeria.server.HttpService;
+import com.linecorp.armeria.server.encoding.EncodingService;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Compresses responses with the coding the client prefers in its {@code accept-encoding}: {@code br}
+ * when the Brotli native library is available, then {@code gzip} and {@code deflate}. This relies on
+ * Armeria's {@link EncodingService}, which compresses chunk by chunk, so streamed responses stay streamed.
+ * <p>
+ * Only responses of an allowed media type are compressed; images, archives and arbitrary binary data
+ * are usually compressed already. Responses with a known length below {@code minBytes} are sent as they
+ * are, since the coding overhead outweighs the savings. Responses of unknown length are always compressed.
+ * <p>
+ * Armeria compresses at the codecs' default levels. Constant bodies can be compressed at the highest
+ * level once with {@link PrecompressedService}.
+ */
+public final class ResponseCompression {
+    static final int DEFAULT_MIN_BYTES = 1024;
+    static final List<MediaType> DEFAULT_MEDIA_TYPES = Collections.unmodifiableList(Arrays.asList(
+            MediaType.ANY_TEXT_TYPE,
+            MediaType.JSON,
+            MediaType.JSON_SEQ,
+            MediaType.JSON_LINES,
+            MediaType.XML_UTF_8.withoutParameters(),
+            MediaType.JAVASCRIPT_UTF_8.withoutParameters()));
+
+    private final int minBytes;
+    private final List<MediaType> mediaTypes;
+
+    private ResponseCompression(final int minBytes, final List<MediaType> mediaTypes) {
+        if (minBytes < 0) {
+            throw new IllegalArgumentException("minBytes: " + minBytes + " (expected: >= 0)");
+        }
+        this.minBytes = minBytes;
+        this.mediaTypes = Collections.unmodifiableList(new ArrayList<>(mediaTypes));
+    }
+
+    public static ResponseCompression of() {
+        return of(DEFAULT_MIN_BYTES, DEFAULT_MEDIA_TYPES);
+    }
+
+    /**
+     * Creates a compression setting for responses of at least {@code minBytes} whose content type belongs
+     * to one of {@code mediaTypes}, such as {@code text/*}.
+     */
+    public static ResponseCompression of(final int minBytes, final List<MediaType> mediaTypes) {
+        return new ResponseCompression(minBytes, mediaTypes);
+    }
+
+    public int minBytes() {
+        return minBytes;
+    }
+
+    public List<MediaType> mediaTypes() {
+        return mediaTypes;
+    }
+
+    /**
+     * Returns the codings the server can respond with, most preferred first.
+     */
+    public static List<String> encodings() {
+        final List<String> encodings = new ArrayList<>();
+        // Armeria negotiates these; zstd is only used for precompressed bodies.
+        for (final Codec codec : Arrays.asList(Codec.BROTLI, Codec.GZIP, Codec.DEFLATE)) {
+            if (codec.isAvailable()) {
+                encodings.add(codec.encoding());
+            }
+        }
+        return encodings;
+    }
+
+    public Function<? super HttpService, EncodingService> newDecorator() {
+        return EncodingService.builder()
+                .encodableContentTypes(mediaTypes)
+                .minBytesToForceChunkedEncoding(minBytes)
+                .newDecorator();
+    }
+
+    @Override
+    public String toString() {
+        return "minBytes=" + minBytes + ", mediaTypes=" + mediaTypes + ", encodings=" + encodings();
+    }
+}
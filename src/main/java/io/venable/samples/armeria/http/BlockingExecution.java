@@ -0,0 +1,48 @@
+package io.venable.samples.armeria.http;
+
+import com.linecorp.armeria.common.util.BlockingTaskExecutor;
+import com.linecorp.armeria.server.AnnotatedServiceBindingBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * Where the {@link com.linecorp.armeria.server.annotation.Blocking} methods of an annotated service run.
+ */
+public enum BlockingExecution {
+    /**
+     * The platform threads of the executor which the caller of {@code configure} supplies.
+     */
+    PLATFORM,
+    /**
+     * A new virtual thread for every request. Falls back to {@link #PLATFORM} with a warning when the JVM
+     * does not support virtual threads.
+     */
+    VIRTUAL;
+
+    private static final Logger log = LoggerFactory.getLogger(BlockingExecution.class);
+
+    public static BlockingExecution of(final String name) {
+        return valueOf(name.toUpperCase(Locale.ROOT));
+    }
+
+    /**
+     * Sets the blocking task executor of {@code builder}, taking it from {@code platformExecutor} when
+     * platform threads are chosen or virtual threads are not supported. Either executor is shut down when
+     * the server stops, so {@code platformExecutor} must not return an executor shared with anything else.
+     */
+    void configure(final AnnotatedServiceBindingBuilder builder, final String serviceName,
+                   final Supplier<? extends BlockingTaskExecutor> platformExecutor) {
+        if (this == VIRTUAL) {
+            final VirtualThreadTaskExecutor executor = VirtualThreadTaskExecutor.newExecutor(serviceName);
+            if (executor != null) {
+                builder.blockingTaskExecutor(executor, true);
+                return;
+            }
+            log.warn("Virtual threads need Java 21 or later; {} uses platform threads", serviceName);
+        }
+        builder.blockingTaskExecutor(platformExecutor.get(), true);
+    }
+}
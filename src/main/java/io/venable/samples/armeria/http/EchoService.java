@@ -1,25 +1,96 @@
 package io.venable.samples.armeria.http;
 
 import com.linecorp.armeria.common.AggregatedHttpRequest;
+import com.linecorp.armeria.common.HttpData;
+import com.linecorp.armeria.common.HttpHeaders;
+import com.linecorp.armeria.common.HttpRequest;
 import com.linecorp.armeria.common.HttpResponse;
+import com.linecorp.armeria.common.HttpStatus;
+import com.linecorp.armeria.common.MediaType;
+import com.linecorp.armeria.common.ResponseHeaders;
+import com.linecorp.armeria.common.stream.StreamMessage;
+import com.linecorp.armeria.server.ServiceRequestContext;
 import com.linecorp.armeria.server.annotation.Blocking;
 import com.linecorp.armeria.server.annotation.Post;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
-@Blocking
+/**
+ * Echoes the request body back as the response body.
+ * <p>
+ * {@code POST /echo} aggregates the request before responding, which is fine for small payloads.
+ * {@link #stream(ServiceRequestContext, HttpRequest)} pipes each {@link HttpData} chunk straight
+ * back as it arrives, so memory per request stays constant regardless of the payload size.
+ * It is bound as a plain route so that it can have its own maximum request length.
+ * <p>
+ * {@link #batch(ServiceRequestContext, HttpRequest)} echoes many small records in one streaming exchange,
+ * so that headers, routing and decorators are paid for once per batch instead of once per record. Records
+ * are newline-delimited for {@code application/x-ndjson} and text requests, and prefixed with their length
+ * as a four-byte big-endian integer for {@code application/octet-stream} requests. Each record is written
+ * back as soon as its last byte arrives, in order and in the same framing, while the rest of the batch is
+ * still being uploaded. Other content types are answered with {@code 415 Unsupported Media Type}.
+ * A record longer than {@link #MAX_BATCH_RECORD_LENGTH}, or a length-prefixed batch which ends inside a
+ * record, aborts the response.
+ * <p>
+ * Payloads are not logged here; sampled payloads are written by the access log.
+ */
 public class EchoService {
-    private static final Logger log = LoggerFactory.getLogger(EchoService.class);
+    /**
+     * The maximum request length for the streaming mode. Zero disables the limit.
+     */
+    static final long MAX_STREAMING_REQUEST_LENGTH = 0;
 
+    /**
+     * The maximum length of one record in the batch mode, which bounds the partial record held in memory.
+     */
+    static final int MAX_BATCH_RECORD_LENGTH = 1024 * 1024;
+
+    @Blocking
     @Post
     public HttpResponse doPost(final AggregatedHttpRequest aggregatedHttpRequest) {
-        final String content = aggregatedHttpRequest.contentAscii();
+        return HttpResponse.of(responseHeaders(aggregatedHttpRequest.contentType()), aggregatedHttpRequest.content());
+    }
 
-        log.info("Content: {}", content);
+    /**
+     * Echoes the request body chunk by chunk. The request is read only as fast as the client drains the
+     * response, so a slow reader slows its own upload instead of growing a buffer here.
+     * <p>
+     * Over HTTP/2 this needs the client to read the echo while it is still uploading. An Armeria 1.29 client
+     * does, but the window updates it writes meanwhile are not flushed until its next frame, so once the
+     * request and the response both fill their 1 MiB windows neither side can send and the stream is reset
+     * when the request times out. Such clients need a stream window as large as the body they send, or
+     * HTTP/1.1, which has no such window.
+     */
+    public HttpResponse stream(final ServiceRequestContext ctx, final HttpRequest request) {
+        return HttpResponse.of(responseHeaders(request.contentType()),
+                request.filter(HttpData.class::isInstance).map(HttpData.class::cast),
+                HttpHeaders.of());
+    }
+
+    public HttpResponse batch(final ServiceRequestContext ctx, final HttpRequest request) {
+        final RecordFraming framing = RecordFraming.of(request.contentType());
+        if (framing == null) {
+            return HttpResponse.of(HttpStatus.UNSUPPORTED_MEDIA_TYPE);
+        }
+        final RecordSplitter splitter = new RecordSplitter(framing, MAX_BATCH_RECORD_LENGTH);
+        final StreamMessage<HttpData> records = request.filter(HttpData.class::isInstance)
+                .map(object -> splitter.split((HttpData) object))
+                .filter(data -> !data.isEmpty());
+        // Subscribed to only once the request is complete, to flush the record left over at its end.
+        final StreamMessage<HttpData> lastRecord = StreamMessage.of(subscriber -> {
+            StreamMessage<HttpData> last;
+            try {
+                final HttpData data = splitter.finish();
+                last = data.isEmpty() ? StreamMessage.of() : StreamMessage.of(data);
+            } catch (RuntimeException e) {
+                last = StreamMessage.aborted(e);
+            }
+            last.subscribe(subscriber);
+        });
+        return HttpResponse.of(responseHeaders(request.contentType()), StreamMessage.concat(records, lastRecord));
+    }
 
-        return HttpResponse.builder()
-                .content(content)
-                .status(200)
+    private static ResponseHeaders responseHeaders(final MediaType contentType) {
+        return ResponseHeaders.builder(HttpStatus.OK)
+                .contentType(contentType != null ? contentType : MediaType.OCTET_STREAM)
                 .build();
     }
 }
@@ -0,0 +1,139 @@
+package io.venable.samples.armeria.http;
+
+import com.linecorp.armeria.common.annotation.Nullable;
+import com.linecorp.armeria.common.websocket.CloseWebSocketFrame;
+import com.linecorp.armeria.common.websocket.WebSocket;
+import com.linecorp.armeria.common.websocket.WebSocketCloseStatus;
+import com.linecorp.armeria.common.websocket.WebSocketFrame;
+import com.linecorp.armeria.common.websocket.WebSocketWriter;
+import com.linecorp.armeria.server.ServiceRequestContext;
+import com.linecorp.armeria.server.websocket.WebSocketServiceHandler;
+import io.venable.samples.armeria.throttling.MessageRateLimit;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Echoes every text and binary message of a WebSocket connection back on the same connection, so that
+ * the HTTP handshake, routing and decorators are paid for once per connection instead of once per message.
+ * <p>
+ * The next frame is read only after the echo of the previous one has been taken by the connection, so a
+ * client which sends faster than it reads is slowed down by TCP instead of filling the server's memory.
+ * Pings are answered with pongs, and a close frame is answered with the same status.
+ * <p>
+ * With a {@link MessageRateLimit}, every connection gets its own limiter, and a connection which sends
+ * more messages than it allows is closed with {@code 1008 Policy Violation}.
+ */
+public final class EchoWebSocketHandler implements WebSocketServiceHandler {
+    private static final Logger log = LoggerFactory.getLogger(EchoWebSocketHandler.class);
+
+    @Nullable
+    private final MessageRateLimit rateLimit;
+    private final LongAdder rateLimited = new LongAdder();
+
+    private EchoWebSocketHandler(@Nullable final MessageRateLimit rateLimit) {
+        this.rateLimit = rateLimit;
+    }
+
+    /**
+     * Creates a handler which limits the messages of every connection, unless {@code rateLimit} is
+     * {@code null}.
+     */
+    public static EchoWebSocketHandler of(@Nullable final MessageRateLimit rateLimit) {
+        return new EchoWebSocketHandler(rateLimit);
+    }
+
+    @Override
+    public WebSocket handle(final ServiceRequestContext ctx, final WebSocket in) {
+        final WebSocketWriter out = WebSocket.streaming();
+        in.subscribe(new EchoSubscriber(ctx, out, rateLimit != null ? rateLimit.newLimiter() : null),
+                ctx.eventLoop());
+        return out;
+    }
+
+    /**
+     * Returns the number of connections closed for sending too many messages.
+     */
+    public long rateLimitedCount() {
+        return rateLimited.sum();
+    }
+
+    private final class EchoSubscriber implements Subscriber<WebSocketFrame> {
+        private final ServiceRequestContext ctx;
+        private final WebSocketWriter out;
+        @Nullable
+        private final MessageRateLimit.Limiter limiter;
+        private Subscription subscription;
+
+        EchoSubscriber(final ServiceRequestContext ctx, final WebSocketWriter out,
+                       @Nullable final MessageRateLimit.Limiter limiter) {
+            this.ctx = ctx;
+            this.out = out;
+            this.limiter = limiter;
+        }
+
+        @Override
+        public void onSubscribe(final Subscription subscription) {
+            this.subscription = subscription;
+            // Stop reading once the client is gone.
+            out.whenComplete().handle((unused, cause) -> {
+                subscription.cancel();
+                return null;
+            });
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(final WebSocketFrame frame) {
+            switch (frame.type()) {
+                case TEXT:
+                case BINARY:
+                case CONTINUATION:
+                    if (limiter != null && !limiter.tryAcquire()) {
+                        rateLimited.increment();
+                        log.debug("Closing {}; over the message rate limit of {}", ctx, rateLimit);
+                        out.close(WebSocketCloseStatus.POLICY_VIOLATION, "Message rate limit exceeded");
+                        return;
+                    }
+                    echo(frame);
+                    break;
+                case PING:
+                    echo(WebSocketFrame.ofPong(frame.array()));
+                    break;
+                case CLOSE:
+                    final CloseWebSocketFrame close = (CloseWebSocketFrame) frame;
+                    if (WebSocketCloseStatus.EMPTY.equals(close.status())) {
+                        // 1005 means no status was sent, so it may not be sent back either.
+                        out.close();
+                    } else {
+                        out.close(close.status(), close.reasonPhrase());
+                    }
+                    break;
+                default:
+                    subscription.request(1);
+            }
+        }
+
+        private void echo(final WebSocketFrame frame) {
+            if (out.tryWrite(frame)) {
+                // Read on only once the connection has taken the echo.
+                out.whenConsumed().thenRun(() -> subscription.request(1));
+            }
+        }
+
+        @Override
+        public void onError(final Throwable cause) {
+            out.close(cause);
+        }
+
+        @Override
+        public void onComplete() {
+            if (out.isOpen()) {
+                out.close();
+            }
+        }
+    }
+}
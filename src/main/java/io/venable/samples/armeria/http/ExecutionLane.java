@@ -0,0 +1,95 @@
+package io.venable.samples.armeria.http;
+
+import com.linecorp.armeria.common.annotation.Nullable;
+import com.linecorp.armeria.common.util.EventLoopGroups;
+import io.netty.channel.EventLoopGroup;
+import io.venable.samples.armeria.throttling.Bulkhead;
+
+/**
+ * The resources a group of routes runs on apart from the rest of the server: event loops of its own for
+ * its services, and a {@link Bulkhead} which bounds its concurrent and queued requests. Routes outside
+ * any lane, such as {@code GET /}, stay on the server's worker group, so a surge on a lane's routes
+ * waits in the lane instead of in front of them.
+ * <p>
+ * Armeria still reads and writes every connection on the worker group; the lane takes over from the
+ * point where a request is handed to its service.
+ */
+public final class ExecutionLane {
+    private final String name;
+    private final int eventLoopThreads;
+    private final int maxConcurrency;
+    private final int maxQueued;
+
+    private ExecutionLane(final String name, final int eventLoopThreads, final int maxConcurrency,
+                          final int maxQueued) {
+        if (eventLoopThreads < 0) {
+            throw new IllegalArgumentException("eventLoopThreads: " + eventLoopThreads + " (expected: >= 0)");
+        }
+        if (maxConcurrency < 0) {
+            throw new IllegalArgumentException("maxConcurrency: " + maxConcurrency + " (expected: >= 0)");
+        }
+        if (maxQueued < 0) {
+            throw new IllegalArgumentException("maxQueued: " + maxQueued + " (expected: >= 0)");
+        }
+        this.name = name;
+        this.eventLoopThreads = eventLoopThreads;
+        this.maxConcurrency = maxConcurrency;
+        this.maxQueued = maxQueued;
+    }
+
+    /**
+     * Creates a lane with {@code eventLoopThreads} event loops of its own, or none if it is zero, which
+     * serves up to {@code maxConcurrency} requests at once, or any number if it is zero, and queues up to
+     * {@code maxQueued} more.
+     */
+    public static ExecutionLane of(final String name, final int eventLoopThreads, final int maxConcurrency,
+                                   final int maxQueued) {
+        return new ExecutionLane(name, eventLoopThreads, maxConcurrency, maxQueued);
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public int eventLoopThreads() {
+        return eventLoopThreads;
+    }
+
+    public int maxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public int maxQueued() {
+        return maxQueued;
+    }
+
+    /**
+     * Returns new event loops for the lane's services, or {@code null} if they share the worker group.
+     */
+    @Nullable
+    EventLoopGroup newEventLoopGroup() {
+        if (eventLoopThreads == 0) {
+            return null;
+        }
+        return EventLoopGroups.newEventLoopGroup(eventLoopThreads, "sample-" + name + "-lane", false);
+    }
+
+    /**
+     * Returns a new bulkhead for the lane's routes, or {@code null} if their concurrency is not limited.
+     */
+    @Nullable
+    Bulkhead newBulkhead() {
+        if (maxConcurrency == 0) {
+            return null;
+        }
+        return Bulkhead.of(name, maxConcurrency, maxQueued);
+    }
+
+    @Override
+    public String toString() {
+        return "name=" + name +
+               ", eventLoopThreads=" + (eventLoopThreads > 0 ? eventLoopThreads : "shared") +
+               ", maxConcurrency=" + (maxConcurrency > 0 ? maxConcurrency : "unlimited") +
+               ", maxQueued=" + maxQueued;
+    }
+}
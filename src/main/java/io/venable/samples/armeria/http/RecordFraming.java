@@ -0,0 +1,94 @@
+package io.venable.samples.armeria.http;
+
+import com.linecorp.armeria.common.HttpStatus;
+import com.linecorp.armeria.common.MediaType;
+import com.linecorp.armeria.common.annotation.Nullable;
+import com.linecorp.armeria.server.HttpStatusException;
+
+/**
+ * How the records of a batch are delimited, chosen by the content type of the request.
+ */
+enum RecordFraming {
+    /**
+     * Records end with {@code \n}, as in newline-delimited JSON. The last record may omit it.
+     */
+    LINES {
+        @Override
+        int completeLength(final byte[] bytes, final int length, final int newBytesOffset,
+                           final int maxRecordLength) {
+            // Bytes before newBytesOffset are a partial record, so they hold no newline.
+            for (int i = length - 1; i >= newBytesOffset; i--) {
+                if (bytes[i] == '\n') {
+                    return i + 1;
+                }
+            }
+            if (length > maxRecordLength) {
+                throw HttpStatusException.of(HttpStatus.REQUEST_ENTITY_TOO_LARGE);
+            }
+            return 0;
+        }
+
+        @Override
+        boolean acceptsPartialRecordAtEnd() {
+            return true;
+        }
+    },
+    /**
+     * Every record is preceded by its length as a four-byte big-endian integer.
+     */
+    LENGTH_PREFIXED {
+        @Override
+        int completeLength(final byte[] bytes, final int length, final int newBytesOffset,
+                           final int maxRecordLength) {
+            int offset = 0;
+            while (length - offset >= Integer.BYTES) {
+                final int recordLength = (bytes[offset] & 0xff) << 24 | (bytes[offset + 1] & 0xff) << 16
+                                         | (bytes[offset + 2] & 0xff) << 8 | bytes[offset + 3] & 0xff;
+                if (recordLength < 0 || recordLength > maxRecordLength) {
+                    throw HttpStatusException.of(HttpStatus.REQUEST_ENTITY_TOO_LARGE);
+                }
+                if (length - offset - Integer.BYTES < recordLength) {
+                    break;
+                }
+                offset += Integer.BYTES + recordLength;
+            }
+            return offset;
+        }
+
+        @Override
+        boolean acceptsPartialRecordAtEnd() {
+            return false;
+        }
+    };
+
+    /**
+     * Returns the framing for a request of the given content type, or {@code null} if batches of that
+     * type are not supported.
+     */
+    @Nullable
+    static RecordFraming of(@Nullable final MediaType contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        if (contentType.is(MediaType.OCTET_STREAM)) {
+            return LENGTH_PREFIXED;
+        }
+        if (contentType.is(MediaType.JSON_LINES) || contentType.is(MediaType.ANY_TEXT_TYPE)) {
+            return LINES;
+        }
+        return null;
+    }
+
+    /**
+     * Returns how many of the first {@code length} bytes form complete records. The bytes from
+     * {@code newBytesOffset} on were appended to a partial record since the last call.
+     *
+     * @throws HttpStatusException if a record is longer than {@code maxRecordLength}
+     */
+    abstract int completeLength(byte[] bytes, int length, int newBytesOffset, int maxRecordLength);
+
+    /**
+     * Returns whether the bytes left over when the batch ends are a record of their own.
+     */
+    abstract boolean acceptsPartialRecordAtEnd();
+}
@@ -0,0 +1,96 @@
+package io.venable.samples.armeria.http;
+
+import com.linecorp.armeria.common.HttpData;
+import com.linecorp.armeria.common.HttpStatus;
+import com.linecorp.armeria.server.HttpStatusException;
+
+import java.util.Arrays;
+
+/**
+ * Cuts the chunks of one batch request at record boundaries, carrying a record which spans chunks over to
+ * the next one. Only that partial record is copied; a chunk which holds whole records is passed on as is.
+ * <p>
+ * Not thread-safe; a request's chunks arrive one after another.
+ */
+final class RecordSplitter {
+    private final RecordFraming framing;
+    private final int maxRecordLength;
+    private byte[] pending = new byte[0];
+    private int pendingLength;
+
+    RecordSplitter(final RecordFraming framing, final int maxRecordLength) {
+        this.framing = framing;
+        this.maxRecordLength = maxRecordLength;
+    }
+
+    /**
+     * Returns the records completed by {@code chunk}, which is empty if none were. The splitter owns
+     * {@code chunk}: it is either returned as is or released, so that a pooled chunk is not leaked when
+     * only a copy of its records is passed on.
+     *
+     * @throws HttpStatusException if a record is longer than the maximum record length
+     */
+    HttpData split(final HttpData chunk) {
+        HttpData records = null;
+        try {
+            records = cut(chunk);
+            return records;
+        } finally {
+            if (records != chunk) {
+                chunk.close();
+            }
+        }
+    }
+
+    private HttpData cut(final HttpData chunk) {
+        if (chunk.isEmpty()) {
+            return chunk;
+        }
+        final byte[] bytes = chunk.array();
+        if (pendingLength == 0) {
+            final int complete = framing.completeLength(bytes, bytes.length, 0, maxRecordLength);
+            if (complete == bytes.length) {
+                return chunk;
+            }
+            append(bytes, complete, bytes.length - complete);
+            return complete == 0 ? HttpData.empty() : HttpData.wrap(bytes, 0, complete);
+        }
+
+        final int newBytesOffset = pendingLength;
+        append(bytes, 0, bytes.length);
+        final int complete = framing.completeLength(pending, pendingLength, newBytesOffset, maxRecordLength);
+        if (complete == 0) {
+            return HttpData.empty();
+        }
+        // The buffer is reused for the next partial record, so the completed records are copied out.
+        final HttpData records = HttpData.copyOf(pending, 0, complete);
+        pendingLength -= complete;
+        System.arraycopy(pending, complete, pending, 0, pendingLength);
+        return records;
+    }
+
+    /**
+     * Returns the record left over at the end of the request, which is empty if there is none.
+     *
+     * @throws HttpStatusException if the framing does not allow the request to end inside a record
+     */
+    HttpData finish() {
+        if (pendingLength == 0) {
+            return HttpData.empty();
+        }
+        if (!framing.acceptsPartialRecordAtEnd()) {
+            throw HttpStatusException.of(HttpStatus.BAD_REQUEST);
+        }
+        final HttpData record = HttpData.copyOf(pending, 0, pendingLength);
+        pendingLength = 0;
+        return record;
+    }
+
+    private void append(final byte[] bytes, final int offset, final int length) {
+        if (pendingLength + length > pending.length) {
+            pending = Arrays.copyOf(pending, Math.max(pendingLength + length, pending.length * 2));
+        }
+        System.arraycopy(bytes, offset, pending, pendingLength, length);
+        pendingLength += length;
+    }
+}
@@ -1,43 +1,319 @@
 package io.venable.samples.armeria.http;
 
-import com.linecorp.armeria.common.HttpResponse;
+import com.linecorp.armeria.common.HttpHeaderNames;
+import com.linecorp.armeria.common.MediaType;
+import com.linecorp.armeria.common.SessionProtocol;
+import com.linecorp.armeria.common.annotation.Nullable;
+import com.linecorp.armeria.server.AnnotatedServiceBindingBuilder;
+import com.linecorp.armeria.server.HttpService;
 import com.linecorp.armeria.server.Server;
 import com.linecorp.armeria.server.ServerBuilder;
+import com.linecorp.armeria.server.ServerPort;
+import com.linecorp.armeria.server.ServiceBindingBuilder;
+import com.linecorp.armeria.server.healthcheck.HealthCheckService;
+import com.linecorp.armeria.server.healthcheck.SettableHealthChecker;
+import com.linecorp.armeria.server.websocket.WebSocketService;
+import io.netty.channel.EventLoopGroup;
 import io.venable.samples.armeria.CopyDecorator;
+import io.venable.samples.armeria.accesslog.AsyncAccessLogWriter;
+import io.venable.samples.armeria.caching.SingleFlight;
+import io.venable.samples.armeria.compression.PrecompressedService;
+import io.venable.samples.armeria.compression.ResponseCompression;
+import io.venable.samples.armeria.metrics.EventLoopWatchdog;
+import io.venable.samples.armeria.metrics.InFlightRequests;
+import io.venable.samples.armeria.metrics.Layer;
+import io.venable.samples.armeria.metrics.PipelineMetrics;
+import io.venable.samples.armeria.throttling.Bulkhead;
+import io.venable.samples.armeria.throttling.ByteBudget;
+import io.venable.samples.armeria.throttling.ByteBudgetDecorator;
+import io.venable.samples.armeria.throttling.MessageRateLimit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
 public class SampleHttpServer {
     private static final Logger log = LoggerFactory.getLogger(SampleHttpServer.class);
+    private static final Path ACCESS_LOG = Paths.get("logs", "access.log");
+    static final Duration DEFAULT_STALL_THRESHOLD = Duration.ofMillis(100);
+    static final long DEFAULT_ECHO_MAX_BUFFERED_BYTES = 64 * 1024 * 1024;
+    static final MessageRateLimit DEFAULT_ECHO_WEB_SOCKET_RATE_LIMIT = MessageRateLimit.of(1000, 200);
+    static final Duration DEFAULT_ROOT_CACHE_TTL = Duration.ofSeconds(1);
+    static final int DEFAULT_ROOT_CACHE_MAX_ENTRIES = 16;
+    static final ExecutionLane DEFAULT_ECHO_LANE =
+            ExecutionLane.of("echo", Runtime.getRuntime().availableProcessors(), 64, 16);
+    static final String READINESS_PATH = "/internal/ready";
     private final Server server;
+    private final PipelineMetrics metrics;
+    @Nullable
+    private final Server metricsServer;
+    private final List<EventLoopWatchdog> watchdogs;
+    private final SettableHealthChecker readiness;
+    private final InFlightRequests inFlightRequests;
+    private final CompletableFuture<Void> whenReady;
 
-    private SampleHttpServer(final Server server) {
+    private SampleHttpServer(final Server server, final PipelineMetrics metrics, @Nullable final Server metricsServer,
+                             final List<EventLoopWatchdog> watchdogs, final SettableHealthChecker readiness,
+                             final InFlightRequests inFlightRequests, final CompletableFuture<Void> whenReady) {
         this.server = server;
+        this.metrics = metrics;
+        this.metricsServer = metricsServer;
+        this.watchdogs = watchdogs;
+        this.readiness = readiness;
+        this.inFlightRequests = inFlightRequests;
+        this.whenReady = whenReady;
     }
 
-    private static Server newServer(final int port) {
+    private static Server newServer(final Consumer<? super ServerBuilder> listeners,
+                                    final BlockingExecution echoExecution,
+                                    final PipelineMetrics metrics,
+                                    @Nullable final ResponseCompression compression,
+                                    final Function<? super HttpService, ? extends HttpService> echoAdmission,
+                                    @Nullable final MessageRateLimit echoWebSocketRateLimit,
+                                    final ExecutionLane echoLane,
+                                    @Nullable final EventLoopGroup echoEventLoops,
+                                    final SingleFlight rootSingleFlight,
+                                    final ServerLifecycle lifecycle,
+                                    final SettableHealthChecker readiness,
+                                    final InFlightRequests inFlightRequests) {
         final ServerBuilder serverBuilder = Server.builder();
-        return serverBuilder.http(port)
-                .service("/", (ctx, req) -> HttpResponse.of("Hello, Armeria!"))
+        listeners.accept(serverBuilder);
+        // Not ready until warmed up. Armeria also reports not ready as soon as the server starts stopping,
+        // and keeps serving through the quiet period, so that load balancers can move traffic away first.
+        serverBuilder.service(READINESS_PATH, HealthCheckService.of(readiness));
+        serverBuilder.gracefulShutdownTimeout(lifecycle.drainQuietPeriod(), lifecycle.drainTimeout());
+        serverBuilder.blockingTaskExecutor(metrics.newBlockingTaskExecutor("sample-blocking"), true);
+        // The echo routes run in a lane of their own; GET / stays on the worker group, ahead of any echo backlog.
+        final Bulkhead echoBulkhead = echoLane.newBulkhead();
+        final EchoService echoService = new EchoService();
+        final AnnotatedServiceBindingBuilder echoBinding = serverBuilder.annotatedService().pathPrefix("/echo");
+        echoExecution.configure(echoBinding, "echo", () -> metrics.newBlockingTaskExecutor("sample-echo-blocking"));
+        // Only the aggregating echo holds whole bodies; the streaming echo keeps a constant amount in memory.
+        echoBinding.decorator(echoAdmission);
+        if (echoEventLoops != null) {
+            echoBinding.serviceWorkerGroup(echoEventLoops, true);
+        }
+        if (echoBulkhead != null) {
+            // Wraps the admission decorator, so that queued requests do not hold on to the byte budget.
+            echoBinding.decorator(echoBulkhead.newDecorator());
+        }
+        echoBinding.build(echoService);
+        inLane(serverBuilder.route().post("/echo/stream"), echoEventLoops, echoBulkhead)
+                .maxRequestLength(EchoService.MAX_STREAMING_REQUEST_LENGTH)
+                .build(echoService::stream);
+        inLane(serverBuilder.route().post("/echo/batch"), echoEventLoops, echoBulkhead)
+                .maxRequestLength(EchoService.MAX_STREAMING_REQUEST_LENGTH)
+                .build(echoService::batch);
+        // A WebSocket holds its connection for as long as it is open, so it only takes the lane's event loops.
+        inLane(serverBuilder.route().path("/echo/ws"), echoEventLoops, null)
+                .build(WebSocketService.builder(EchoWebSocketHandler.of(echoWebSocketRateLimit))
+                                       .aggregateContinuation(true)
+                                       .build());
+        serverBuilder
+                .service("/", PrecompressedService.of(MediaType.PLAIN_TEXT_UTF_8, "Hello, Armeria!")
+                                                  .decorate(rootSingleFlight.newDecorator()))
+                // Decorators added later wrap the earlier ones.
+                .decorator(metrics.newDecorator(Layer.SERVICE))
                 .decorator(CopyDecorator.newDecorator())
-                .annotatedService("/echo", new EchoService())
+                .decorator(metrics.newDecorator(Layer.COPY_DECORATOR));
+        if (compression != null) {
+            serverBuilder.decorator(compression.newDecorator());
+        }
+        serverBuilder.decorator(inFlightRequests.newDecorator());
+        final AsyncAccessLogWriter accessLogWriter = AsyncAccessLogWriter.of(ACCESS_LOG);
+        metrics.include(accessLogWriter);
+        return serverBuilder
+                .accessLogWriter(accessLogWriter, true)
                 .build();
     }
 
+    private static ServiceBindingBuilder inLane(final ServiceBindingBuilder binding,
+                                                @Nullable final EventLoopGroup eventLoops,
+                                                @Nullable final Bulkhead bulkhead) {
+        if (eventLoops != null) {
+            binding.serviceWorkerGroup(eventLoops, true);
+        }
+        if (bulkhead != null) {
+            binding.decorator(bulkhead.newDecorator());
+        }
+        return binding;
+    }
+
     public static SampleHttpServer createServer() {
-        final Server server = newServer(8080);
+        return createServer(serverBuilder -> serverBuilder.http(8080));
+    }
+
+    /**
+     * Creates and starts a server tuned by the given settings, logging the values in effect.
+     */
+    public static SampleHttpServer createServer(final ServerSettings settings) {
+        log.info("Effective server settings: {}", settings);
+        return start(settings::applyTo, settings.echoBlockingExecution(), settings.metricsPort(),
+                settings.stallThreshold(), settings.compression(), settings.echoAdmission(),
+                settings.echoWebSocketRateLimit(), settings.echoLane(), settings.rootSingleFlight(),
+                settings.lifecycle());
+    }
+
+    /**
+     * Creates and starts a server whose listeners, and optionally TLS, are set up by the given customizer.
+     */
+    public static SampleHttpServer createServer(final Consumer<? super ServerBuilder> listeners) {
+        return createServer(listeners, BlockingExecution.PLATFORM);
+    }
+
+    /**
+     * Creates and starts a server whose echo service runs its blocking work as chosen by {@code echoExecution}.
+     */
+    public static SampleHttpServer createServer(final Consumer<? super ServerBuilder> listeners,
+                                                final BlockingExecution echoExecution) {
+        return createServer(listeners, echoExecution, 0);
+    }
 
-        //server.closeOnJvmShutdown();
+    /**
+     * Creates and starts a server which also serves Prometheus metrics at {@code /metrics} on
+     * {@code metricsPort}, unless it is zero.
+     */
+    public static SampleHttpServer createServer(final Consumer<? super ServerBuilder> listeners,
+                                                final BlockingExecution echoExecution,
+                                                final int metricsPort) {
+        return start(listeners, echoExecution, metricsPort, DEFAULT_STALL_THRESHOLD, ResponseCompression.of(),
+                ByteBudgetDecorator.newDecorator(ByteBudget.of(DEFAULT_ECHO_MAX_BUFFERED_BYTES),
+                                                 ByteBudgetDecorator.OverBudget.WAIT),
+                DEFAULT_ECHO_WEB_SOCKET_RATE_LIMIT, DEFAULT_ECHO_LANE,
+                newRootSingleFlight(DEFAULT_ROOT_CACHE_TTL, DEFAULT_ROOT_CACHE_MAX_ENTRIES), ServerLifecycle.of());
+    }
+
+    private static SampleHttpServer start(final Consumer<? super ServerBuilder> listeners,
+                                          final BlockingExecution echoExecution,
+                                          final int metricsPort,
+                                          final Duration stallThreshold,
+                                          @Nullable final ResponseCompression compression,
+                                          final Function<? super HttpService, ? extends HttpService> echoAdmission,
+                                          @Nullable final MessageRateLimit echoWebSocketRateLimit,
+                                          final ExecutionLane echoLane,
+                                          final SingleFlight rootSingleFlight,
+                                          final ServerLifecycle lifecycle) {
+        final long startNanos = System.nanoTime();
+        final PipelineMetrics metrics = new PipelineMetrics();
+        final SettableHealthChecker readiness = new SettableHealthChecker(false);
+        final InFlightRequests inFlightRequests = new InFlightRequests();
+        final EventLoopGroup echoEventLoops = echoLane.newEventLoopGroup();
+        final Server server = newServer(listeners, echoExecution, metrics, compression, echoAdmission,
+                                        echoWebSocketRateLimit, echoLane, echoEventLoops, rootSingleFlight, lifecycle,
+                                        readiness, inFlightRequests);
+        metrics.include(rootSingleFlight);
+        metrics.include(inFlightRequests);
 
         server.start().join();
 
         log.info("Server has been started. Serving dummy service at http://127.0.0.1:{}",
                 server.activeLocalPort());
 
-        return new SampleHttpServer(server);
+        final CompletableFuture<Void> whenReady = warmUp(server, lifecycle.warmupRounds()).handle((unused, cause) -> {
+            if (cause != null) {
+                log.warn("Warm-up failed; reporting ready anyway", cause);
+            }
+            readiness.setHealthy(true);
+            log.info("Ready at http://127.0.0.1:{}{} after {} ms", server.activeLocalPort(), READINESS_PATH,
+                     (System.nanoTime() - startNanos) / 1_000_000);
+            return null;
+        });
+
+        final List<EventLoopWatchdog> watchdogs = new ArrayList<>();
+        if (!stallThreshold.isZero()) {
+            watchdogs.add(EventLoopWatchdog.start("worker", server.config().workerGroup(), stallThreshold));
+            // The lane's services run on event loops of their own, which the worker group's watchdog cannot see.
+            if (echoEventLoops != null) {
+                watchdogs.add(EventLoopWatchdog.start(echoLane.name() + "-lane", echoEventLoops, stallThreshold));
+            }
+            metrics.include(EventLoopWatchdog.metricsOf(watchdogs));
+        }
+
+        Server metricsServer = null;
+        if (metricsPort > 0) {
+            // A server of its own, so that the internal port serves nothing but the metrics.
+            metricsServer = Server.builder()
+                    .http(metricsPort)
+                    .service("/metrics", metrics.prometheusService())
+                    .build();
+            metricsServer.start().join();
+            log.info("Serving metrics at http://127.0.0.1:{}/metrics", metricsPort);
+        }
+
+        return new SampleHttpServer(server, metrics, metricsServer, watchdogs, readiness, inFlightRequests,
+                                    whenReady);
+    }
+
+    private static CompletableFuture<Void> warmUp(final Server server, final int rounds) {
+        if (rounds == 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        for (final ServerPort port : server.activePorts().values()) {
+            if (port.hasHttp()) {
+                return Warmup.start(port.localAddress().getPort(), rounds);
+            }
+        }
+        log.warn("Skipping the warm-up; there is no plaintext HTTP listener to send it to");
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Creates the single flight of {@code GET /}, whose body only varies by {@code accept-encoding}.
+     * A zero {@code cacheTtl} disables its cache.
+     */
+    static SingleFlight newRootSingleFlight(final Duration cacheTtl, final int cacheMaxEntries) {
+        return SingleFlight.of("root", Collections.singletonList(HttpHeaderNames.ACCEPT_ENCODING.toString()),
+                               cacheTtl, cacheMaxEntries);
+    }
+
+    public int activeLocalPort(final SessionProtocol protocol) {
+        return server.activeLocalPort(protocol);
+    }
+
+    /**
+     * Returns a future which completes once the warm-up is over and {@value #READINESS_PATH} reports ready.
+     */
+    public CompletableFuture<Void> whenReady() {
+        return whenReady;
+    }
+
+    /**
+     * Drains and stops the server when the JVM shuts down, such as on {@code SIGTERM}.
+     */
+    public void closeOnJvmShutdown() {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> shutdown().join(), "sample-server-shutdown"));
+    }
+
+    PipelineMetrics metrics() {
+        return metrics;
     }
 
-    void shutdown() {
-        server.stop();
+    /**
+     * Reports not ready and drains the requests in flight, then stops the servers.
+     *
+     * @return a future which completes once everything has stopped
+     */
+    public CompletableFuture<Void> shutdown() {
+        final long startNanos = System.nanoTime();
+        readiness.setHealthy(false);
+        log.info("Stopping with {} requests in flight", inFlightRequests.count());
+        // The metrics stay up while the server drains.
+        return server.stop()
+                     .thenCompose(unused -> metricsServer != null ? metricsServer.stop() :
+                                            CompletableFuture.completedFuture(null))
+                     .whenComplete((unused, cause) -> {
+                         for (final EventLoopWatchdog watchdog : watchdogs) {
+                             watchdog.close();
+                         }
+                         log.info("Stopped in {} ms", (System.nanoTime() - startNanos) / 1_000_000);
+                     });
     }
 }
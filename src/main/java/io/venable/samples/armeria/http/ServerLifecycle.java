@@ -0,0 +1,65 @@
+package io.venable.samples.armeria.http;
+
+import java.time.Duration;
+
+/**
+ * How {@link SampleHttpServer} becomes ready and how it stops.
+ * <p>
+ * After it starts, the server sends itself {@code warmupRounds} rounds of requests through every route and
+ * its decorators, so that the JIT compiles them before real traffic arrives, and only then reports ready at
+ * {@code /internal/ready}. When it stops, it reports not ready at once, keeps serving until no request has
+ * arrived for {@code drainQuietPeriod}, and closes the connections after {@code drainTimeout} at the
+ * latest.
+ */
+public final class ServerLifecycle {
+    private static final ServerLifecycle IMMEDIATE = new ServerLifecycle(0, Duration.ZERO, Duration.ZERO);
+
+    private final int warmupRounds;
+    private final Duration drainQuietPeriod;
+    private final Duration drainTimeout;
+
+    private ServerLifecycle(final int warmupRounds, final Duration drainQuietPeriod, final Duration drainTimeout) {
+        if (warmupRounds < 0) {
+            throw new IllegalArgumentException("warmupRounds: " + warmupRounds + " (expected: >= 0)");
+        }
+        if (drainQuietPeriod.isNegative() || drainTimeout.compareTo(drainQuietPeriod) < 0) {
+            throw new IllegalArgumentException("drainQuietPeriod: " + drainQuietPeriod + ", drainTimeout: " +
+                                               drainTimeout + " (expected: 0 <= drainQuietPeriod <= drainTimeout)");
+        }
+        this.warmupRounds = warmupRounds;
+        this.drainQuietPeriod = drainQuietPeriod;
+        this.drainTimeout = drainTimeout;
+    }
+
+    /**
+     * Returns a lifecycle which is ready as soon as the server starts and stops without draining, as tests
+     * and benchmarks want.
+     */
+    public static ServerLifecycle of() {
+        return IMMEDIATE;
+    }
+
+    public static ServerLifecycle of(final int warmupRounds, final Duration drainQuietPeriod,
+                                     final Duration drainTimeout) {
+        return new ServerLifecycle(warmupRounds, drainQuietPeriod, drainTimeout);
+    }
+
+    public int warmupRounds() {
+        return warmupRounds;
+    }
+
+    public Duration drainQuietPeriod() {
+        return drainQuietPeriod;
+    }
+
+    public Duration drainTimeout() {
+        return drainTimeout;
+    }
+
+    @Override
+    public String toString() {
+        return "warmupRounds=" + warmupRounds +
+               ", drainQuietPeriodMillis=" + drainQuietPeriod.toMillis() +
+               ", drainTimeoutMillis=" + drainTimeout.toMillis();
+    }
+}
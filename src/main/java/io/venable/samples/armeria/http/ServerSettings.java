@@ -0,0 +1,419 @@
+package io.venable.samples.armeria.http;
+
+import com.linecorp.armeria.common.Flags;
+import com.linecorp.armeria.common.MediaType;
+import com.linecorp.armeria.common.annotation.Nullable;
+import com.linecorp.armeria.common.util.EventLoopGroups;
+import com.linecorp.armeria.common.util.TransportType;
+import com.linecorp.armeria.server.HttpService;
+import com.linecorp.armeria.server.ServerBuilder;
+import io.venable.samples.armeria.caching.SingleFlight;
+import io.venable.samples.armeria.compression.ResponseCompression;
+import io.venable.samples.armeria.throttling.ByteBudget;
+import io.venable.samples.armeria.throttling.ByteBudgetDecorator;
+import io.venable.samples.armeria.throttling.MessageRateLimit;
+import io.venable.samples.armeria.tls.ServerTls;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.function.Function;
+
+/**
+ * Tuning for {@link SampleHttpServer}, read from a properties file and system properties.
+ * <p>
+ * The file is {@code server.properties} in the working directory, or the path in the
+ * {@code sample.server.config} system property. System properties starting with {@code sample.server.}
+ * override the file, so a single setting can be changed with {@code -Dsample.server.workerThreads=4}.
+ * <table>
+ *   <caption>Settings</caption>
+ *   <tr><th>Name</th><th>Default</th><th>Meaning</th></tr>
+ *   <tr><td>{@code sample.server.listeners}</td><td>{@code 8080}</td>
+ *       <td>Comma-separated {@code port} or {@code host:port} entries, each serving HTTP/1 and HTTP/2</td></tr>
+ *   <tr><td>{@code sample.server.tls.listeners}</td><td>none</td>
+ *       <td>Comma-separated {@code port} or {@code host:port} entries serving HTTPS, see
+ *       {@link io.venable.samples.armeria.tls.ServerTls}</td></tr>
+ *   <tr><td>{@code sample.server.tls.certificate}, {@code sample.server.tls.key}</td>
+ *       <td>{@code tls/cert.pem}, {@code tls/key.pem}</td>
+ *       <td>PEM certificate chain and PKCS#8 key, reloaded when they change</td></tr>
+ *   <tr><td>{@code sample.server.workerThreads}</td><td>Armeria's shared worker group</td>
+ *       <td>Number of event loops in a worker group owned by this server</td></tr>
+ *   <tr><td>{@code sample.server.transport}</td><td>{@code auto}</td>
+ *       <td>{@code auto} for Armeria's choice, or {@code nio}, {@code epoll} or {@code io_uring}</td></tr>
+ *   <tr><td>{@code sample.server.maxNumConnections}</td><td>unlimited</td><td>Maximum open connections</td></tr>
+ *   <tr><td>{@code sample.server.idleTimeoutMillis}</td><td>Armeria's default</td>
+ *       <td>Idle connection timeout, {@code 0} to disable</td></tr>
+ *   <tr><td>{@code sample.server.http2InitialConnectionWindowSize}</td><td>Armeria's default</td>
+ *       <td>HTTP/2 connection flow-control window in bytes</td></tr>
+ *   <tr><td>{@code sample.server.http2InitialStreamWindowSize}</td><td>Armeria's default</td>
+ *       <td>HTTP/2 stream flow-control window in bytes</td></tr>
+ *   <tr><td>{@code sample.server.http2MaxStreamsPerConnection}</td><td>Armeria's default</td>
+ *       <td>Requests an HTTP/2 client may have in flight on one connection before it opens another, see
+ *       {@link io.venable.samples.armeria.client.ClientProfile}</td></tr>
+ *   <tr><td>{@code sample.server.metricsPort}</td><td>{@code 9090}</td>
+ *       <td>Internal port serving Prometheus metrics at {@code /metrics}, {@code 0} to disable</td></tr>
+ *   <tr><td>{@code sample.server.stallThresholdMillis}</td><td>{@code 100}</td>
+ *       <td>Event loop stall reporting threshold, see {@link io.venable.samples.armeria.metrics.EventLoopWatchdog},
+ *       {@code 0} to disable</td></tr>
+ *   <tr><td>{@code sample.server.compression.enabled}</td><td>{@code true}</td>
+ *       <td>Whether responses are compressed for clients that accept it, see
+ *       {@link io.venable.samples.armeria.compression.ResponseCompression}</td></tr>
+ *   <tr><td>{@code sample.server.compression.minBytes}</td><td>{@code 1024}</td>
+ *       <td>Smallest response, by content length, that is compressed</td></tr>
+ *   <tr><td>{@code sample.server.compression.mediaTypes}</td><td>text, JSON, XML and JavaScript</td>
+ *       <td>Comma-separated media types, such as {@code text/*}, whose responses are compressed</td></tr>
+ *   <tr><td>{@code sample.server.warmup.rounds}</td><td>{@code 500}</td>
+ *       <td>Rounds of requests the server sends itself before it reports ready, see {@link ServerLifecycle}</td></tr>
+ *   <tr><td>{@code sample.server.drain.quietPeriodMillis}</td><td>{@code 2000}</td>
+ *       <td>How long a stopping server must see no new request before it closes</td></tr>
+ *   <tr><td>{@code sample.server.drain.timeoutMillis}</td><td>{@code 10000}</td>
+ *       <td>How long a stopping server waits for requests in flight at most</td></tr>
+ *   <tr><td>{@code sample.server.root.cacheTtlMillis}</td><td>{@code 1000}</td>
+ *       <td>How long {@code GET /} responses are cached, {@code 0} to only coalesce concurrent requests, see
+ *       {@link io.venable.samples.armeria.caching.SingleFlight}</td></tr>
+ *   <tr><td>{@code sample.server.root.cacheMaxEntries}</td><td>{@code 16}</td>
+ *       <td>Cached {@code GET /} responses, one per {@code accept-encoding} value</td></tr>
+ *   <tr><td>{@code sample.server.echo.blockingExecution}</td><td>{@code platform}</td>
+ *       <td>{@code platform} or {@code virtual}, see {@link BlockingExecution}</td></tr>
+ *   <tr><td>{@code sample.server.echo.maxBufferedBytes}</td><td>{@code 67108864} (64 MiB)</td>
+ *       <td>Request body bytes that {@code POST /echo} may hold across all requests, {@code 0} for no limit, see
+ *       {@link io.venable.samples.armeria.throttling.ByteBudgetDecorator}</td></tr>
+ *   <tr><td>{@code sample.server.echo.overBudget}</td><td>{@code wait}</td>
+ *       <td>{@code wait} to pause requests which do not fit, or {@code reject} to answer them with 503</td></tr>
+ *   <tr><td>{@code sample.server.echo.webSocket.messagesPerSecond}</td><td>{@code 1000}</td>
+ *       <td>Messages each {@code /echo/ws} connection may send per second, {@code 0} for no limit, see
+ *       {@link EchoWebSocketHandler}</td></tr>
+ *   <tr><td>{@code sample.server.echo.webSocket.burst}</td><td>{@code 200}</td>
+ *       <td>Messages each {@code /echo/ws} connection may send at once</td></tr>
+ *   <tr><td>{@code sample.server.echo.lane.eventLoopThreads}</td><td>available processors</td>
+ *       <td>Event loops of the echo routes' own, {@code 0} to run them on the worker group, see
+ *       {@link ExecutionLane}</td></tr>
+ *   <tr><td>{@code sample.server.echo.lane.maxConcurrency}</td><td>{@code 64}</td>
+ *       <td>Echo requests served at once, {@code 0} for no limit, see
+ *       {@link io.venable.samples.armeria.throttling.Bulkhead}</td></tr>
+ *   <tr><td>{@code sample.server.echo.lane.maxQueued}</td><td>{@code 16}</td>
+ *       <td>Echo requests waiting for a place before the next is answered with 503</td></tr>
+ * </table>
+ * Settings that are left out keep the Armeria default.
+ * <p>
+ * Armeria picks one transport for all of its event loops when it is first used, so the transport is
+ * passed on as the {@code com.linecorp.armeria.transportType} flag by {@link #applyGlobalFlags()}, which
+ * must be called before anything else touches Armeria. Loading settings has no global side effects.
+ */
+public final class ServerSettings {
+    static final String PREFIX = "sample.server.";
+    private static final String CONFIG_PROPERTY = PREFIX + "config";
+    private static final String DEFAULT_CONFIG_FILE = "server.properties";
+    private static final String TRANSPORT_FLAG = "com.linecorp.armeria.transportType";
+    private static final int DEFAULT_WARMUP_ROUNDS = 500;
+    private static final long DEFAULT_DRAIN_QUIET_PERIOD_MILLIS = 2000;
+    private static final long DEFAULT_DRAIN_TIMEOUT_MILLIS = 10_000;
+
+    private final List<InetSocketAddress> listeners;
+    private final List<InetSocketAddress> tlsListeners;
+    private final Path tlsCertificate;
+    private final Path tlsKey;
+    private final int workerThreads;
+    private final String transport;
+    private final int maxNumConnections;
+    private final long idleTimeoutMillis;
+    private final int http2InitialConnectionWindowSize;
+    private final int http2InitialStreamWindowSize;
+    private final long http2MaxStreamsPerConnection;
+    private final int metricsPort;
+    private final Duration stallThreshold;
+    @Nullable
+    private final ResponseCompression compression;
+    private final ServerLifecycle lifecycle;
+    private final Duration rootCacheTtl;
+    private final int rootCacheMaxEntries;
+    private final BlockingExecution echoBlockingExecution;
+    private final long echoMaxBufferedBytes;
+    private final ByteBudgetDecorator.OverBudget echoOverBudget;
+    @Nullable
+    private final MessageRateLimit echoWebSocketRateLimit;
+    private final ExecutionLane echoLane;
+
+    private ServerSettings(final Properties properties) {
+        final String listenersValue = properties.getProperty(PREFIX + "listeners", "8080");
+        listeners = parseListeners(listenersValue);
+        if (listeners.isEmpty()) {
+            throw new IllegalArgumentException(PREFIX + "listeners: " + listenersValue + " (expected: at least one port)");
+        }
+        tlsListeners = parseListeners(properties.getProperty(PREFIX + "tls.listeners", ""));
+        tlsCertificate = Paths.get(properties.getProperty(PREFIX + "tls.certificate", "tls/cert.pem").trim());
+        tlsKey = Paths.get(properties.getProperty(PREFIX + "tls.key", "tls/key.pem").trim());
+        transport = properties.getProperty(PREFIX + "transport", "auto").trim().toLowerCase(Locale.ROOT);
+        workerThreads = intSetting(properties, "workerThreads", 0);
+        maxNumConnections = intSetting(properties, "maxNumConnections", Integer.MAX_VALUE);
+        idleTimeoutMillis = Long.parseLong(properties.getProperty(PREFIX + "idleTimeoutMillis", "-1").trim());
+        http2InitialConnectionWindowSize = intSetting(properties, "http2InitialConnectionWindowSize", 0);
+        http2InitialStreamWindowSize = intSetting(properties, "http2InitialStreamWindowSize", 0);
+        http2MaxStreamsPerConnection = longSetting(properties, "http2MaxStreamsPerConnection", 0);
+        metricsPort = intSetting(properties, "metricsPort", 9090);
+        stallThreshold = Duration.ofMillis(Long.parseLong(properties.getProperty(
+                PREFIX + "stallThresholdMillis", String.valueOf(SampleHttpServer.DEFAULT_STALL_THRESHOLD.toMillis())).trim()));
+        if (Boolean.parseBoolean(properties.getProperty(PREFIX + "compression.enabled", "true").trim())) {
+            final ResponseCompression defaults = ResponseCompression.of();
+            final String mediaTypes = properties.getProperty(PREFIX + "compression.mediaTypes");
+            compression = ResponseCompression.of(intSetting(properties, "compression.minBytes", defaults.minBytes()),
+                    mediaTypes != null ? parseMediaTypes(mediaTypes) : defaults.mediaTypes());
+        } else {
+            compression = null;
+        }
+        lifecycle = ServerLifecycle.of(intSetting(properties, "warmup.rounds", DEFAULT_WARMUP_ROUNDS),
+                Duration.ofMillis(longSetting(properties, "drain.quietPeriodMillis", DEFAULT_DRAIN_QUIET_PERIOD_MILLIS)),
+                Duration.ofMillis(longSetting(properties, "drain.timeoutMillis", DEFAULT_DRAIN_TIMEOUT_MILLIS)));
+        rootCacheTtl = Duration.ofMillis(Long.parseLong(properties.getProperty(
+                PREFIX + "root.cacheTtlMillis", String.valueOf(SampleHttpServer.DEFAULT_ROOT_CACHE_TTL.toMillis())).trim()));
+        rootCacheMaxEntries = intSetting(properties, "root.cacheMaxEntries", SampleHttpServer.DEFAULT_ROOT_CACHE_MAX_ENTRIES);
+        echoBlockingExecution = BlockingExecution.of(
+                properties.getProperty(PREFIX + "echo.blockingExecution", "platform").trim());
+        echoMaxBufferedBytes = Long.parseLong(properties.getProperty(
+                PREFIX + "echo.maxBufferedBytes", String.valueOf(SampleHttpServer.DEFAULT_ECHO_MAX_BUFFERED_BYTES)).trim());
+        echoOverBudget = ByteBudgetDecorator.OverBudget.of(properties.getProperty(PREFIX + "echo.overBudget", "wait"));
+        final MessageRateLimit defaultRateLimit = SampleHttpServer.DEFAULT_ECHO_WEB_SOCKET_RATE_LIMIT;
+        final double messagesPerSecond = Double.parseDouble(properties.getProperty(
+                PREFIX + "echo.webSocket.messagesPerSecond", String.valueOf(defaultRateLimit.messagesPerSecond())).trim());
+        echoWebSocketRateLimit = messagesPerSecond > 0 ?
+                                 MessageRateLimit.of(messagesPerSecond,
+                                         intSetting(properties, "echo.webSocket.burst", defaultRateLimit.burst())) :
+                                 null;
+        final ExecutionLane defaultLane = SampleHttpServer.DEFAULT_ECHO_LANE;
+        echoLane = ExecutionLane.of(defaultLane.name(),
+                intSetting(properties, "echo.lane.eventLoopThreads", defaultLane.eventLoopThreads()),
+                intSetting(properties, "echo.lane.maxConcurrency", defaultLane.maxConcurrency()),
+                intSetting(properties, "echo.lane.maxQueued", defaultLane.maxQueued()));
+    }
+
+    /**
+     * Reads the settings file, if there is one, and applies system property overrides.
+     */
+    public static ServerSettings load() {
+        final Properties properties = new Properties();
+        final String configuredFile = System.getProperty(CONFIG_PROPERTY);
+        final Path file = Paths.get(configuredFile != null ? configuredFile : DEFAULT_CONFIG_FILE);
+        if (configuredFile != null || Files.isRegularFile(file)) {
+            try (InputStream inputStream = Files.newInputStream(file)) {
+                properties.load(inputStream);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read server settings from " + file, e);
+            }
+        }
+        for (final String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith(PREFIX)) {
+                properties.setProperty(name, System.getProperty(name));
+            }
+        }
+        return of(properties);
+    }
+
+    public static ServerSettings of(final Properties properties) {
+        return new ServerSettings(properties);
+    }
+
+    /**
+     * Passes the transport, unless it is {@code auto}, on to Armeria as the
+     * {@code com.linecorp.armeria.transportType} system property, and checks that Armeria runs on it.
+     * Armeria reads its flags only once, so call this before anything else touches Armeria. A transport
+     * given with {@code -Dcom.linecorp.armeria.transportType} takes precedence.
+     *
+     * @throws IllegalStateException if Armeria runs on another transport
+     */
+    public void applyGlobalFlags() {
+        if ("auto".equals(transport)) {
+            return;
+        }
+        // Set the flag by name first; touching TransportType before Flags has initialized would initialize Flags.
+        if (System.getProperty(TRANSPORT_FLAG) == null) {
+            System.setProperty(TRANSPORT_FLAG, transport);
+        }
+        final TransportType actual = Flags.transportType();
+        if (!actual.lowerCasedName().equals(transport)) {
+            final TransportType requested;
+            try {
+                requested = TransportType.valueOf(transport.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(PREFIX + "transport: " + transport + " (expected: auto or one of " +
+                        Arrays.toString(TransportType.values()).toLowerCase(Locale.ROOT) + ')', e);
+            }
+            throw new IllegalStateException(PREFIX + "transport: " + transport + " could not be used; Armeria runs on " +
+                    actual.lowerCasedName() + ". Apply the settings before using Armeria, or set -D" +
+                    TRANSPORT_FLAG + '=' + transport, requested.unavailabilityCause());
+        }
+    }
+
+    public List<InetSocketAddress> listeners() {
+        return listeners;
+    }
+
+    public List<InetSocketAddress> tlsListeners() {
+        return tlsListeners;
+    }
+
+    public int metricsPort() {
+        return metricsPort;
+    }
+
+    public Duration stallThreshold() {
+        return stallThreshold;
+    }
+
+    /**
+     * Returns the response compression, or {@code null} if it is disabled.
+     */
+    @Nullable
+    public ResponseCompression compression() {
+        return compression;
+    }
+
+    public ServerLifecycle lifecycle() {
+        return lifecycle;
+    }
+
+    /**
+     * Returns a new single flight for {@code GET /}, with its cache.
+     */
+    public SingleFlight rootSingleFlight() {
+        return SampleHttpServer.newRootSingleFlight(rootCacheTtl, rootCacheMaxEntries);
+    }
+
+    public BlockingExecution echoBlockingExecution() {
+        return echoBlockingExecution;
+    }
+
+    /**
+     * Returns the decorator which limits the request bytes buffered by {@code POST /echo}.
+     */
+    public Function<? super HttpService, ? extends HttpService> echoAdmission() {
+        if (echoMaxBufferedBytes <= 0) {
+            return Function.identity();
+        }
+        return ByteBudgetDecorator.newDecorator(ByteBudget.of(echoMaxBufferedBytes), echoOverBudget);
+    }
+
+    /**
+     * Returns the message rate limit of every {@code /echo/ws} connection, or {@code null} if there is none.
+     */
+    @Nullable
+    public MessageRateLimit echoWebSocketRateLimit() {
+        return echoWebSocketRateLimit;
+    }
+
+    /**
+     * Returns the lane which the echo routes run in, apart from {@code GET /}.
+     */
+    public ExecutionLane echoLane() {
+        return echoLane;
+    }
+
+    void applyTo(final ServerBuilder serverBuilder) {
+        for (final InetSocketAddress listener : listeners) {
+            serverBuilder.http(listener);
+        }
+        if (!tlsListeners.isEmpty()) {
+            for (final InetSocketAddress listener : tlsListeners) {
+                serverBuilder.https(listener);
+            }
+            ServerTls.of(tlsCertificate, tlsKey).applyTo(serverBuilder);
+        }
+        if (workerThreads > 0) {
+            serverBuilder.workerGroup(EventLoopGroups.newEventLoopGroup(workerThreads, "sample-worker", false), true);
+        }
+        serverBuilder.maxNumConnections(maxNumConnections);
+        if (idleTimeoutMillis >= 0) {
+            serverBuilder.idleTimeoutMillis(idleTimeoutMillis);
+        }
+        if (http2InitialConnectionWindowSize > 0) {
+            serverBuilder.http2InitialConnectionWindowSize(http2InitialConnectionWindowSize);
+        }
+        if (http2InitialStreamWindowSize > 0) {
+            serverBuilder.http2InitialStreamWindowSize(http2InitialStreamWindowSize);
+        }
+        if (http2MaxStreamsPerConnection > 0) {
+            serverBuilder.http2MaxStreamsPerConnection(http2MaxStreamsPerConnection);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "listeners=" + listeners +
+               ", tlsListeners=" + tlsListeners +
+               (tlsListeners.isEmpty() ? "" : ", tlsCertificate=" + tlsCertificate + ", tlsKey=" + tlsKey) +
+               ", workerThreads=" + (workerThreads > 0 ? workerThreads : "shared(" + Flags.numCommonWorkers() + ')') +
+               ", transport=" + Flags.transportType().lowerCasedName() +
+               ", availableProcessors=" + Runtime.getRuntime().availableProcessors() +
+               ", maxNumConnections=" + (maxNumConnections == Integer.MAX_VALUE ? "unlimited" : maxNumConnections) +
+               ", idleTimeoutMillis=" + (idleTimeoutMillis >= 0 ? idleTimeoutMillis : Flags.defaultServerIdleTimeoutMillis()) +
+               ", http2InitialConnectionWindowSize=" + (http2InitialConnectionWindowSize > 0 ?
+                                                        http2InitialConnectionWindowSize :
+                                                        Flags.defaultHttp2InitialConnectionWindowSize()) +
+               ", http2InitialStreamWindowSize=" + (http2InitialStreamWindowSize > 0 ?
+                                                    http2InitialStreamWindowSize :
+                                                    Flags.defaultHttp2InitialStreamWindowSize()) +
+               ", http2MaxStreamsPerConnection=" + (http2MaxStreamsPerConnection > 0 ?
+                                                    http2MaxStreamsPerConnection :
+                                                    Flags.defaultHttp2MaxStreamsPerConnection()) +
+               ", metricsPort=" + metricsPort +
+               ", stallThresholdMillis=" + stallThreshold.toMillis() +
+               ", compression=" + (compression != null ? "{" + compression + '}' : "disabled") +
+               ", lifecycle={" + lifecycle + '}' +
+               ", rootCacheTtlMillis=" + rootCacheTtl.toMillis() +
+               ", rootCacheMaxEntries=" + rootCacheMaxEntries +
+               ", echoBlockingExecution=" + echoBlockingExecution.name().toLowerCase(Locale.ROOT) +
+               ", echoMaxBufferedBytes=" + (echoMaxBufferedBytes > 0 ? echoMaxBufferedBytes : "unlimited") +
+               ", echoOverBudget=" + echoOverBudget.name().toLowerCase(Locale.ROOT) +
+               ", echoWebSocketRateLimit=" + (echoWebSocketRateLimit != null ? "{" + echoWebSocketRateLimit + '}' : "unlimited") +
+               ", echoLane={" + echoLane + '}';
+    }
+
+    private static int intSetting(final Properties properties, final String name, final int defaultValue) {
+        final String value = properties.getProperty(PREFIX + name);
+        return value != null ? Integer.parseInt(value.trim()) : defaultValue;
+    }
+
+    private static long longSetting(final Properties properties, final String name, final long defaultValue) {
+        final String value = properties.getProperty(PREFIX + name);
+        return value != null ? Long.parseLong(value.trim()) : defaultValue;
+    }
+
+    private static List<InetSocketAddress> parseListeners(final String value) {
+        final List<InetSocketAddress> listeners = new ArrayList<>();
+        for (final String entry : value.split(",")) {
+            final String listener = entry.trim();
+            if (listener.isEmpty()) {
+                continue;
+            }
+            final int separator = listener.lastIndexOf(':');
+            if (separator < 0) {
+                listeners.add(new InetSocketAddress(Integer.parseInt(listener)));
+            } else {
+                listeners.add(new InetSocketAddress(listener.substring(0, separator),
+                        Integer.parseInt(listener.substring(separator + 1))));
+            }
+        }
+        return Collections.unmodifiableList(listeners);
+    }
+
+    private static List<MediaType> parseMediaTypes(final String value) {
+        final List<MediaType> mediaTypes = new ArrayList<>();
+        for (final String entry : value.split(",")) {
+            if (!entry.trim().isEmpty()) {
+                mediaTypes.add(MediaType.parse(entry.trim()));
+            }
+        }
+        return mediaTypes;
+    }
+
+}
@@ -0,0 +1,106 @@
+package io.venable.samples.armeria.http;
+
+import com.linecorp.armeria.common.annotation.Nullable;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs every task on a new virtual thread.
+ * <p>
+ * Armeria expects a {@link ScheduledExecutorService}, so delayed tasks are kept by a single platform
+ * scheduler thread and handed to a virtual thread when they are due. The virtual-thread executor is
+ * looked up reflectively, so this class compiles against Java 17 and is only usable on Java 21 or later.
+ */
+final class VirtualThreadTaskExecutor extends AbstractExecutorService implements ScheduledExecutorService {
+    private final ExecutorService executor;
+    private final ScheduledExecutorService scheduler;
+
+    private VirtualThreadTaskExecutor(final ExecutorService executor, final String name) {
+        this.executor = executor;
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, name + "-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Returns a new executor, or {@code null} if this JVM does not support virtual threads.
+     */
+    @Nullable
+    static VirtualThreadTaskExecutor newExecutor(final String name) {
+        try {
+            final Object executor = Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            return new VirtualThreadTaskExecutor((ExecutorService) executor, name);
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void execute(final Runnable command) {
+        executor.execute(command);
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(final Runnable command, final long delay, final TimeUnit unit) {
+        return scheduler.schedule(() -> executor.execute(command), delay, unit);
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(final Callable<V> callable, final long delay, final TimeUnit unit) {
+        // The result is produced on the scheduler thread; callables are not used for blocking work by Armeria.
+        return scheduler.schedule(callable, delay, unit);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(final Runnable command, final long initialDelay,
+                                                  final long period, final TimeUnit unit) {
+        return scheduler.scheduleAtFixedRate(() -> executor.execute(command), initialDelay, period, unit);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(final Runnable command, final long initialDelay,
+                                                     final long delay, final TimeUnit unit) {
+        return scheduler.scheduleWithFixedDelay(() -> executor.execute(command), initialDelay, delay, unit);
+    }
+
+    @Override
+    public void shutdown() {
+        scheduler.shutdown();
+        executor.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        final List<Runnable> tasks = new ArrayList<>(scheduler.shutdownNow());
+        tasks.addAll(executor.shutdownNow());
+        return tasks;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return executor.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return scheduler.isTerminated() && executor.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        return scheduler.awaitTermination(timeout, unit) &&
+               executor.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,90 @@
+package io.venable.samples.armeria.http;
+
+import com.linecorp.armeria.client.ClientFactory;
+import com.linecorp.armeria.client.WebClient;
+import com.linecorp.armeria.common.HttpHeaderNames;
+import com.linecorp.armeria.common.HttpMethod;
+import com.linecorp.armeria.common.HttpRequest;
+import com.linecorp.armeria.common.MediaType;
+import com.linecorp.armeria.common.RequestHeaders;
+import io.venable.samples.armeria.client.ClientProfile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Sends a server requests to each of its routes over loopback, so that the request path from the socket
+ * through the decorators to the services is compiled before the server reports ready. The requests are
+ * ordinary ones, so they show up in the access log and the metrics like any other.
+ */
+final class Warmup {
+    private static final Logger log = LoggerFactory.getLogger(Warmup.class);
+
+    /**
+     * Rounds sent at once, so that requests overlap as they do under load.
+     */
+    private static final int PARALLEL_ROUNDS = 8;
+    private static final byte[] SMALL_BODY = new byte[1024];
+    private static final byte[] LARGE_BODY = new byte[64 * 1024];
+    private static final byte[] RECORDS =
+            "{\"n\":1}\n{\"n\":2}\n{\"n\":3}\n{\"n\":4}\n".getBytes(StandardCharsets.UTF_8);
+
+    static {
+        final Random random = new Random(42);
+        random.nextBytes(SMALL_BODY);
+        random.nextBytes(LARGE_BODY);
+    }
+
+    private Warmup() {
+    }
+
+    /**
+     * Sends {@code rounds} rounds of requests to the HTTP listener at {@code port} on a thread of its own.
+     */
+    static CompletableFuture<Void> start(final int port, final int rounds) {
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+        final Thread thread = new Thread(() -> {
+            try {
+                run(port, rounds);
+                done.complete(null);
+            } catch (Throwable cause) {
+                done.completeExceptionally(cause);
+            }
+        }, "sample-warmup");
+        thread.setDaemon(true);
+        thread.start();
+        return done;
+    }
+
+    private static void run(final int port, final int rounds) {
+        final long start = System.nanoTime();
+        final ClientProfile clientProfile = ClientProfile.of();
+        try (ClientFactory clientFactory = clientProfile.newClientFactory()) {
+            final WebClient webClient = clientProfile.newWebClientBuilder(clientFactory, "127.0.0.1", port)
+                    .maxResponseLength(0)
+                    .build();
+            for (int sent = 0; sent < rounds; sent += PARALLEL_ROUNDS) {
+                final CompletableFuture<?>[] responses = new CompletableFuture<?>[PARALLEL_ROUNDS * 5];
+                for (int i = 0; i < PARALLEL_ROUNDS; i++) {
+                    sendRound(webClient, responses, i * 5);
+                }
+                CompletableFuture.allOf(responses).join();
+            }
+        }
+        log.info("Warmed up with {} rounds of requests in {} ms", rounds, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static void sendRound(final WebClient webClient, final CompletableFuture<?>[] responses,
+                                  final int offset) {
+        responses[offset] = webClient.get("/").aggregate();
+        responses[offset + 1] = webClient.execute(RequestHeaders.builder(HttpMethod.GET, "/")
+                .set(HttpHeaderNames.ACCEPT_ENCODING, "gzip").build()).aggregate();
+        responses[offset + 2] = webClient.post("/echo", SMALL_BODY).aggregate();
+        responses[offset + 3] = webClient.post("/echo/stream", LARGE_BODY).aggregate();
+        responses[offset + 4] = webClient.execute(
+                HttpRequest.of(HttpMethod.POST, "/echo/batch", MediaType.JSON_LINES, RECORDS)).aggregate();
+    }
+}
@@ -0,0 +1,282 @@
+package io.venable.samples.armeria.metrics;
+
+import com.linecorp.armeria.common.annotation.Nullable;
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.concurrent.EventExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Detects event loops that stop running tasks, which is what a blocking call in a decorator or service
+ * looks like from the outside.
+ * <p>
+ * A background thread keeps one probe task queued on every event loop of a group. The time from queueing
+ * a probe until it runs is the loop's lag. When a probe has waited longer than the threshold, the loop is
+ * stalled: the watchdog counts the stall, takes the stack of the event loop thread while it is still stuck,
+ * and reports the innermost frame outside the JDK, Netty and Armeria as the decorator or service
+ * responsible. How long the loop stalled is recorded once the probe finally runs, so a loop which never
+ * recovers shows in the stall count but not in the durations.
+ * <p>
+ * Lag, stall counts and stall durations are exported through {@link PipelineMetrics#include(MetricsSource)}.
+ * In strict mode, meant for tests, the first stall is kept and {@link #close()} fails with it.
+ */
+public final class EventLoopWatchdog implements AutoCloseable, MetricsSource {
+    private static final Logger log = LoggerFactory.getLogger(EventLoopWatchdog.class);
+
+    private static final long MAX_PROBE_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final String[] FRAMEWORK_PACKAGES = {
+            "java.", "javax.", "jdk.", "sun.", "io.netty.", "com.linecorp.armeria.",
+    };
+
+    private final String name;
+    private final long thresholdNanos;
+    private final long probeIntervalNanos;
+    private final boolean strict;
+    private final List<LoopState> loops = new ArrayList<>();
+    private final LatencyHistogram lag = new LatencyHistogram();
+    private final LatencyHistogram stallDurations = new LatencyHistogram();
+    private final LongAdder stalls = new LongAdder();
+    private final AtomicReference<StallException> firstStall = new AtomicReference<>();
+    private final Thread thread;
+    private volatile boolean closed;
+
+    private EventLoopWatchdog(final String name, final EventLoopGroup group, final Duration threshold,
+                              final boolean strict) {
+        if (threshold.isZero() || threshold.isNegative()) {
+            throw new IllegalArgumentException("threshold: " + threshold + " (expected: > 0)");
+        }
+        this.name = name;
+        this.strict = strict;
+        thresholdNanos = threshold.toNanos();
+        probeIntervalNanos = Math.min(thresholdNanos / 2, MAX_PROBE_INTERVAL_NANOS);
+        for (final EventExecutor executor : group) {
+            loops.add(new LoopState((EventLoop) executor));
+        }
+        thread = new Thread(this::run, "event-loop-watchdog-" + name);
+        thread.setDaemon(true);
+    }
+
+    /**
+     * Starts watching every event loop of {@code group}, reporting probes which wait longer than
+     * {@code threshold}.
+     */
+    public static EventLoopWatchdog start(final String name, final EventLoopGroup group, final Duration threshold) {
+        return start(new EventLoopWatchdog(name, group, threshold, false));
+    }
+
+    /**
+     * Starts watching like {@link #start(String, EventLoopGroup, Duration)}, but {@link #close()} and
+     * {@link #checkNoStalls()} throw if any event loop stalled.
+     */
+    public static EventLoopWatchdog strict(final String name, final EventLoopGroup group, final Duration threshold) {
+        return start(new EventLoopWatchdog(name, group, threshold, true));
+    }
+
+    private static EventLoopWatchdog start(final EventLoopWatchdog watchdog) {
+        watchdog.thread.start();
+        return watchdog;
+    }
+
+    /**
+     * Returns the number of stalls seen so far.
+     */
+    public long stallCount() {
+        return stalls.sum();
+    }
+
+    /**
+     * Throws the first stall, with the stack of the stalled event loop, if there was one.
+     */
+    public void checkNoStalls() {
+        final StallException stall = firstStall.get();
+        if (stall != null) {
+            throw stall;
+        }
+    }
+
+    /**
+     * Stops watching. In strict mode, also fails if an event loop stalled.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (strict) {
+            checkNoStalls();
+        }
+    }
+
+    @Override
+    public void appendTo(final StringBuilder out) {
+        appendTo(out, Collections.singletonList(this));
+    }
+
+    /**
+     * Returns a source which renders the metrics of all {@code watchdogs} together, told apart by their
+     * {@code group} label, since each metric may have only one {@code HELP} and {@code TYPE} line.
+     */
+    public static MetricsSource metricsOf(final List<EventLoopWatchdog> watchdogs) {
+        return out -> appendTo(out, watchdogs);
+    }
+
+    private static void appendTo(final StringBuilder out, final List<EventLoopWatchdog> watchdogs) {
+        out.append("# HELP sample_event_loop_lag_seconds Time from queueing a probe on an event loop until it ran.\n")
+           .append("# TYPE sample_event_loop_lag_seconds histogram\n");
+        for (final EventLoopWatchdog watchdog : watchdogs) {
+            watchdog.lag.appendTo(out, "sample_event_loop_lag_seconds", watchdog.labels());
+        }
+        out.append("# HELP sample_event_loop_stalls_total Probes which waited longer than the stall threshold.\n")
+           .append("# TYPE sample_event_loop_stalls_total counter\n");
+        for (final EventLoopWatchdog watchdog : watchdogs) {
+            out.append("sample_event_loop_stalls_total{").append(watchdog.labels()).append("} ")
+               .append(watchdog.stalls.sum()).append('\n');
+        }
+        out.append("# HELP sample_event_loop_stall_duration_seconds How long stalled event loops ran no tasks.\n")
+           .append("# TYPE sample_event_loop_stall_duration_seconds histogram\n");
+        for (final EventLoopWatchdog watchdog : watchdogs) {
+            watchdog.stallDurations.appendTo(out, "sample_event_loop_stall_duration_seconds", watchdog.labels());
+        }
+    }
+
+    private String labels() {
+        return "group=\"" + name + '"';
+    }
+
+    private void run() {
+        while (!closed) {
+            final long now = System.nanoTime();
+            for (final LoopState loop : loops) {
+                final long queuedNanos = loop.probeQueuedNanos;
+                if (queuedNanos == 0) {
+                    if (!loop.eventLoop.isShuttingDown()) {
+                        loop.probeQueuedNanos = now;
+                        try {
+                            loop.eventLoop.execute(() -> probe(loop, now));
+                        } catch (RejectedExecutionException e) {
+                            // Shut down in the meantime.
+                            loop.probeQueuedNanos = 0;
+                        }
+                    }
+                } else if (now - queuedNanos >= thresholdNanos && loop.reportedNanos != queuedNanos) {
+                    loop.reportedNanos = queuedNanos;
+                    countStall(loop, queuedNanos);
+                    reportStall(loop, now - queuedNanos);
+                }
+            }
+            LockSupport.parkNanos(probeIntervalNanos);
+        }
+    }
+
+    private void probe(final LoopState loop, final long queuedNanos) {
+        final long lagNanos = System.nanoTime() - queuedNanos;
+        loop.thread = Thread.currentThread();
+        lag.record(lagNanos);
+        if (lagNanos >= thresholdNanos) {
+            // Already counted unless the probe ran between two checks of the watchdog thread.
+            countStall(loop, queuedNanos);
+            stallDurations.record(lagNanos);
+        }
+        loop.probeQueuedNanos = 0;
+    }
+
+    private void countStall(final LoopState loop, final long queuedNanos) {
+        if (loop.countedNanos.getAndSet(queuedNanos) != queuedNanos) {
+            stalls.increment();
+        }
+    }
+
+    private void reportStall(final LoopState loop, final long stalledNanos) {
+        Thread loopThread = loop.thread;
+        if (loopThread == null) {
+            // Stalled before its first probe ran, which would have recorded the thread.
+            loopThread = findThread(loop.eventLoop);
+            loop.thread = loopThread;
+        }
+        final StackTraceElement[] stack = loopThread != null ? loopThread.getStackTrace() : new StackTraceElement[0];
+        final StackTraceElement culprit = culprit(stack);
+        final StallException stall = new StallException(
+                (loopThread != null ? loopThread.getName() : name) + " has run no tasks for " +
+                TimeUnit.NANOSECONDS.toMillis(stalledNanos) + " ms" +
+                (culprit != null ? ", blocked in " + culprit.getClassName() + '.' + culprit.getMethodName() +
+                                   '(' + culprit.getFileName() + ':' + culprit.getLineNumber() + ')' : ""), stack);
+        log.warn("Event loop stall", stall);
+        if (strict) {
+            firstStall.compareAndSet(null, stall);
+        }
+    }
+
+    @Nullable
+    private static Thread findThread(final EventLoop eventLoop) {
+        for (final Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (eventLoop.inEventLoop(thread)) {
+                return thread;
+            }
+        }
+        return null;
+    }
+
+    @Nullable
+    static StackTraceElement culprit(final StackTraceElement[] stack) {
+        for (final StackTraceElement frame : stack) {
+            if (!isFramework(frame.getClassName())) {
+                return frame;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isFramework(final String className) {
+        for (final String frameworkPackage : FRAMEWORK_PACKAGES) {
+            if (className.startsWith(frameworkPackage)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class LoopState {
+        private final EventLoop eventLoop;
+        @Nullable
+        private volatile Thread thread;
+        private volatile long probeQueuedNanos;
+        /**
+         * When the last probe counted as a stall was queued, so that the watchdog and the probe count it once.
+         */
+        private final AtomicLong countedNanos = new AtomicLong();
+        // Only used by the watchdog thread.
+        private long reportedNanos;
+
+        LoopState(final EventLoop eventLoop) {
+            this.eventLoop = eventLoop;
+        }
+    }
+
+    /**
+     * A stalled event loop, carrying the stack of its thread at the time of the stall.
+     */
+    public static final class StallException extends IllegalStateException {
+        private static final long serialVersionUID = 1L;
+
+        StallException(final String message, final StackTraceElement[] stack) {
+            super(message);
+            setStackTrace(stack);
+        }
+    }
+}
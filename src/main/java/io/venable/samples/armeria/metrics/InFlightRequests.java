@@ -0,0 +1,52 @@
+package io.venable.samples.armeria.metrics;
+
+import com.linecorp.armeria.common.HttpRequest;
+import com.linecorp.armeria.common.HttpResponse;
+import com.linecorp.armeria.server.HttpService;
+import com.linecorp.armeria.server.ServiceRequestContext;
+import com.linecorp.armeria.server.SimpleDecoratingHttpService;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Counts the requests which have reached the decorated services and whose exchange is not complete yet,
+ * which is what a draining server is waiting for.
+ */
+public final class InFlightRequests implements MetricsSource {
+    private final AtomicInteger count = new AtomicInteger();
+
+    /**
+     * Returns a decorator which counts every request through it. Add it last, so that it wraps the others.
+     */
+    public Function<? super HttpService, HttpService> newDecorator() {
+        return httpService -> new CountingService(httpService, count);
+    }
+
+    public int count() {
+        return count.get();
+    }
+
+    @Override
+    public void appendTo(final StringBuilder out) {
+        out.append("# HELP sample_requests_in_flight Requests being served.\n")
+           .append("# TYPE sample_requests_in_flight gauge\n")
+           .append("sample_requests_in_flight ").append(count.get()).append('\n');
+    }
+
+    private static final class CountingService extends SimpleDecoratingHttpService {
+        private final AtomicInteger count;
+
+        CountingService(final HttpService httpService, final AtomicInteger count) {
+            super(httpService);
+            this.count = count;
+        }
+
+        @Override
+        public HttpResponse serve(final ServiceRequestContext ctx, final HttpRequest req) throws Exception {
+            count.incrementAndGet();
+            ctx.log().whenComplete().thenRun(count::decrementAndGet);
+            return unwrap().serve(ctx, req);
+        }
+    }
+}
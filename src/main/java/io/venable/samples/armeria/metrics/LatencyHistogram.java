@@ -0,0 +1,73 @@
+package io.venable.samples.armeria.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram with fixed bucket bounds, from 50 microseconds to 10 seconds.
+ * <p>
+ * Recording finds the bucket with a binary search and increments {@link LongAdder}s, so it does not
+ * allocate and does not contend between threads.
+ */
+final class LatencyHistogram {
+    private static final long[] BOUNDS_NANOS = {
+            micros(50), micros(100), micros(250), micros(500),
+            millis(1), micros(2_500), millis(5), millis(10), millis(25), millis(50), millis(100), millis(250),
+            millis(500), millis(1_000), millis(2_500), millis(5_000), millis(10_000),
+    };
+
+    private final LongAdder[] buckets = new LongAdder[BOUNDS_NANOS.length + 1];
+    private final LongAdder sumNanos = new LongAdder();
+
+    LatencyHistogram() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    void record(final long nanos) {
+        int low = 0;
+        int high = BOUNDS_NANOS.length;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (BOUNDS_NANOS[middle] < nanos) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        buckets[low].increment();
+        sumNanos.add(nanos);
+    }
+
+    long count() {
+        long count = 0;
+        for (final LongAdder bucket : buckets) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+    /**
+     * Appends the histogram in the Prometheus text format, with the bounds and sum in seconds.
+     */
+    void appendTo(final StringBuilder out, final String name, final String labels) {
+        long cumulative = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            cumulative += buckets[i].sum();
+            out.append(name).append("_bucket{").append(labels).append(",le=\"")
+               .append(i < BOUNDS_NANOS.length ? Double.toString(BOUNDS_NANOS[i] / 1e9) : "+Inf")
+               .append("\"} ").append(cumulative).append('\n');
+        }
+        out.append(name).append("_sum{").append(labels).append("} ").append(sumNanos.sum() / 1e9).append('\n');
+        out.append(name).append("_count{").append(labels).append("} ").append(cumulative).append('\n');
+    }
+
+    private static long micros(final long micros) {
+        return TimeUnit.MICROSECONDS.toNanos(micros);
+    }
+
+    private static long millis(final long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+}
@@ -0,0 +1,38 @@
+package io.venable.samples.armeria.metrics;
+
+import java.util.Locale;
+
+/**
+ * A stage of the request pipeline which {@link PipelineMetrics} times separately.
+ * <p>
+ * Decorator and service layers are inclusive: each one covers the time from entering it until the
+ * response ends, so the time spent in a layer itself is the difference to the next inner layer.
+ */
+public enum Layer {
+    /**
+     * From the start of the request until the end of the response.
+     */
+    TOTAL,
+    /**
+     * From entering {@link io.venable.samples.armeria.CopyDecorator} until the end of the response.
+     */
+    COPY_DECORATOR,
+    /**
+     * From entering the service until the end of the response.
+     */
+    SERVICE,
+    /**
+     * Time that blocking work waited for a thread of the blocking task executor.
+     */
+    BLOCKING_QUEUE,
+    /**
+     * Time that blocking work ran on the blocking task executor.
+     */
+    BLOCKING_EXECUTION;
+
+    private final String label = name().toLowerCase(Locale.ROOT);
+
+    String label() {
+        return label;
+    }
+}
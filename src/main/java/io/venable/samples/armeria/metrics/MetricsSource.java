@@ -0,0 +1,12 @@
+package io.venable.samples.armeria.metrics;
+
+/**
+ * Something which renders metrics of its own into {@link PipelineMetrics#prometheusService()}, once it is
+ * passed to {@link PipelineMetrics#include(MetricsSource)}.
+ */
+public interface MetricsSource {
+    /**
+     * Appends the metrics, with their {@code HELP} and {@code TYPE} lines, in the Prometheus text format.
+     */
+    void appendTo(StringBuilder out);
+}
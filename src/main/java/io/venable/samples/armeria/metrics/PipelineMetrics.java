@@ -0,0 +1,314 @@
+package io.venable.samples.armeria.metrics;
+
+import com.linecorp.armeria.common.ContextHolder;
+import com.linecorp.armeria.common.Flags;
+import com.linecorp.armeria.common.HttpRequest;
+import com.linecorp.armeria.common.HttpResponse;
+import com.linecorp.armeria.common.HttpStatus;
+import com.linecorp.armeria.common.MediaType;
+import com.linecorp.armeria.common.RequestContext;
+import com.linecorp.armeria.common.annotation.Nullable;
+import com.linecorp.armeria.common.logging.RequestLog;
+import com.linecorp.armeria.common.util.BlockingTaskExecutor;
+import com.linecorp.armeria.common.util.ThreadFactories;
+import com.linecorp.armeria.server.HttpService;
+import com.linecorp.armeria.server.ServiceRequestContext;
+import com.linecorp.armeria.server.SimpleDecoratingHttpService;
+import io.netty.util.AttributeKey;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Per-route timings of every {@link Layer} of the pipeline, plus request, response and allocated bytes.
+ * <p>
+ * The first instrumented layer a request enters attaches one small timing record to the context and
+ * registers a single callback for the end of the request. Inner layers only write a timestamp into that
+ * record. When the request log completes, the callback records every layer into {@link LongAdder}-based
+ * histograms, so recording never takes a lock. Blocking tasks are timed by the executor from
+ * {@link #newBlockingTaskExecutor(String)}, from submission to start and from start to end.
+ * <p>
+ * {@link #prometheusService()} renders everything in the Prometheus text format. It is meant to be bound
+ * on an internal port.
+ */
+public final class PipelineMetrics {
+    private static final long BLOCKING_KEEP_ALIVE_SECONDS = 60;
+    private static final AttributeKey<RequestTimings> TIMINGS = AttributeKey.valueOf(PipelineMetrics.class, "TIMINGS");
+    private static final MediaType PROMETHEUS_TEXT = MediaType.parse("text/plain; version=0.0.4; charset=utf-8");
+
+    @Nullable
+    private static final com.sun.management.ThreadMXBean ALLOCATION_BEAN = allocationBean();
+
+    private final ConcurrentHashMap<String, RouteMetrics> routes = new ConcurrentHashMap<>();
+    private final List<MetricsSource> sources = new CopyOnWriteArrayList<>();
+
+    /**
+     * Returns a decorator which times the given layer of every request through it.
+     */
+    public Function<? super HttpService, HttpService> newDecorator(final Layer layer) {
+        if (layer != Layer.COPY_DECORATOR && layer != Layer.SERVICE) {
+            throw new IllegalArgumentException("layer: " + layer + " (expected: COPY_DECORATOR or SERVICE)");
+        }
+        return httpService -> new LayerTimingService(httpService, this, layer);
+    }
+
+    /**
+     * Returns a blocking task executor which times how long each task of a request waited and ran, and how
+     * many bytes it allocated. It is sized like Armeria's default blocking task executor.
+     */
+    public BlockingTaskExecutor newBlockingTaskExecutor(final String threadNamePrefix) {
+        final InstrumentedExecutor executor = new InstrumentedExecutor(this, threadNamePrefix);
+        executor.setKeepAliveTime(BLOCKING_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+        executor.allowCoreThreadTimeOut(true);
+        return BlockingTaskExecutor.of(executor);
+    }
+
+    private void recordBlockingTask(final String route, final long submittedNanos, final long startNanos,
+                                    final long allocatedBytes) {
+        final RouteMetrics routeMetrics = routeMetrics(route);
+        routeMetrics.record(Layer.BLOCKING_QUEUE, startNanos - submittedNanos);
+        routeMetrics.record(Layer.BLOCKING_EXECUTION, System.nanoTime() - startNanos);
+        routeMetrics.blockingAllocatedBytes.add(allocatedBytes);
+    }
+
+    /**
+     * Returns the number of completed requests recorded for the route.
+     */
+    public long requestCount(final String route) {
+        final RouteMetrics routeMetrics = routes.get(route);
+        return routeMetrics != null ? routeMetrics.requests.sum() : 0;
+    }
+
+    /**
+     * Returns the number of samples recorded for the layer of the route.
+     */
+    public long layerCount(final String route, final Layer layer) {
+        final RouteMetrics routeMetrics = routes.get(route);
+        return routeMetrics != null ? routeMetrics.layers[layer.ordinal()].count() : 0;
+    }
+
+    /**
+     * Adds the metrics of the given source, such as the lag and stalls seen by an {@link EventLoopWatchdog},
+     * to the rendered metrics.
+     */
+    public void include(final MetricsSource source) {
+        sources.add(source);
+    }
+
+    public HttpService prometheusService() {
+        return (ctx, req) -> HttpResponse.of(HttpStatus.OK, PROMETHEUS_TEXT, render());
+    }
+
+    String render() {
+        final StringBuilder out = new StringBuilder(4096);
+        final Map<String, RouteMetrics> sorted = new TreeMap<>(routes);
+        appendCounter(out, sorted, "sample_requests_total", "Completed requests.", routeMetrics -> routeMetrics.requests);
+        appendCounter(out, sorted, "sample_request_bytes_total", "Request content bytes.",
+                routeMetrics -> routeMetrics.requestBytes);
+        appendCounter(out, sorted, "sample_response_bytes_total", "Response content bytes.",
+                routeMetrics -> routeMetrics.responseBytes);
+        appendCounter(out, sorted, "sample_blocking_allocated_bytes_total", "Bytes allocated by blocking work.",
+                routeMetrics -> routeMetrics.blockingAllocatedBytes);
+
+        out.append("# HELP sample_layer_duration_seconds Time spent in and below each pipeline layer.\n")
+           .append("# TYPE sample_layer_duration_seconds histogram\n");
+        for (final Map.Entry<String, RouteMetrics> entry : sorted.entrySet()) {
+            for (final Layer layer : Layer.values()) {
+                final LatencyHistogram histogram = entry.getValue().layers[layer.ordinal()];
+                if (histogram.count() > 0) {
+                    histogram.appendTo(out, "sample_layer_duration_seconds",
+                            "route=" + quote(entry.getKey()) + ",layer=\"" + layer.label() + '"');
+                }
+            }
+        }
+        for (final MetricsSource source : sources) {
+            source.appendTo(out);
+        }
+        return out.toString();
+    }
+
+    private static void appendCounter(final StringBuilder out, final Map<String, RouteMetrics> routes,
+                                      final String name, final String help,
+                                      final Function<RouteMetrics, LongAdder> counter) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n')
+           .append("# TYPE ").append(name).append(" counter\n");
+        for (final Map.Entry<String, RouteMetrics> entry : routes.entrySet()) {
+            out.append(name).append("{route=").append(quote(entry.getKey())).append("} ")
+               .append(counter.apply(entry.getValue()).sum()).append('\n');
+        }
+    }
+
+    private static String quote(final String value) {
+        return '"' + value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n") + '"';
+    }
+
+    private void onComplete(final RequestLog requestLog, final RequestTimings timings) {
+        final ServiceRequestContext ctx = (ServiceRequestContext) requestLog.context();
+        final RouteMetrics routeMetrics = routeMetrics(ctx.config().route().patternString());
+        final long endNanos = requestLog.responseEndTimeNanos();
+
+        routeMetrics.requests.increment();
+        routeMetrics.requestBytes.add(requestLog.requestLength());
+        routeMetrics.responseBytes.add(requestLog.responseLength());
+        routeMetrics.record(Layer.TOTAL, endNanos - requestLog.requestStartTimeNanos());
+        if (timings.copyDecoratorStartNanos != 0) {
+            routeMetrics.record(Layer.COPY_DECORATOR, endNanos - timings.copyDecoratorStartNanos);
+        }
+        if (timings.serviceStartNanos != 0) {
+            routeMetrics.record(Layer.SERVICE, endNanos - timings.serviceStartNanos);
+        }
+    }
+
+    private RouteMetrics routeMetrics(final String route) {
+        final RouteMetrics routeMetrics = routes.get(route);
+        return routeMetrics != null ? routeMetrics : routes.computeIfAbsent(route, unused -> new RouteMetrics());
+    }
+
+    private static long allocatedBytes() {
+        return ALLOCATION_BEAN != null ? ALLOCATION_BEAN.getCurrentThreadAllocatedBytes() : 0;
+    }
+
+    @Nullable
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (threadMXBean instanceof com.sun.management.ThreadMXBean &&
+            ((com.sun.management.ThreadMXBean) threadMXBean).isThreadAllocatedMemorySupported()) {
+            return (com.sun.management.ThreadMXBean) threadMXBean;
+        }
+        return null;
+    }
+
+    private static final class RouteMetrics {
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder requestBytes = new LongAdder();
+        private final LongAdder responseBytes = new LongAdder();
+        private final LongAdder blockingAllocatedBytes = new LongAdder();
+        private final LatencyHistogram[] layers = new LatencyHistogram[Layer.values().length];
+
+        RouteMetrics() {
+            for (int i = 0; i < layers.length; i++) {
+                layers[i] = new LatencyHistogram();
+            }
+        }
+
+        void record(final Layer layer, final long nanos) {
+            layers[layer.ordinal()].record(nanos);
+        }
+    }
+
+    /**
+     * Layer start times of one request, written on the event loop before the response can end.
+     */
+    private static final class RequestTimings {
+        private long copyDecoratorStartNanos;
+        private long serviceStartNanos;
+
+        void start(final Layer layer, final long nanos) {
+            if (layer == Layer.COPY_DECORATOR) {
+                copyDecoratorStartNanos = nanos;
+            } else {
+                serviceStartNanos = nanos;
+            }
+        }
+    }
+
+    private static final class LayerTimingService extends SimpleDecoratingHttpService {
+        private final PipelineMetrics metrics;
+        private final Layer layer;
+
+        LayerTimingService(final HttpService httpService, final PipelineMetrics metrics, final Layer layer) {
+            super(httpService);
+            this.metrics = metrics;
+            this.layer = layer;
+        }
+
+        @Override
+        public HttpResponse serve(final ServiceRequestContext ctx, final HttpRequest req) throws Exception {
+            final long startNanos = System.nanoTime();
+            RequestTimings timings = ctx.attr(TIMINGS);
+            if (timings == null) {
+                final RequestTimings newTimings = new RequestTimings();
+                ctx.setAttr(TIMINGS, newTimings);
+                ctx.log().whenComplete().thenAccept(requestLog -> metrics.onComplete(requestLog, newTimings));
+                timings = newTimings;
+            }
+            timings.start(layer, startNanos);
+            return unwrap().serve(ctx, req);
+        }
+    }
+
+    /**
+     * Wraps every task on the submitting thread, where the request context is still current.
+     * {@code execute} and {@code submit} both end up in {@code schedule}.
+     */
+    private static final class InstrumentedExecutor extends ScheduledThreadPoolExecutor {
+        private final PipelineMetrics metrics;
+
+        InstrumentedExecutor(final PipelineMetrics metrics, final String threadNamePrefix) {
+            super(Flags.numCommonBlockingTaskThreads(), ThreadFactories.newThreadFactory(threadNamePrefix, true));
+            this.metrics = metrics;
+        }
+
+        @Override
+        public ScheduledFuture<?> schedule(final Runnable command, final long delay, final TimeUnit unit) {
+            final String route = route(command);
+            if (route == null) {
+                return super.schedule(command, delay, unit);
+            }
+            final long submittedNanos = System.nanoTime() + unit.toNanos(delay);
+            return super.schedule(() -> {
+                final long startNanos = System.nanoTime();
+                final long allocatedBefore = allocatedBytes();
+                try {
+                    command.run();
+                } finally {
+                    metrics.recordBlockingTask(route, submittedNanos, startNanos, allocatedBytes() - allocatedBefore);
+                }
+            }, delay, unit);
+        }
+
+        @Override
+        public <V> ScheduledFuture<V> schedule(final Callable<V> callable, final long delay, final TimeUnit unit) {
+            final String route = route(callable);
+            if (route == null) {
+                return super.schedule(callable, delay, unit);
+            }
+            final long submittedNanos = System.nanoTime() + unit.toNanos(delay);
+            return super.schedule(() -> {
+                final long startNanos = System.nanoTime();
+                final long allocatedBefore = allocatedBytes();
+                try {
+                    return callable.call();
+                } finally {
+                    metrics.recordBlockingTask(route, submittedNanos, startNanos, allocatedBytes() - allocatedBefore);
+                }
+            }, delay, unit);
+        }
+
+        /**
+         * Returns the route of the current request, or of the request the task was made context-aware for.
+         * A service which submits from a callback, such as after aggregating a streamed request, may not
+         * have its context current on the submitting thread.
+         */
+        @Nullable
+        private static String route(final Object task) {
+            RequestContext ctx = ServiceRequestContext.currentOrNull();
+            if (ctx == null && task instanceof ContextHolder) {
+                ctx = ((ContextHolder) task).context();
+            }
+            return ctx instanceof ServiceRequestContext ?
+                   ((ServiceRequestContext) ctx).config().route().patternString() : null;
+        }
+    }
+}
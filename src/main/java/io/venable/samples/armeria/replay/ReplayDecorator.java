@@ -0,0 +1,58 @@
+package io.venable.samples.armeria.replay;
+
+import com.linecorp.armeria.common.HttpRequest;
+import com.linecorp.armeria.common.HttpResponse;
+import com.linecorp.armeria.common.annotation.Nullable;
+import com.linecorp.armeria.server.HttpService;
+import com.linecorp.armeria.server.ServiceRequestContext;
+import com.linecorp.armeria.server.SimpleDecoratingHttpService;
+import io.netty.util.AttributeKey;
+
+import java.util.function.Function;
+
+/**
+ * Collects the request body into a {@link ReplayableBody} before calling the wrapped service.
+ * <p>
+ * The wrapped service receives a replay of the body and can obtain further replays with
+ * {@link #body(ServiceRequestContext)}. The body is released when the request log completes.
+ */
+public class ReplayDecorator extends SimpleDecoratingHttpService {
+    private static final AttributeKey<ReplayableBody> BODY =
+            AttributeKey.valueOf(ReplayDecorator.class, "BODY");
+
+    private final long memoryCap;
+
+    private ReplayDecorator(final HttpService httpService, final long memoryCap) {
+        super(httpService);
+        this.memoryCap = memoryCap;
+    }
+
+    /**
+     * Creates a decorator which keeps bodies up to {@code memoryCap} bytes in pooled direct memory
+     * and spills larger bodies to a temporary file, which each replay reads back in chunks.
+     */
+    public static Function<? super HttpService, ReplayDecorator> newDecorator(final long memoryCap) {
+        return httpService -> new ReplayDecorator(httpService, memoryCap);
+    }
+
+    /**
+     * Returns the body collected for the current request, or {@code null} if this decorator was not applied.
+     */
+    @Nullable
+    public static ReplayableBody body(final ServiceRequestContext ctx) {
+        return ctx.attr(BODY);
+    }
+
+    @Override
+    public HttpResponse serve(final ServiceRequestContext ctx, final HttpRequest req) throws Exception {
+        return HttpResponse.of(ReplayableBody.collect(ctx, req, memoryCap).thenApplyAsync(body -> {
+            ctx.setAttr(BODY, body);
+            ctx.log().whenComplete().thenRun(body::close);
+            try {
+                return unwrap().serve(ctx, body.toHttpRequest(req.headers()));
+            } catch (Exception e) {
+                return HttpResponse.ofFailure(e);
+            }
+        }, ctx.eventLoop()));
+    }
+}
@@ -0,0 +1,326 @@
+package io.venable.samples.armeria.replay;
+
+import com.linecorp.armeria.common.ByteBufAccessMode;
+import com.linecorp.armeria.common.HttpData;
+import com.linecorp.armeria.common.HttpObject;
+import com.linecorp.armeria.common.HttpRequest;
+import com.linecorp.armeria.common.RequestHeaders;
+import com.linecorp.armeria.common.annotation.Nullable;
+import com.linecorp.armeria.common.stream.StreamMessage;
+import com.linecorp.armeria.common.stream.StreamWriter;
+import com.linecorp.armeria.common.stream.SubscriptionOption;
+import com.linecorp.armeria.common.util.SafeCloseable;
+import com.linecorp.armeria.server.ServiceRequestContext;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.util.concurrent.EventExecutor;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * A request body that has been fully received and can be replayed any number of times.
+ * <p>
+ * Bodies up to the in-memory cap are kept in pooled direct {@link ByteBuf}s, so they do not
+ * grow the heap. Larger bodies are spilled to a temporary file, which every replay reads back
+ * through a channel of its own. File reads and writes run on the blocking task executor, and the
+ * next chunk is only requested, or read, after the previous one has been stored, or consumed.
+ * <p>
+ * Close the body once every replay has been subscribed to. Replays that are still in flight
+ * hold their own references and are not affected; closing deletes the spill file, whose disk
+ * space is freed when the last replay reading it ends.
+ */
+public final class ReplayableBody implements SafeCloseable {
+    private static final Logger log = LoggerFactory.getLogger(ReplayableBody.class);
+
+    static final int REPLAY_CHUNK_SIZE = 64 * 1024;
+
+    @Nullable
+    private final CompositeByteBuf memory;
+    @Nullable
+    private final Path spillFile;
+    @Nullable
+    private final Executor blockingExecutor;
+    private final long length;
+    private volatile boolean closed;
+
+    private ReplayableBody(final CompositeByteBuf memory, final long length) {
+        this.memory = memory;
+        this.spillFile = null;
+        this.blockingExecutor = null;
+        this.length = length;
+    }
+
+    private ReplayableBody(final Path spillFile, final Executor blockingExecutor, final long length) {
+        this.memory = null;
+        this.spillFile = spillFile;
+        this.blockingExecutor = blockingExecutor;
+        this.length = length;
+    }
+
+    /**
+     * Collects the body of the request using the event loop and blocking task executor of the context.
+     */
+    public static CompletableFuture<ReplayableBody> collect(final ServiceRequestContext ctx,
+                                                            final HttpRequest req,
+                                                            final long memoryCap) {
+        return collect(req, memoryCap, ctx.eventLoop(), ctx.blockingTaskExecutor());
+    }
+
+    public static CompletableFuture<ReplayableBody> collect(final HttpRequest req,
+                                                            final long memoryCap,
+                                                            final EventExecutor eventLoop,
+                                                            final Executor blockingExecutor) {
+        if (memoryCap < 0) {
+            throw new IllegalArgumentException("memoryCap: " + memoryCap + " (expected: >= 0)");
+        }
+        final Collector collector = new Collector(memoryCap, blockingExecutor);
+        req.subscribe(collector, eventLoop, SubscriptionOption.WITH_POOLED_OBJECTS);
+        return collector.future;
+    }
+
+    public long length() {
+        return length;
+    }
+
+    public boolean isSpilled() {
+        return spillFile != null;
+    }
+
+    /**
+     * Returns the file the body has been spilled to, or {@code null} if it is kept in memory.
+     */
+    @Nullable
+    Path spillFile() {
+        return spillFile;
+    }
+
+    /**
+     * Returns a new request with the given headers whose body is a replay of this body.
+     */
+    public HttpRequest toHttpRequest(final RequestHeaders headers) {
+        if (closed) {
+            throw new IllegalStateException("body has been closed");
+        }
+        if (memory != null) {
+            final HttpData[] chunks = new HttpData[memory.numComponents()];
+            for (int i = 0; i < chunks.length; i++) {
+                chunks[i] = HttpData.wrap(memory.internalComponent(i).retainedDuplicate());
+            }
+            return HttpRequest.of(headers, StreamMessage.of(chunks));
+        }
+
+        // The replay keeps reading from its own channel even after the body is closed and the file deleted.
+        final FileChannel channel;
+        try {
+            channel = FileChannel.open(spillFile, StandardOpenOption.READ);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        final StreamWriter<HttpData> writer = StreamMessage.streaming();
+        writer.whenComplete().handle((unused, cause) -> {
+            closeQuietly(channel);
+            return null;
+        });
+        blockingExecutor.execute(() -> writeSpilled(writer, channel, 0));
+        return HttpRequest.of(headers, writer);
+    }
+
+    private void writeSpilled(final StreamWriter<HttpData> writer, final FileChannel channel, final long offset) {
+        if (offset >= length) {
+            writer.close();
+            return;
+        }
+        final int chunkLength = (int) Math.min(REPLAY_CHUNK_SIZE, length - offset);
+        final ByteBuf buf = PooledByteBufAllocator.DEFAULT.directBuffer(chunkLength);
+        try {
+            while (buf.readableBytes() < chunkLength) {
+                if (buf.writeBytes(channel, offset + buf.readableBytes(), chunkLength - buf.readableBytes()) < 0) {
+                    throw new EOFException("Spill file " + spillFile + " ended at " + (offset + buf.readableBytes()) +
+                                           " of " + length + " bytes");
+                }
+            }
+        } catch (IOException e) {
+            buf.release();
+            writer.abort(e);
+            return;
+        }
+        if (!writer.tryWrite(HttpData.wrap(buf))) {
+            buf.release();
+            return;
+        }
+        writer.whenConsumed().thenRunAsync(() -> writeSpilled(writer, channel, offset + chunkLength), blockingExecutor);
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (memory != null) {
+            memory.release();
+        } else {
+            deleteQuietly(spillFile);
+        }
+    }
+
+    private static void closeQuietly(final FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.debug("Failed to close a spill file channel", e);
+        }
+    }
+
+    private static void deleteQuietly(final Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Failed to delete spill file {}", path, e);
+        }
+    }
+
+    private static class Collector implements Subscriber<HttpObject> {
+        private final long memoryCap;
+        private final Executor blockingExecutor;
+        private final CompletableFuture<ReplayableBody> future = new CompletableFuture<>();
+        private final CompositeByteBuf memory = PooledByteBufAllocator.DEFAULT.compositeDirectBuffer(Integer.MAX_VALUE);
+
+        private Subscription subscription;
+        private CompletableFuture<Void> pendingWrites = CompletableFuture.completedFuture(null);
+        private long length;
+        private long spilledBytes;
+        @Nullable
+        private Path spillFile;
+        @Nullable
+        private FileChannel channel;
+
+        Collector(final long memoryCap, final Executor blockingExecutor) {
+            this.memoryCap = memoryCap;
+            this.blockingExecutor = blockingExecutor;
+        }
+
+        @Override
+        public void onSubscribe(final Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(final HttpObject httpObject) {
+            if (!(httpObject instanceof HttpData)) {
+                subscription.request(1);
+                return;
+            }
+
+            final HttpData data = (HttpData) httpObject;
+            length += data.length();
+            if (spillFile == null && length <= memoryCap) {
+                final ByteBuf buf = data.byteBuf(ByteBufAccessMode.FOR_IO);
+                data.close();
+                memory.addComponent(true, buf);
+                subscription.request(1);
+                return;
+            }
+
+            final boolean spill = spillFile == null;
+            if (spill) {
+                try {
+                    spillFile = Files.createTempFile("replayable-body", ".tmp");
+                } catch (IOException e) {
+                    data.close();
+                    subscription.cancel();
+                    fail(e);
+                    return;
+                }
+            }
+            pendingWrites = pendingWrites.thenRunAsync(() -> {
+                try {
+                    if (spill) {
+                        channel = FileChannel.open(spillFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                        write(memory);
+                        memory.release();
+                    }
+                    write(data.byteBuf());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } finally {
+                    data.close();
+                }
+            }, blockingExecutor).whenComplete((unused, throwable) -> {
+                if (throwable != null) {
+                    subscription.cancel();
+                    fail(throwable);
+                } else {
+                    subscription.request(1);
+                }
+            });
+        }
+
+        private void write(final ByteBuf buf) throws IOException {
+            int index = buf.readerIndex();
+            final int end = buf.writerIndex();
+            while (index < end) {
+                final int written = buf.getBytes(index, channel, spilledBytes, end - index);
+                index += written;
+                spilledBytes += written;
+            }
+        }
+
+        @Override
+        public void onError(final Throwable throwable) {
+            pendingWrites.whenComplete((unused, ignored) -> fail(throwable));
+        }
+
+        @Override
+        public void onComplete() {
+            if (spillFile == null) {
+                future.complete(new ReplayableBody(memory, length));
+                return;
+            }
+            pendingWrites.thenRunAsync(() -> {
+                try {
+                    channel.close();
+                    future.complete(new ReplayableBody(spillFile, blockingExecutor, length));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, blockingExecutor).exceptionally(throwable -> {
+                fail(throwable);
+                return null;
+            });
+        }
+
+        private void fail(final Throwable cause) {
+            if (!future.completeExceptionally(cause)) {
+                return;
+            }
+            if (memory.refCnt() > 0) {
+                memory.release();
+            }
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    log.debug("Failed to close spill file {}", spillFile, e);
+                }
+            }
+            if (spillFile != null) {
+                deleteQuietly(spillFile);
+            }
+        }
+    }
+}
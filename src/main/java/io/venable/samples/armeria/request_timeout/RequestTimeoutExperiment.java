@@ -18,16 +18,23 @@ import com.linecorp.armeria.server.annotation.ExceptionHandlerFunction;
 import com.linecorp.armeria.server.annotation.Post;
 import com.linecorp.armeria.server.throttling.ThrottlingRejectHandler;
 import com.linecorp.armeria.server.throttling.ThrottlingService;
-import com.linecorp.armeria.server.throttling.ThrottlingStrategy;
+import io.venable.samples.armeria.throttling.AdaptiveConcurrencyLimitingStrategy;
+import io.venable.samples.armeria.throttling.DeadlineSheddingDecorator;
+import io.venable.samples.armeria.throttling.KeyedRateLimitingStrategy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
 import java.util.function.Function;
 
 /**
  * Creates a server with a decorator and a defined request timeout.
- * This server tries to control the response when the request times out,
- * but it is resulting in a 503 Service Unavailable.
+ * This server tries to control the response when the request times out.
+ * Without an error handler, Armeria answers a timeout with 503 Service Unavailable once the request has
+ * been fully received, and with 408 Request Timeout otherwise. {@link CustomServerErrorHandler} turns
+ * both into 408, and {@link DeadlineSheddingDecorator} answers 408 up front for requests which cannot
+ * finish in time.
  * <p>
  * Run the main method from IntelliJ.
  * Run:
@@ -49,21 +56,24 @@ public class RequestTimeoutExperiment {
         this.server = server;
     }
 
-    private static Server newServer(final int port) {
+    static Server newServer(final int port, final Duration requestTimeout) {
         final ServerBuilder serverBuilder = Server.builder();
         return serverBuilder.http(port)
                 //.service("/test", (ctx, req) -> HttpResponse.of("Hello, Armeria!"))
                 //.decorator("/test", SimpleDecorator.newDecorator())
-                // TODO: Remove the following line to get the 408 that we'd expect.
-                .decorator(ThrottlingService.newDecorator(ThrottlingStrategy.rateLimiting(10.0), new CustomThrottlingRejectHandler()))
+                // Decorators added later run first: the per-client rate limit, then deadline shedding,
+                // then the concurrency limit, so rejected requests never take a concurrency slot.
+                .decorator(ThrottlingService.newDecorator(AdaptiveConcurrencyLimitingStrategy.of(), new CustomThrottlingRejectHandler()))
+                .decorator(DeadlineSheddingDecorator.newDecorator())
+                .decorator(ThrottlingService.newDecorator(KeyedRateLimitingStrategy.byClientAddress(10.0, 10), new CustomThrottlingRejectHandler()))
                 .annotatedService("/test", new MyService())
-                //.errorHandler(new CustomServerErrorHandler())
-                //.requestTimeout(Duration.of(5, ChronoUnit.SECONDS))
+                .errorHandler(new CustomServerErrorHandler())
+                .requestTimeout(requestTimeout)
                 .build();
     }
 
     private static RequestTimeoutExperiment createServer() {
-        final Server server = newServer(8080);
+        final Server server = newServer(8080, Duration.of(5, ChronoUnit.SECONDS));
 
         server.start().join();
 
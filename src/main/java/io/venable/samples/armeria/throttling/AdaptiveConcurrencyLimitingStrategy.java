@@ -0,0 +1,76 @@
+package io.venable.samples.armeria.throttling;
+
+import com.linecorp.armeria.common.Request;
+import com.linecorp.armeria.common.logging.RequestLog;
+import com.linecorp.armeria.common.util.UnmodifiableFuture;
+import com.linecorp.armeria.server.RequestTimeoutException;
+import com.linecorp.armeria.server.ServiceRequestContext;
+import com.linecorp.armeria.server.throttling.ThrottlingStrategy;
+
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link ThrottlingStrategy} which limits the number of requests in flight instead of the request rate.
+ * <p>
+ * The limit is not fixed. It is adjusted from the round-trip time of every completed request using a
+ * {@link GradientLimit}, so it rises while the server keeps up and falls as soon as requests start queueing.
+ * Requests which time out reduce the limit immediately.
+ */
+public final class AdaptiveConcurrencyLimitingStrategy<T extends Request> extends ThrottlingStrategy<T> {
+    private static final UnmodifiableFuture<Boolean> ACCEPT = UnmodifiableFuture.completedFuture(true);
+    private static final UnmodifiableFuture<Boolean> REJECT = UnmodifiableFuture.completedFuture(false);
+
+    private final GradientLimit limit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private AdaptiveConcurrencyLimitingStrategy(final GradientLimit limit) {
+        super("adaptive-concurrency-limit");
+        this.limit = limit;
+    }
+
+    /**
+     * Creates a strategy which starts at 20 concurrent requests and stays between 1 and 1000.
+     */
+    public static <T extends Request> AdaptiveConcurrencyLimitingStrategy<T> of() {
+        return of(20, 1, 1000);
+    }
+
+    public static <T extends Request> AdaptiveConcurrencyLimitingStrategy<T> of(final int initialLimit,
+                                                                             final int minLimit,
+                                                                             final int maxLimit) {
+        return new AdaptiveConcurrencyLimitingStrategy<>(new GradientLimit(initialLimit, minLimit, maxLimit));
+    }
+
+    public int limit() {
+        return limit.limit();
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    @Override
+    public CompletionStage<Boolean> accept(final ServiceRequestContext ctx, final T request) {
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= limit.limit()) {
+                return REJECT;
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+
+        final long startNanos = System.nanoTime();
+        ctx.log().whenComplete().thenAccept(log -> onComplete(log, System.nanoTime() - startNanos));
+        return ACCEPT;
+    }
+
+    private void onComplete(final RequestLog log, final long rttNanos) {
+        final int completedInFlight = inFlight.getAndDecrement();
+        if (log.responseCause() instanceof RequestTimeoutException) {
+            limit.onDrop();
+        } else {
+            limit.onSample(rttNanos, completedInFlight);
+        }
+    }
+}
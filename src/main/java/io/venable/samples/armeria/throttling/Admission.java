@@ -0,0 +1,50 @@
+package io.venable.samples.armeria.throttling;
+
+import com.linecorp.armeria.common.HttpHeaderNames;
+import com.linecorp.armeria.common.HttpResponse;
+import com.linecorp.armeria.common.HttpStatus;
+import com.linecorp.armeria.common.ResponseHeaders;
+import com.linecorp.armeria.server.ServiceRequestContext;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The waiting and rejecting shared by the decorators which admit a request only once it gets hold of a
+ * limited resource, such as {@link Bulkhead} and {@link ByteBudgetDecorator}.
+ */
+final class Admission {
+    /**
+     * Headers of the response to a request which cannot be admitted now, asking the client to retry later.
+     */
+    static final ResponseHeaders UNAVAILABLE = ResponseHeaders.builder(HttpStatus.SERVICE_UNAVAILABLE)
+            .set(HttpHeaderNames.RETRY_AFTER, "1")
+            .build();
+
+    private Admission() {
+    }
+
+    /**
+     * Returns a response which admits the request once {@code available} completes. The wait ends with the
+     * request: a cancelled request cancels {@code available}, which must then give up what it waits for.
+     */
+    static HttpResponse whenAvailable(final ServiceRequestContext ctx, final CompletableFuture<Void> available,
+                                      final Admitter admitter) {
+        ctx.whenRequestCancelling().thenRun(() -> available.cancel(false));
+        // The context-aware event loop makes the context current for the service.
+        return HttpResponse.of(available.thenApplyAsync(unused -> {
+            try {
+                return admitter.admit();
+            } catch (Exception e) {
+                return HttpResponse.ofFailure(e);
+            }
+        }, ctx.eventLoop()));
+    }
+
+    /**
+     * Serves a request which has got hold of what it waited for.
+     */
+    @FunctionalInterface
+    interface Admitter {
+        HttpResponse admit() throws Exception;
+    }
+}
@@ -0,0 +1,203 @@
+package io.venable.samples.armeria.throttling;
+
+import com.linecorp.armeria.common.ExchangeType;
+import com.linecorp.armeria.common.HttpRequest;
+import com.linecorp.armeria.common.HttpResponse;
+import com.linecorp.armeria.server.HttpService;
+import com.linecorp.armeria.server.RoutingContext;
+import com.linecorp.armeria.server.ServiceRequestContext;
+import com.linecorp.armeria.server.SimpleDecoratingHttpService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Bounds the requests a group of routes may serve at once, so that a surge on those routes holds on to a
+ * fixed share of the server instead of all of it. Decorate every route of the group with the same
+ * bulkhead.
+ * <p>
+ * A request beyond {@code maxConcurrency} waits in a first-in, first-out queue of up to {@code maxQueued}
+ * requests, and is answered with {@code 503 Service Unavailable} when the queue is full. A queued request
+ * has not been subscribed to, so Armeria stops reading its body once the unread data passes its inbound
+ * buffer. The request timeout bounds the wait. A request holds its place until its exchange is complete,
+ * so a streaming upload counts for as long as it runs.
+ * <p>
+ * Keep the queue short. The unread bodies of queued HTTP/2 requests hold on to their connection's
+ * flow-control window, and once they hold all of it, the requests being served cannot receive the rest of
+ * their bodies either.
+ * <p>
+ * Like {@link ByteBudgetDecorator}, the decorator reports a request-streaming exchange, so that it is
+ * called before Armeria aggregates the body of a unary service.
+ */
+public final class Bulkhead {
+    private static final Logger log = LoggerFactory.getLogger(Bulkhead.class);
+
+    private final String name;
+    private final int maxConcurrency;
+    private final int maxQueued;
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final Queue<CompletableFuture<Void>> waiters = new ConcurrentLinkedQueue<>();
+    private final LongAdder rejected = new LongAdder();
+
+    private Bulkhead(final String name, final int maxConcurrency, final int maxQueued) {
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("maxConcurrency: " + maxConcurrency + " (expected: > 0)");
+        }
+        if (maxQueued < 0) {
+            throw new IllegalArgumentException("maxQueued: " + maxQueued + " (expected: >= 0)");
+        }
+        this.name = name;
+        this.maxConcurrency = maxConcurrency;
+        this.maxQueued = maxQueued;
+    }
+
+    public static Bulkhead of(final String name, final int maxConcurrency, final int maxQueued) {
+        return new Bulkhead(name, maxConcurrency, maxQueued);
+    }
+
+    /**
+     * Returns a decorator which admits requests through this bulkhead.
+     */
+    public Function<? super HttpService, HttpService> newDecorator() {
+        return httpService -> new BulkheadService(httpService, this);
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public int maxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public int maxQueued() {
+        return maxQueued;
+    }
+
+    /**
+     * Returns the number of requests being served.
+     */
+    public int active() {
+        return active.get();
+    }
+
+    /**
+     * Returns the number of requests waiting to be served.
+     */
+    public int queued() {
+        return queued.get();
+    }
+
+    /**
+     * Returns the number of requests answered with {@code 503} because the queue was full.
+     */
+    public long rejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * Takes a place if one is free and nobody is waiting for one.
+     */
+    boolean tryAcquire() {
+        return waiters.isEmpty() && tryIncrementActive();
+    }
+
+    /**
+     * Returns a future which completes once a place is taken, or {@code null} if the queue is full.
+     * Cancelling the future leaves the queue.
+     */
+    CompletableFuture<Void> acquireWhenAvailable() {
+        if (queued.incrementAndGet() > maxQueued) {
+            queued.decrementAndGet();
+            rejected.increment();
+            return null;
+        }
+        final CompletableFuture<Void> waiter = new CompletableFuture<>();
+        waiters.add(waiter);
+        waiter.whenComplete((unused, cause) -> {
+            if (cause != null && waiters.remove(waiter)) {
+                queued.decrementAndGet();
+            }
+        });
+        grantWaiters();
+        return waiter;
+    }
+
+    void release() {
+        active.decrementAndGet();
+        grantWaiters();
+    }
+
+    private void grantWaiters() {
+        // Take a place before taking a waiter, so that a place freed meanwhile is seen by the next loop.
+        while (!waiters.isEmpty() && tryIncrementActive()) {
+            final CompletableFuture<Void> waiter = waiters.poll();
+            if (waiter == null) {
+                active.decrementAndGet();
+                continue;
+            }
+            queued.decrementAndGet();
+            if (!waiter.complete(null)) {
+                // Cancelled while it was being granted.
+                active.decrementAndGet();
+            }
+        }
+    }
+
+    private boolean tryIncrementActive() {
+        for (;;) {
+            final int current = active.get();
+            if (current >= maxConcurrency) {
+                return false;
+            }
+            if (active.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "name=" + name + ", maxConcurrency=" + maxConcurrency + ", maxQueued=" + maxQueued +
+               ", active=" + active.get() + ", queued=" + queued.get();
+    }
+
+    private static final class BulkheadService extends SimpleDecoratingHttpService {
+        private final Bulkhead bulkhead;
+
+        BulkheadService(final HttpService httpService, final Bulkhead bulkhead) {
+            super(httpService);
+            this.bulkhead = bulkhead;
+        }
+
+        @Override
+        public ExchangeType exchangeType(final RoutingContext routingContext) {
+            return ExchangeType.of(true, super.exchangeType(routingContext).isResponseStreaming());
+        }
+
+        @Override
+        public HttpResponse serve(final ServiceRequestContext ctx, final HttpRequest req) throws Exception {
+            if (bulkhead.tryAcquire()) {
+                return admit(ctx, req);
+            }
+            final CompletableFuture<Void> acquired = bulkhead.acquireWhenAvailable();
+            if (acquired == null) {
+                log.debug("Rejecting {}; the queue of bulkhead {} is full", ctx, bulkhead.name);
+                return HttpResponse.of(Admission.UNAVAILABLE);
+            }
+            return Admission.whenAvailable(ctx, acquired, () -> admit(ctx, req));
+        }
+
+        private HttpResponse admit(final ServiceRequestContext ctx, final HttpRequest req) throws Exception {
+            ctx.log().whenComplete().thenRun(bulkhead::release);
+            return unwrap().serve(ctx, req);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package io.venable.samples.armeria.throttling;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A number of bytes that requests may hold in memory at the same time, shared by every
+ * {@link ByteBudgetDecorator} it is given to.
+ * <p>
+ * Reservations which do not fit can wait in line. Waiters are served in arrival order, and a new
+ * reservation does not overtake them, so a large request is not starved by a stream of small ones.
+ */
+public final class ByteBudget {
+    private final long maxBytes;
+    private final AtomicLong reservedBytes = new AtomicLong();
+    private final Queue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+    private final Object grantLock = new Object();
+
+    private ByteBudget(final long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("maxBytes: " + maxBytes + " (expected: > 0)");
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    public static ByteBudget of(final long maxBytes) {
+        return new ByteBudget(maxBytes);
+    }
+
+    public long maxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Returns the bytes currently reserved. This can exceed {@link #maxBytes()} briefly, by the chunks of
+     * requests without a content length which arrived before they were aborted.
+     */
+    public long reservedBytes() {
+        return reservedBytes.get();
+    }
+
+    /**
+     * Returns the number of reservations waiting for bytes to be released.
+     */
+    public int waiting() {
+        return waiters.size();
+    }
+
+    /**
+     * Reserves {@code bytes} if they fit and nobody is waiting.
+     */
+    boolean tryReserve(final long bytes) {
+        return waiters.isEmpty() && reserveIfFits(bytes);
+    }
+
+    /**
+     * Reserves {@code bytes} even if they do not fit, for data which has already been received.
+     *
+     * @return the bytes reserved in total afterwards
+     */
+    long forceReserve(final long bytes) {
+        return reservedBytes.addAndGet(bytes);
+    }
+
+    /**
+     * Returns a future which completes once {@code bytes} are reserved. Cancelling the future gives up the
+     * place in line, or releases the bytes if they were reserved at the same time.
+     */
+    CompletableFuture<Void> reserveWhenAvailable(final long bytes) {
+        final Waiter waiter = new Waiter(bytes);
+        waiters.add(waiter);
+        waiter.future.whenComplete((unused, cause) -> {
+            if (cause != null && waiters.remove(waiter)) {
+                // The waiter may have been holding up the ones behind it.
+                grantWaiters();
+            }
+        });
+        grantWaiters();
+        return waiter.future;
+    }
+
+    void release(final long bytes) {
+        if (bytes == 0) {
+            return;
+        }
+        reservedBytes.addAndGet(-bytes);
+        if (!waiters.isEmpty()) {
+            grantWaiters();
+        }
+    }
+
+    private boolean reserveIfFits(final long bytes) {
+        for (;;) {
+            final long reserved = reservedBytes.get();
+            if (reserved + bytes > maxBytes) {
+                return false;
+            }
+            if (reservedBytes.compareAndSet(reserved, reserved + bytes)) {
+                return true;
+            }
+        }
+    }
+
+    private void grantWaiters() {
+        // Granting in order needs a single granter; reservations outside the line only use the CAS.
+        synchronized (grantLock) {
+            Waiter waiter;
+            while ((waiter = waiters.peek()) != null) {
+                if (!waiter.future.isDone()) {
+                    if (!reserveIfFits(waiter.bytes)) {
+                        return;
+                    }
+                    if (!waiter.future.complete(null)) {
+                        // Cancelled while the bytes were being reserved.
+                        reservedBytes.addAndGet(-waiter.bytes);
+                    }
+                }
+                waiters.remove();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "maxBytes=" + maxBytes + ", reservedBytes=" + reservedBytes.get() + ", waiting=" + waiters.size();
+    }
+
+    private static final class Waiter {
+        private final long bytes;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        Waiter(final long bytes) {
+            this.bytes = bytes;
+        }
+    }
+}
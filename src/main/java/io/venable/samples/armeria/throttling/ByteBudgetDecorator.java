@@ -0,0 +1,136 @@
+package io.venable.samples.armeria.throttling;
+
+import com.linecorp.armeria.common.ExchangeType;
+import com.linecorp.armeria.common.HttpRequest;
+import com.linecorp.armeria.common.HttpResponse;
+import com.linecorp.armeria.common.HttpStatus;
+import com.linecorp.armeria.server.HttpService;
+import com.linecorp.armeria.server.HttpStatusException;
+import com.linecorp.armeria.server.RoutingContext;
+import com.linecorp.armeria.server.ServiceRequestContext;
+import com.linecorp.armeria.server.SimpleDecoratingHttpService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Admits requests only while the bodies they may buffer fit into a {@link ByteBudget}, so that a few huge
+ * uploads to a service which aggregates them cannot exhaust the heap.
+ * <p>
+ * A request with a {@code content-length} reserves that many bytes up front, and is answered with
+ * {@code 413 Request Entity Too Large} if it could never fit. When the budget is used up, the request
+ * either waits for other requests to finish, or is answered with {@code 503 Service Unavailable}, as chosen
+ * by {@link OverBudget}. A waiting request has not been subscribed to, so Armeria stops reading from its
+ * connection once the unread data passes its inbound buffer: HTTP/1 connections stop reading from the
+ * socket and HTTP/2 streams stop returning flow-control window. The request timeout bounds the wait.
+ * <p>
+ * A request without a {@code content-length} reserves its chunks as they arrive. It is aborted with
+ * {@code 503}, or {@code 413} once it is larger than the whole budget, when a chunk does not fit.
+ * <p>
+ * The bytes are released when the exchange is complete, since an aggregated body lives until then.
+ * <p>
+ * Armeria aggregates the body of a unary service before calling any decorator. This decorator reports a
+ * request-streaming exchange, so that it sees the headers first and the service aggregates after admission.
+ */
+public class ByteBudgetDecorator extends SimpleDecoratingHttpService {
+    private static final Logger log = LoggerFactory.getLogger(ByteBudgetDecorator.class);
+
+    /**
+     * What happens to a request which does not fit into the budget right now.
+     */
+    public enum OverBudget {
+        /**
+         * Wait for other requests to release bytes, pausing reads on the connection meanwhile.
+         */
+        WAIT,
+        /**
+         * Respond with {@code 503 Service Unavailable} at once.
+         */
+        REJECT;
+
+        public static OverBudget of(final String name) {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    private final ByteBudget budget;
+    private final OverBudget overBudget;
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder waited = new LongAdder();
+
+    ByteBudgetDecorator(final HttpService httpService, final ByteBudget budget, final OverBudget overBudget) {
+        super(httpService);
+        this.budget = budget;
+        this.overBudget = overBudget;
+    }
+
+    public static Function<? super HttpService, ByteBudgetDecorator> newDecorator(final ByteBudget budget,
+                                                                                  final OverBudget overBudget) {
+        return httpService -> new ByteBudgetDecorator(httpService, budget, overBudget);
+    }
+
+    @Override
+    public ExchangeType exchangeType(final RoutingContext routingContext) {
+        return ExchangeType.of(true, super.exchangeType(routingContext).isResponseStreaming());
+    }
+
+    @Override
+    public HttpResponse serve(final ServiceRequestContext ctx, final HttpRequest req) throws Exception {
+        final long contentLength = req.headers().contentLength();
+        if (contentLength > budget.maxBytes()) {
+            rejected.increment();
+            return HttpResponse.of(HttpStatus.REQUEST_ENTITY_TOO_LARGE);
+        }
+        final long bytes = Math.max(contentLength, 0);
+        if (budget.tryReserve(bytes)) {
+            return admit(ctx, req, bytes);
+        }
+        if (overBudget == OverBudget.REJECT) {
+            rejected.increment();
+            log.debug("Rejecting {}; {} bytes do not fit into {}", ctx, bytes, budget);
+            return HttpResponse.of(Admission.UNAVAILABLE);
+        }
+
+        waited.increment();
+        log.debug("Holding {} until {} bytes fit into {}", ctx, bytes, budget);
+        return Admission.whenAvailable(ctx, budget.reserveWhenAvailable(bytes), () -> admit(ctx, req, bytes));
+    }
+
+    private HttpResponse admit(final ServiceRequestContext ctx, final HttpRequest req, final long bytes)
+            throws Exception {
+        final AtomicLong held = new AtomicLong(bytes);
+        ctx.log().whenComplete().thenRun(() -> budget.release(held.get()));
+        if (req.headers().contentLength() >= 0) {
+            return unwrap().serve(ctx, req);
+        }
+        // Throwing from the mapper cancels the upload and fails the stream the service reads.
+        final HttpRequest counted = req.mapData(data -> {
+            held.addAndGet(data.length());
+            if (budget.forceReserve(data.length()) > budget.maxBytes()) {
+                rejected.increment();
+                throw HttpStatusException.of(held.get() > budget.maxBytes() ? HttpStatus.REQUEST_ENTITY_TOO_LARGE
+                                                                            : HttpStatus.SERVICE_UNAVAILABLE);
+            }
+            return data;
+        });
+        return unwrap().serve(ctx, counted);
+    }
+
+    /**
+     * Returns the number of requests answered with {@code 413} or {@code 503}.
+     */
+    public long rejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * Returns the number of requests which had to wait for the budget.
+     */
+    public long waitedCount() {
+        return waited.sum();
+    }
+}
@@ -0,0 +1,104 @@
+package io.venable.samples.armeria.throttling;
+
+import com.linecorp.armeria.common.HttpRequest;
+import com.linecorp.armeria.common.HttpResponse;
+import com.linecorp.armeria.common.HttpStatus;
+import com.linecorp.armeria.common.logging.RequestLogProperty;
+import com.linecorp.armeria.server.HttpService;
+import com.linecorp.armeria.server.ServiceRequestContext;
+import com.linecorp.armeria.server.SimpleDecoratingHttpService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Rejects requests with {@code 408 Request Timeout} when they cannot finish before their deadline.
+ * <p>
+ * The deadline is the request start time plus the request timeout of the {@link ServiceRequestContext},
+ * so a decorator or service earlier in the chain can shorten it with
+ * {@link ServiceRequestContext#setRequestTimeout(java.time.Duration)}. A request is rejected when the time
+ * it has already spent queued plus the recent service time exceeds the timeout, so no work is done for
+ * a response that nobody will read.
+ * <p>
+ * The service time is an exponentially weighted moving average of the time from this decorator until the
+ * service has produced its response headers. It stops there rather than at the end of the exchange, so that
+ * a client which is slow to upload a streaming body or to download the response does not make the service
+ * look slow for everyone else. Every rejection decays it a little, so that a burst of slow responses cannot
+ * shed all traffic forever.
+ */
+public class DeadlineSheddingDecorator extends SimpleDecoratingHttpService {
+    private static final Logger log = LoggerFactory.getLogger(DeadlineSheddingDecorator.class);
+
+    private static final double SMOOTHING = 0.2;
+    private static final double SHED_DECAY = 0.95;
+
+    private final LongSupplier ticker;
+    private final AtomicLong serviceTimeNanos = new AtomicLong();
+    private final LongAdder shed = new LongAdder();
+
+    DeadlineSheddingDecorator(final HttpService httpService, final LongSupplier ticker) {
+        super(httpService);
+        this.ticker = ticker;
+    }
+
+    public static Function<? super HttpService, DeadlineSheddingDecorator> newDecorator() {
+        return httpService -> new DeadlineSheddingDecorator(httpService, System::nanoTime);
+    }
+
+    /**
+     * Returns the time left before the deadline of the request, or {@link Long#MAX_VALUE} if it has no
+     * request timeout.
+     */
+    public static long remainingNanos(final ServiceRequestContext ctx, final long nowNanos) {
+        final long timeoutMillis = ctx.requestTimeoutMillis();
+        if (timeoutMillis <= 0) {
+            return Long.MAX_VALUE;
+        }
+        final long elapsedNanos = nowNanos - ctx.log().partial().requestStartTimeNanos();
+        return TimeUnit.MILLISECONDS.toNanos(timeoutMillis) - elapsedNanos;
+    }
+
+    @Override
+    public HttpResponse serve(final ServiceRequestContext ctx, final HttpRequest req) throws Exception {
+        final long startNanos = ticker.getAsLong();
+        final long estimateNanos = serviceTimeNanos.get();
+        if (remainingNanos(ctx, startNanos) < estimateNanos) {
+            shed.increment();
+            serviceTimeNanos.compareAndSet(estimateNanos, (long) (estimateNanos * SHED_DECAY));
+            log.debug("Shedding {}; service time estimate {} ns is past the deadline", ctx, estimateNanos);
+            return HttpResponse.of(HttpStatus.REQUEST_TIMEOUT);
+        }
+
+        ctx.log().whenAvailable(RequestLogProperty.RESPONSE_HEADERS).thenRun(() -> onResponseHeaders(startNanos));
+        return unwrap().serve(ctx, req);
+    }
+
+    /**
+     * Returns the current service time estimate in nanoseconds.
+     */
+    public long serviceTimeNanos() {
+        return serviceTimeNanos.get();
+    }
+
+    /**
+     * Returns the number of requests rejected so far.
+     */
+    public long shedCount() {
+        return shed.sum();
+    }
+
+    /**
+     * Timed out requests count with the time they had, which underestimates them but keeps the
+     * estimate close to the timeout while the service is too slow.
+     */
+    private void onResponseHeaders(final long startNanos) {
+        final long sampleNanos = ticker.getAsLong() - startNanos;
+        serviceTimeNanos.accumulateAndGet(sampleNanos, (estimate, sample) ->
+                estimate == 0 ? sample : (long) (estimate + SMOOTHING * (sample - estimate)));
+    }
+}
@@ -0,0 +1,85 @@
+package io.venable.samples.armeria.throttling;
+
+/**
+ * A concurrency limit that follows the gradient between the long-term and the current round-trip time.
+ * <p>
+ * While latency stays near its long-term average the limit grows by a queue allowance of
+ * {@code sqrt(limit)}. When latency rises, the limit shrinks in proportion to the increase, so that
+ * queueing inside the server stays bounded and tail latency stays near the unloaded baseline.
+ * The limit does not grow while fewer than half of the permits are in use, because latency measured
+ * at low utilization says nothing about the capacity.
+ */
+final class GradientLimit {
+    private static final double TOLERANCE = 1.5;
+    private static final double MIN_GRADIENT = 0.5;
+    private static final double SMOOTHING = 0.2;
+    private static final double DROP_BACKOFF = 0.9;
+    private static final int LONG_WINDOW = 600;
+    private static final double SHORT_WEIGHT = 0.1;
+
+    private final int minLimit;
+    private final int maxLimit;
+
+    private double estimatedLimit;
+    private volatile int limit;
+    private double longRttNanos;
+    private double shortRttNanos;
+    private long samples;
+
+    GradientLimit(final int initialLimit, final int minLimit, final int maxLimit) {
+        if (minLimit < 1 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("limits: initial=" + initialLimit + ", min=" + minLimit +
+                    ", max=" + maxLimit + " (expected: 1 <= min <= initial <= max)");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        estimatedLimit = initialLimit;
+        limit = initialLimit;
+    }
+
+    int limit() {
+        return limit;
+    }
+
+    /**
+     * Records the round-trip time of a request which completed while {@code inFlight} requests were running.
+     */
+    synchronized void onSample(final long rttNanos, final int inFlight) {
+        samples++;
+        if (samples == 1) {
+            longRttNanos = rttNanos;
+            shortRttNanos = rttNanos;
+            return;
+        }
+
+        final double longWeight = 1.0 / Math.min(samples, LONG_WINDOW);
+        longRttNanos += (rttNanos - longRttNanos) * longWeight;
+        shortRttNanos += (rttNanos - shortRttNanos) * SHORT_WEIGHT;
+
+        // After a sustained increase the long-term average would otherwise keep the limit low long after
+        // the latency has recovered.
+        if (longRttNanos / shortRttNanos > 2) {
+            longRttNanos *= 0.95;
+        }
+
+        if (inFlight < estimatedLimit / 2) {
+            return;
+        }
+
+        final double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, TOLERANCE * longRttNanos / shortRttNanos));
+        final double newLimit = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+        update(estimatedLimit * (1 - SMOOTHING) + newLimit * SMOOTHING);
+    }
+
+    /**
+     * Records a request which was dropped, for example because it timed out.
+     */
+    synchronized void onDrop() {
+        update(estimatedLimit * DROP_BACKOFF);
+    }
+
+    private void update(final double newLimit) {
+        estimatedLimit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+        limit = (int) estimatedLimit;
+    }
+}
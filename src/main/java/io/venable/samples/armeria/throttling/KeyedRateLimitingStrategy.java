@@ -0,0 +1,215 @@
+package io.venable.samples.armeria.throttling;
+
+import com.linecorp.armeria.common.Request;
+import com.linecorp.armeria.common.util.UnmodifiableFuture;
+import com.linecorp.armeria.server.ServiceRequestContext;
+import com.linecorp.armeria.server.throttling.ThrottlingStrategy;
+
+import javax.net.ssl.SSLPeerUnverifiedException;
+import javax.net.ssl.SSLSession;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * A {@link ThrottlingStrategy} which gives every client its own {@link TokenBucket}.
+ * <p>
+ * Clients are told apart by a key taken from the request, such as the client address, a header or the
+ * subject of the TLS client certificate. Buckets live in a {@link ConcurrentHashMap} and are updated
+ * without locks. Buckets which have been full for the idle timeout are evicted by a periodic sweep; since
+ * a full bucket carries no state, eviction does not change any client's budget. The sweep retires a
+ * bucket before removing it, so a request which races with it either makes the bucket active again
+ * or takes its permit from a new, equally full bucket. The sweep runs on the
+ * request threads, which are usually event loops, so each request advances it by at most
+ * {@value #SWEEP_BATCH_SIZE} buckets instead of one request scanning every key. If the number of tracked
+ * keys still exceeds the maximum, requests from new keys are rejected so that memory stays bounded.
+ */
+public final class KeyedRateLimitingStrategy<T extends Request> extends ThrottlingStrategy<T> {
+    private static final UnmodifiableFuture<Boolean> ACCEPT = UnmodifiableFuture.completedFuture(true);
+    private static final UnmodifiableFuture<Boolean> REJECT = UnmodifiableFuture.completedFuture(false);
+
+    static final long DEFAULT_IDLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+    static final int DEFAULT_MAX_KEYS = 1_000_000;
+    static final int SWEEP_BATCH_SIZE = 128;
+
+    private final Function<? super ServiceRequestContext, String> keyFunction;
+    private final long emissionIntervalNanos;
+    private final long burstToleranceNanos;
+    private final long idleNanos;
+    private final int maxKeys;
+    private final LongSupplier ticker;
+    private final ConcurrentHashMap<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong lastSweepNanos;
+    /**
+     * Held by the thread advancing {@link #sweepIterator}, which other threads skip rather than wait for.
+     */
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+    /**
+     * The buckets the current sweep has yet to visit, or {@code null} between sweeps.
+     */
+    private volatile Iterator<Map.Entry<String, TokenBucket>> sweepIterator;
+    /**
+     * How long the buckets of the current sweep must have been full; written before {@link #sweepIterator}.
+     */
+    private long sweepIdleThresholdNanos;
+
+    KeyedRateLimitingStrategy(final Function<? super ServiceRequestContext, String> keyFunction,
+                              final double permitsPerSecond, final int burst,
+                              final long idleNanos, final int maxKeys, final LongSupplier ticker) {
+        super("keyed-rate-limit");
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("permitsPerSecond: " + permitsPerSecond + " (expected: > 0)");
+        }
+        if (burst < 1) {
+            throw new IllegalArgumentException("burst: " + burst + " (expected: >= 1)");
+        }
+        this.keyFunction = keyFunction;
+        emissionIntervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+        burstToleranceNanos = emissionIntervalNanos * burst;
+        this.idleNanos = Math.max(idleNanos, burstToleranceNanos);
+        this.maxKeys = maxKeys;
+        this.ticker = ticker;
+        lastSweepNanos = new AtomicLong(ticker.getAsLong());
+    }
+
+    /**
+     * Creates a strategy which allows {@code permitsPerSecond} with bursts of up to {@code burst} requests
+     * for every key returned by {@code keyFunction}.
+     */
+    public static <T extends Request> KeyedRateLimitingStrategy<T> of(
+            final Function<? super ServiceRequestContext, String> keyFunction,
+            final double permitsPerSecond, final int burst) {
+        return new KeyedRateLimitingStrategy<>(keyFunction, permitsPerSecond, burst,
+                DEFAULT_IDLE_NANOS, DEFAULT_MAX_KEYS, System::nanoTime);
+    }
+
+    /**
+     * Limits every client address. The address honours the server's client address sources,
+     * such as {@code X-Forwarded-For}.
+     */
+    public static <T extends Request> KeyedRateLimitingStrategy<T> byClientAddress(final double permitsPerSecond,
+                                                                                final int burst) {
+        return of(KeyedRateLimitingStrategy::clientAddress, permitsPerSecond, burst);
+    }
+
+    /**
+     * Limits every value of the given request header. Requests without the header share one bucket.
+     */
+    public static <T extends Request> KeyedRateLimitingStrategy<T> byHeader(final CharSequence headerName,
+                                                                         final double permitsPerSecond,
+                                                                         final int burst) {
+        return of(ctx -> {
+            final String value = ctx.request().headers().get(headerName);
+            return value != null ? value : "";
+        }, permitsPerSecond, burst);
+    }
+
+    /**
+     * Limits every TLS client certificate subject. Requests without a client certificate
+     * are limited by their client address.
+     */
+    public static <T extends Request> KeyedRateLimitingStrategy<T> byClientCertificateSubject(
+            final double permitsPerSecond, final int burst) {
+        return of(ctx -> {
+            final SSLSession sslSession = ctx.sslSession();
+            if (sslSession != null) {
+                try {
+                    final Certificate[] certificates = sslSession.getPeerCertificates();
+                    if (certificates.length > 0 && certificates[0] instanceof X509Certificate) {
+                        return ((X509Certificate) certificates[0]).getSubjectX500Principal().getName();
+                    }
+                } catch (SSLPeerUnverifiedException ignored) {
+                    // Fall back to the client address.
+                }
+            }
+            return clientAddress(ctx);
+        }, permitsPerSecond, burst);
+    }
+
+    private static String clientAddress(final ServiceRequestContext ctx) {
+        return ctx.clientAddress().getHostAddress();
+    }
+
+    @Override
+    public CompletionStage<Boolean> accept(final ServiceRequestContext ctx, final T request) {
+        return tryAcquire(keyFunction.apply(ctx)) ? ACCEPT : REJECT;
+    }
+
+    boolean tryAcquire(final String key) {
+        final long now = ticker.getAsLong();
+        maybeSweep(now);
+
+        while (true) {
+            TokenBucket bucket = buckets.get(key);
+            if (bucket == null) {
+                if (buckets.size() >= maxKeys) {
+                    return false;
+                }
+                bucket = buckets.computeIfAbsent(key, unused ->
+                        new TokenBucket(emissionIntervalNanos, burstToleranceNanos, now));
+            }
+            if (bucket.tryAcquire(now)) {
+                return true;
+            }
+            if (!bucket.isRetired()) {
+                return false;
+            }
+            // Retired by a sweep which has yet to remove it.
+            buckets.remove(key, bucket);
+        }
+    }
+
+    int trackedKeys() {
+        return buckets.size();
+    }
+
+    /**
+     * Starts a sweep of idle buckets once per idle timeout and advances the current one by a batch. When the
+     * map is full, a sweep may start as soon as a bucket could have refilled since the last one and then
+     * evicts every full bucket.
+     */
+    private void maybeSweep(final long now) {
+        if (sweepIterator == null) {
+            final long lastSweep = lastSweepNanos.get();
+            final long sinceLastSweep = now - lastSweep;
+            final boolean full = buckets.size() >= maxKeys;
+            if (sinceLastSweep < idleNanos && !(full && sinceLastSweep >= burstToleranceNanos)) {
+                return;
+            }
+            if (!lastSweepNanos.compareAndSet(lastSweep, now)) {
+                return;
+            }
+            sweepIdleThresholdNanos = full ? 0 : idleNanos;
+            sweepIterator = buckets.entrySet().iterator();
+        }
+        if (!sweeping.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            final Iterator<Map.Entry<String, TokenBucket>> iterator = sweepIterator;
+            if (iterator == null) {
+                return;
+            }
+            for (int i = 0; i < SWEEP_BATCH_SIZE && iterator.hasNext(); i++) {
+                final Map.Entry<String, TokenBucket> entry = iterator.next();
+                final TokenBucket bucket = entry.getValue();
+                if (bucket.retire(now, sweepIdleThresholdNanos)) {
+                    buckets.remove(entry.getKey(), bucket);
+                }
+            }
+            if (!iterator.hasNext()) {
+                sweepIterator = null;
+            }
+        } finally {
+            sweeping.set(false);
+        }
+    }
+}
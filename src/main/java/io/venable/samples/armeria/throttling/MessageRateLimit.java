@@ -0,0 +1,82 @@
+package io.venable.samples.armeria.throttling;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * A rate of messages on one long-lived connection, such as the frames of a WebSocket, which are not seen by
+ * the request-level throttling strategies.
+ * <p>
+ * Every connection takes its own {@link Limiter}, a {@link TokenBucket} which starts full, so a new
+ * connection may send a burst at once.
+ */
+public final class MessageRateLimit {
+    private final double messagesPerSecond;
+    private final int burst;
+    private final long emissionIntervalNanos;
+    private final long burstToleranceNanos;
+
+    private MessageRateLimit(final double messagesPerSecond, final int burst) {
+        if (messagesPerSecond <= 0) {
+            throw new IllegalArgumentException("messagesPerSecond: " + messagesPerSecond + " (expected: > 0)");
+        }
+        if (burst < 1) {
+            throw new IllegalArgumentException("burst: " + burst + " (expected: >= 1)");
+        }
+        this.messagesPerSecond = messagesPerSecond;
+        this.burst = burst;
+        emissionIntervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / messagesPerSecond);
+        burstToleranceNanos = emissionIntervalNanos * burst;
+    }
+
+    /**
+     * Allows {@code messagesPerSecond} with bursts of up to {@code burst} messages on every connection.
+     */
+    public static MessageRateLimit of(final double messagesPerSecond, final int burst) {
+        return new MessageRateLimit(messagesPerSecond, burst);
+    }
+
+    public double messagesPerSecond() {
+        return messagesPerSecond;
+    }
+
+    public int burst() {
+        return burst;
+    }
+
+    /**
+     * Returns the limiter for a new connection.
+     */
+    public Limiter newLimiter() {
+        return newLimiter(System::nanoTime);
+    }
+
+    Limiter newLimiter(final LongSupplier ticker) {
+        return new Limiter(new TokenBucket(emissionIntervalNanos, burstToleranceNanos, ticker.getAsLong()), ticker);
+    }
+
+    @Override
+    public String toString() {
+        return "messagesPerSecond=" + messagesPerSecond + ", burst=" + burst;
+    }
+
+    /**
+     * The messages one connection has left.
+     */
+    public static final class Limiter {
+        private final TokenBucket bucket;
+        private final LongSupplier ticker;
+
+        private Limiter(final TokenBucket bucket, final LongSupplier ticker) {
+            this.bucket = bucket;
+            this.ticker = ticker;
+        }
+
+        /**
+         * Takes a permit for one message, returning {@code false} if the connection is over its rate.
+         */
+        public boolean tryAcquire() {
+            return bucket.tryAcquire(ticker.getAsLong());
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package io.venable.samples.armeria.throttling;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lock-free token bucket implemented with the generic cell rate algorithm.
+ * <p>
+ * The whole state is a single theoretical arrival time, the instant at which the bucket will be full
+ * again, so a permit is taken with one compare-and-set. A bucket whose arrival time has passed is full
+ * and can be discarded without losing any state. It is {@linkplain #retire(long, long) retired} first, so
+ * that no permit can be taken from it between the check and the discarding.
+ */
+final class TokenBucket {
+    private static final long RETIRED = Long.MIN_VALUE;
+
+    private final long emissionIntervalNanos;
+    private final long burstToleranceNanos;
+    private final AtomicLong theoreticalArrivalNanos;
+
+    TokenBucket(final long emissionIntervalNanos, final long burstToleranceNanos, final long nowNanos) {
+        this.emissionIntervalNanos = emissionIntervalNanos;
+        this.burstToleranceNanos = burstToleranceNanos;
+        theoreticalArrivalNanos = new AtomicLong(nowNanos);
+    }
+
+    boolean tryAcquire(final long nowNanos) {
+        while (true) {
+            final long current = theoreticalArrivalNanos.get();
+            if (current == RETIRED) {
+                return false;
+            }
+            final long next = Math.max(current, nowNanos) + emissionIntervalNanos;
+            if (next - nowNanos > burstToleranceNanos) {
+                return false;
+            }
+            if (theoreticalArrivalNanos.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Returns whether the bucket has been full since before {@code nowNanos - idleNanos}.
+     */
+    boolean isIdle(final long nowNanos, final long idleNanos) {
+        final long current = theoreticalArrivalNanos.get();
+        return current != RETIRED && nowNanos - current >= idleNanos;
+    }
+
+    /**
+     * Retires the bucket if it is idle, after which it refuses every permit. A permit taken concurrently
+     * either happens first, so that the bucket is no longer idle, or is refused.
+     *
+     * @return whether the bucket has been retired, by this call or an earlier one
+     */
+    boolean retire(final long nowNanos, final long idleNanos) {
+        while (true) {
+            final long current = theoreticalArrivalNanos.get();
+            if (current == RETIRED) {
+                return true;
+            }
+            if (nowNanos - current < idleNanos) {
+                return false;
+            }
+            if (theoreticalArrivalNanos.compareAndSet(current, RETIRED)) {
+                return true;
+            }
+        }
+    }
+
+    boolean isRetired() {
+        return theoreticalArrivalNanos.get() == RETIRED;
+    }
+}
@@ -0,0 +1,138 @@
+package io.venable.samples.armeria.tls;
+
+import com.linecorp.armeria.common.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.X509ExtendedKeyManager;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.GeneralSecurityException;
+import java.security.Principal;
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+
+/**
+ * A server key manager which serves the certificate and key in two PEM files and picks up new versions
+ * of them when {@link #reloadIfChanged()} sees that either file was modified.
+ * <p>
+ * Every loaded version gets a new alias. OpenSSL caches the key material it converted per alias, so a
+ * reload also replaces the cached material, while handshakes never convert the key more than once.
+ * Files which cannot be read or do not match, such as a certificate whose key is still being written,
+ * are logged and the previous version stays in use until the next check.
+ */
+final class ReloadingKeyManager extends X509ExtendedKeyManager {
+    private static final Logger log = LoggerFactory.getLogger(ReloadingKeyManager.class);
+
+    private final Path certificateFile;
+    private final Path keyFile;
+    private volatile KeyMaterial material;
+    private volatile KeyMaterial previousMaterial;
+    // Only used by the thread that reloads.
+    private FileTime certificateModified;
+    private FileTime keyModified;
+    private int generation;
+
+    ReloadingKeyManager(final Path certificateFile, final Path keyFile) throws IOException, GeneralSecurityException {
+        this.certificateFile = certificateFile;
+        this.keyFile = keyFile;
+        certificateModified = Files.getLastModifiedTime(certificateFile);
+        keyModified = Files.getLastModifiedTime(keyFile);
+        material = KeyMaterial.load(nextAlias(), certificateFile, keyFile);
+        previousMaterial = material;
+    }
+
+    /**
+     * Loads the files again if their modification time changed.
+     *
+     * @return whether a new version is now in use
+     */
+    boolean reloadIfChanged() {
+        try {
+            final FileTime newCertificateModified = Files.getLastModifiedTime(certificateFile);
+            final FileTime newKeyModified = Files.getLastModifiedTime(keyFile);
+            if (newCertificateModified.equals(certificateModified) && newKeyModified.equals(keyModified)) {
+                return false;
+            }
+            final KeyMaterial newMaterial = KeyMaterial.load(nextAlias(), certificateFile, keyFile);
+            certificateModified = newCertificateModified;
+            keyModified = newKeyModified;
+            previousMaterial = material;
+            material = newMaterial;
+            log.info("Reloaded TLS certificate {} from {}",
+                    newMaterial.chain()[0].getSubjectX500Principal(), certificateFile);
+            return true;
+        } catch (IOException | GeneralSecurityException e) {
+            log.warn("Failed to reload TLS certificate from {} and {}; keeping the previous one",
+                    certificateFile, keyFile, e);
+            return false;
+        }
+    }
+
+    X509Certificate certificate() {
+        return material.chain()[0];
+    }
+
+    private String nextAlias() {
+        return "sample-" + generation++;
+    }
+
+    @Override
+    @Nullable
+    public String chooseServerAlias(final String keyType, final Principal[] issuers, final Socket socket) {
+        return chooseServerAlias(keyType);
+    }
+
+    @Override
+    @Nullable
+    public String chooseEngineServerAlias(final String keyType, final Principal[] issuers, final SSLEngine engine) {
+        return chooseServerAlias(keyType);
+    }
+
+    @Nullable
+    private String chooseServerAlias(final String keyType) {
+        final KeyMaterial current = material;
+        return current.matches(keyType) ? current.alias() : null;
+    }
+
+    @Override
+    public String[] getServerAliases(final String keyType, final Principal[] issuers) {
+        final KeyMaterial current = material;
+        return current.matches(keyType) ? new String[] { current.alias() } : new String[0];
+    }
+
+    @Override
+    public X509Certificate[] getCertificateChain(final String alias) {
+        return material(alias).chain();
+    }
+
+    @Override
+    public PrivateKey getPrivateKey(final String alias) {
+        return material(alias).key();
+    }
+
+    /**
+     * Returns the version with the alias, so that a handshake which chose an alias just before a reload
+     * still gets a chain and key that belong together.
+     */
+    private KeyMaterial material(final String alias) {
+        final KeyMaterial previous = previousMaterial;
+        return previous.alias().equals(alias) ? previous : material;
+    }
+
+    @Override
+    @Nullable
+    public String[] getClientAliases(final String keyType, final Principal[] issuers) {
+        return null;
+    }
+
+    @Override
+    @Nullable
+    public String chooseClientAlias(final String[] keyTypes, final Principal[] issuers, final Socket socket) {
+        return null;
+    }
+}
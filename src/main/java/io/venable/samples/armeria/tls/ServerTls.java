@@ -0,0 +1,216 @@
+package io.venable.samples.armeria.tls;
+
+import com.linecorp.armeria.common.CommonPools;
+import com.linecorp.armeria.common.util.TlsEngineType;
+import com.linecorp.armeria.server.Server;
+import com.linecorp.armeria.server.ServerBuilder;
+import com.linecorp.armeria.server.ServerListener;
+import com.linecorp.armeria.server.VirtualHost;
+import io.netty.handler.ssl.OpenSsl;
+import io.netty.handler.ssl.OpenSslCachingX509KeyManagerFactory;
+import io.netty.handler.ssl.OpenSslSessionContext;
+import io.netty.handler.ssl.OpenSslSessionTicketKey;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.util.SimpleKeyManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.KeyManager;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.ManagerFactoryParameters;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.SecureRandom;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TLS for a server, tuned for clients which reconnect often.
+ * <ul>
+ *   <li>Uses OpenSSL (BoringSSL from netty-tcnative) when it is available, and the JDK otherwise.</li>
+ *   <li>Keeps a session cache and issues session tickets, so a returning client resumes its session
+ *       instead of paying for a full handshake. The ticket key is rotated regularly; tickets sealed with
+ *       the previous key are still accepted for one more period.</li>
+ *   <li>Prefers ECDHE key exchange with AES-128-GCM, and ChaCha20 for clients without AES instructions.
+ *       Static RSA and CBC suites are left out. Both engines offer X25519 first for ECDHE.</li>
+ *   <li>Reads the certificate and key from PEM files and reloads them when they change, without
+ *       restarting the server or dropping connections.</li>
+ * </ul>
+ * An instance keeps the reloading state of one server, so create one per server.
+ */
+public final class ServerTls {
+    private static final Logger log = LoggerFactory.getLogger(ServerTls.class);
+
+    static final Duration DEFAULT_RELOAD_INTERVAL = Duration.ofSeconds(5);
+    static final Duration TICKET_KEY_ROTATION_INTERVAL = Duration.ofHours(1);
+    static final int SESSION_CACHE_SIZE = 20_480;
+    static final Duration SESSION_TIMEOUT = Duration.ofHours(2);
+
+    static final List<String> CIPHERS = Collections.unmodifiableList(Arrays.asList(
+            // TLS 1.3
+            "TLS_AES_128_GCM_SHA256",
+            "TLS_AES_256_GCM_SHA384",
+            "TLS_CHACHA20_POLY1305_SHA256",
+            // TLS 1.2, ECDSA certificates first since their signatures are cheaper
+            "TLS_ECDHE_ECDSA_WITH_AES_128_GCM_SHA256",
+            "TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256",
+            "TLS_ECDHE_ECDSA_WITH_CHACHA20_POLY1305_SHA256",
+            "TLS_ECDHE_RSA_WITH_CHACHA20_POLY1305_SHA256",
+            "TLS_ECDHE_ECDSA_WITH_AES_256_GCM_SHA384",
+            "TLS_ECDHE_RSA_WITH_AES_256_GCM_SHA384"));
+
+    private final Path certificateFile;
+    private final Path keyFile;
+    private final ReloadingKeyManager keyManager;
+    private final Duration reloadInterval;
+    private final TlsEngineType engineType;
+    private final SecureRandom random = new SecureRandom();
+    private final List<ScheduledFuture<?>> tasks = new ArrayList<>();
+    // Newest first; only used by the rotation task and the server listener.
+    private final List<OpenSslSessionTicketKey> ticketKeys = new ArrayList<>();
+
+    private ServerTls(final Path certificateFile, final Path keyFile, final Duration reloadInterval,
+                      final TlsEngineType engineType) {
+        this.certificateFile = certificateFile;
+        this.keyFile = keyFile;
+        try {
+            keyManager = new ReloadingKeyManager(certificateFile, keyFile);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read " + certificateFile + " or " + keyFile, e);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalArgumentException("Invalid certificate or key: " + certificateFile + ", " + keyFile, e);
+        }
+        this.reloadInterval = reloadInterval;
+        this.engineType = engineType;
+    }
+
+    public static ServerTls of(final Path certificateFile, final Path keyFile) {
+        return of(certificateFile, keyFile, DEFAULT_RELOAD_INTERVAL);
+    }
+
+    /**
+     * Creates TLS settings which check the certificate and key files for changes every {@code reloadInterval}.
+     */
+    public static ServerTls of(final Path certificateFile, final Path keyFile, final Duration reloadInterval) {
+        return new ServerTls(certificateFile, keyFile, reloadInterval,
+                OpenSsl.isAvailable() ? TlsEngineType.OPENSSL : TlsEngineType.JDK);
+    }
+
+    /**
+     * Returns a copy of these settings which uses the given engine, for example to compare it with OpenSSL.
+     */
+    public ServerTls withEngineType(final TlsEngineType engineType) {
+        return new ServerTls(certificateFile, keyFile, reloadInterval, engineType);
+    }
+
+    public TlsEngineType engineType() {
+        return engineType;
+    }
+
+    /**
+     * Returns the certificate currently served.
+     */
+    public X509Certificate certificate() {
+        return keyManager.certificate();
+    }
+
+    /**
+     * Configures TLS on the server. HTTPS listeners are added separately.
+     */
+    public void applyTo(final ServerBuilder serverBuilder) {
+        final KeyManagerFactory keyManagerFactory = new SingleKeyManagerFactory(keyManager);
+        serverBuilder.tls(engineType == TlsEngineType.OPENSSL ?
+                          new OpenSslCachingX509KeyManagerFactory(keyManagerFactory) : keyManagerFactory)
+                     .tlsEngineType(engineType)
+                     .tlsCustomizer(sslContextBuilder -> sslContextBuilder
+                             .ciphers(CIPHERS)
+                             .sessionCacheSize(SESSION_CACHE_SIZE)
+                             .sessionTimeout(SESSION_TIMEOUT.getSeconds()))
+                     .serverListener(ServerListener.builder()
+                             .whenStarted(this::start)
+                             .whenStopping(server -> stop())
+                             .build());
+    }
+
+    private synchronized void start(final Server server) {
+        final List<OpenSslSessionContext> sessionContexts = new ArrayList<>();
+        for (final VirtualHost virtualHost : server.config().virtualHosts()) {
+            final SslContext sslContext = virtualHost.sslContext();
+            if (sslContext != null && sslContext.sessionContext() instanceof OpenSslSessionContext) {
+                sessionContexts.add((OpenSslSessionContext) sslContext.sessionContext());
+            }
+        }
+        if (!sessionContexts.isEmpty()) {
+            rotateTicketKeys(sessionContexts);
+            final long rotationMillis = TICKET_KEY_ROTATION_INTERVAL.toMillis();
+            tasks.add(CommonPools.blockingTaskExecutor().scheduleWithFixedDelay(
+                    () -> rotateTicketKeys(sessionContexts), rotationMillis, rotationMillis, TimeUnit.MILLISECONDS));
+        }
+        final long reloadMillis = reloadInterval.toMillis();
+        tasks.add(CommonPools.blockingTaskExecutor().scheduleWithFixedDelay(
+                keyManager::reloadIfChanged, reloadMillis, reloadMillis, TimeUnit.MILLISECONDS));
+        log.info("TLS uses {}, serving {}", engineType, keyManager.certificate().getSubjectX500Principal());
+    }
+
+    private synchronized void stop() {
+        for (final ScheduledFuture<?> task : tasks) {
+            task.cancel(false);
+        }
+        tasks.clear();
+    }
+
+    private synchronized void rotateTicketKeys(final List<OpenSslSessionContext> sessionContexts) {
+        ticketKeys.add(0, newTicketKey());
+        if (ticketKeys.size() > 2) {
+            ticketKeys.remove(2);
+        }
+        final OpenSslSessionTicketKey[] keys = ticketKeys.toArray(new OpenSslSessionTicketKey[0]);
+        for (final OpenSslSessionContext sessionContext : sessionContexts) {
+            // The first key seals new tickets; the others only open tickets issued before.
+            sessionContext.setTicketKeys(keys);
+        }
+    }
+
+    private OpenSslSessionTicketKey newTicketKey() {
+        final byte[] name = new byte[OpenSslSessionTicketKey.NAME_SIZE];
+        final byte[] hmacKey = new byte[OpenSslSessionTicketKey.HMAC_KEY_SIZE];
+        final byte[] aesKey = new byte[OpenSslSessionTicketKey.AES_KEY_SIZE];
+        random.nextBytes(name);
+        random.nextBytes(hmacKey);
+        random.nextBytes(aesKey);
+        return new OpenSslSessionTicketKey(name, hmacKey, aesKey);
+    }
+
+    /**
+     * Hands out the reloading key manager to whichever engine builds the {@link SslContext}.
+     */
+    private static final class SingleKeyManagerFactory extends SimpleKeyManagerFactory {
+        private final KeyManager[] keyManagers;
+
+        SingleKeyManagerFactory(final KeyManager keyManager) {
+            keyManagers = new KeyManager[] { keyManager };
+        }
+
+        @Override
+        protected void engineInit(final KeyStore keyStore, final char[] password) {
+        }
+
+        @Override
+        protected void engineInit(final ManagerFactoryParameters managerFactoryParameters) {
+        }
+
+        @Override
+        protected KeyManager[] engineGetKeyManagers() {
+            return keyManagers.clone();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package io.venable.samples.armeria;
+
+import com.linecorp.armeria.common.annotation.Nullable;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Measures the heap bytes allocated while a task runs, with the per-thread allocation counters of
+ * {@link com.sun.management.ThreadMXBean}.
+ * <p>
+ * An in-process request runs on the caller, on event loops shared by the client and the server, and on
+ * executors, so the counters of every live thread are summed. Allocation by threads which end while the
+ * task runs is missed, so tasks should be run often enough for short-lived threads not to matter.
+ */
+public final class AllocationMeter {
+    private final com.sun.management.ThreadMXBean threads;
+
+    private AllocationMeter(final com.sun.management.ThreadMXBean threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Returns a meter, or {@code null} if this JVM does not count allocated bytes per thread.
+     */
+    @Nullable
+    public static AllocationMeter ofCurrentJvm() {
+        final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (!(threadMXBean instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+        final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) threadMXBean;
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            return null;
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+        return new AllocationMeter(threads);
+    }
+
+    /**
+     * Runs {@code task} {@code warmups} times unmeasured, so that classes are loaded, caches are filled and
+     * the JIT has settled, and then {@code iterations} times, returning the mean bytes allocated per run.
+     */
+    public long bytesPerRun(final int warmups, final int iterations, final Runnable task) {
+        for (int i = 0; i < warmups; i++) {
+            task.run();
+        }
+        final Map<Long, Long> before = allocatedBytesByThread();
+        for (int i = 0; i < iterations; i++) {
+            task.run();
+        }
+        final Map<Long, Long> after = allocatedBytesByThread();
+        long allocated = 0;
+        for (final Map.Entry<Long, Long> entry : after.entrySet()) {
+            allocated += entry.getValue() - before.getOrDefault(entry.getKey(), 0L);
+        }
+        return allocated / iterations;
+    }
+
+    private Map<Long, Long> allocatedBytesByThread() {
+        final long[] ids = threads.getAllThreadIds();
+        final long[] allocated = threads.getThreadAllocatedBytes(ids);
+        final Map<Long, Long> byThread = new HashMap<>(ids.length * 2);
+        for (int i = 0; i < ids.length; i++) {
+            // -1 for a thread which ended after its id was read.
+            if (allocated[i] >= 0) {
+                byThread.put(ids[i], allocated[i]);
+            }
+        }
+        return byThread;
+    }
+}
@@ -0,0 +1,117 @@
+package io.venable.samples.armeria;
+
+import com.linecorp.armeria.client.WebClient;
+import com.linecorp.armeria.common.AggregatedHttpResponse;
+import com.linecorp.armeria.common.HttpData;
+import com.linecorp.armeria.common.HttpMethod;
+import com.linecorp.armeria.common.HttpRequest;
+import com.linecorp.armeria.common.HttpRequestWriter;
+import com.linecorp.armeria.common.HttpResponse;
+import com.linecorp.armeria.common.HttpStatus;
+import com.linecorp.armeria.common.MediaType;
+import com.linecorp.armeria.common.RequestHeaders;
+import com.linecorp.armeria.server.Server;
+import io.venable.samples.armeria.metrics.EventLoopWatchdog;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThan;
+
+class CopyDecoratorTest {
+
+    private static final int SLOW_CLIENTS = 8;
+    private static final int FAST_REQUESTS = 50;
+
+    private Server server;
+    private EventLoopWatchdog watchdog;
+    private WebClient webClient;
+
+    @BeforeEach
+    void setUp() {
+        // A single event loop makes any blocking call in the decorator stall every connection.
+        server = Server.builder()
+                .http(8081)
+                .workerGroup(1)
+                .service("/", (ctx, req) -> HttpResponse.of("Hello, Armeria!"))
+                .service("/echo", (ctx, req) -> HttpResponse.of(req.aggregate().thenApply(aggregated ->
+                        HttpResponse.of(HttpStatus.OK, MediaType.OCTET_STREAM, aggregated.content()))))
+                .decorator(CopyDecorator.newDecorator())
+                .build();
+
+        server.start().join();
+        // Fails the test if anything blocks the event loop, even when the responses still arrive in time.
+        watchdog = EventLoopWatchdog.strict("test", server.config().workerGroup(), Duration.ofMillis(250));
+
+        webClient = WebClient.builder("http://127.0.0.1:8081")
+                .responseTimeout(Duration.ofSeconds(5))
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        try {
+            watchdog.close();
+        } finally {
+            server.stop().join();
+        }
+    }
+
+    @Test
+    void POST_echo_preserves_binary_content() throws ExecutionException, InterruptedException {
+        final byte[] data = new byte[64 * 1024];
+        new Random(42).nextBytes(data);
+
+        final AggregatedHttpResponse aggregatedHttpResponse = webClient.post("/echo", data).aggregate().get();
+
+        assertThat(aggregatedHttpResponse.status(), equalTo(HttpStatus.OK));
+        assertThat(aggregatedHttpResponse.content().array(), equalTo(data));
+    }
+
+    @Test
+    void slow_uploads_do_not_stall_fast_requests() throws ExecutionException, InterruptedException {
+        final List<HttpRequestWriter> slowRequests = new ArrayList<>();
+        final List<CompletableFuture<AggregatedHttpResponse>> slowResponses = new ArrayList<>();
+        for (int i = 0; i < SLOW_CLIENTS; i++) {
+            final HttpRequestWriter slowRequest = HttpRequest.streaming(RequestHeaders.of(HttpMethod.POST, "/echo"));
+            slowRequest.write(HttpData.ofUtf8("first-"));
+            slowRequests.add(slowRequest);
+            slowResponses.add(webClient.execute(slowRequest).aggregate());
+        }
+
+        long maxNanos = 0;
+        for (int i = 0; i < FAST_REQUESTS; i++) {
+            maxNanos = Math.max(maxNanos, timeFastRequest());
+        }
+
+        assertThat(maxNanos, lessThan(Duration.ofMillis(500).toNanos()));
+
+        for (final HttpRequestWriter slowRequest : slowRequests) {
+            slowRequest.write(HttpData.ofUtf8("second"));
+            slowRequest.close();
+        }
+        for (final CompletableFuture<AggregatedHttpResponse> slowResponse : slowResponses) {
+            final AggregatedHttpResponse aggregatedHttpResponse = slowResponse.get();
+            assertThat(aggregatedHttpResponse.status(), equalTo(HttpStatus.OK));
+            assertThat(aggregatedHttpResponse.contentUtf8(), equalTo("first-second"));
+        }
+    }
+
+    private long timeFastRequest() throws ExecutionException, InterruptedException {
+        final long start = System.nanoTime();
+        final AggregatedHttpResponse aggregatedHttpResponse = webClient.get("/").aggregate().get();
+        final long elapsed = System.nanoTime() - start;
+
+        assertThat(aggregatedHttpResponse.status(), equalTo(HttpStatus.OK));
+        return elapsed;
+    }
+}
@@ -0,0 +1,114 @@
+package io.venable.samples.armeria.accesslog;
+
+import com.linecorp.armeria.client.WebClient;
+import com.linecorp.armeria.common.HttpMethod;
+import com.linecorp.armeria.common.HttpRequest;
+import com.linecorp.armeria.common.HttpResponse;
+import com.linecorp.armeria.common.HttpStatus;
+import com.linecorp.armeria.common.ResponseHeaders;
+import com.linecorp.armeria.common.logging.RequestLog;
+import com.linecorp.armeria.server.Server;
+import com.linecorp.armeria.server.ServiceRequestContext;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+class AsyncAccessLogWriterTest {
+
+    @Test
+    void writes_one_line_per_request_with_truncated_payload_sample(@TempDir final Path directory) throws IOException {
+        final Path file = directory.resolve("access.log");
+        final AsyncAccessLogWriter accessLogWriter = AsyncAccessLogWriter.of(file);
+        final PayloadSampler payloadSampler = PayloadSampler.of(1.0, 5);
+        final Server server = Server.builder()
+                .http(8084)
+                .service("/", (ctx, req) -> {
+                    final PayloadSample sample = payloadSampler.start(ctx);
+                    return HttpResponse.of(req.peekData(sample::append).aggregate()
+                            .thenApply(aggregated -> HttpResponse.of("ok")));
+                })
+                .accessLogWriter(accessLogWriter, true)
+                .build();
+        server.start().join();
+
+        try {
+            final WebClient webClient = WebClient.of("http://127.0.0.1:8084");
+            webClient.post("/", "Hello, \"Armeria\"").aggregate().join();
+            webClient.post("/", "Hi").aggregate().join();
+        } finally {
+            server.stop().join();
+        }
+        accessLogWriter.shutdown().join();
+
+        final List<String> lines = Files.readAllLines(file);
+        assertThat(lines.size(), equalTo(2));
+        assertThat(lines.get(0), containsString("\"method\":\"POST\",\"path\":\"/\""));
+        assertThat(lines.get(0), containsString("\"status\":200"));
+        assertThat(lines.get(0), containsString("\"payload\":\"Hello...(11 more bytes)\""));
+        assertThat(lines.get(1), containsString("\"payload\":\"Hi\""));
+        assertThat(accessLogWriter.writtenCount(), equalTo(2L));
+        assertThat(accessLogWriter.droppedCount(), equalTo(0L));
+    }
+
+    @Test
+    void counts_records_offered_to_a_full_buffer_as_dropped(@TempDir final Path directory) throws IOException {
+        final Path file = directory.resolve("access.log");
+        // Not started yet, so nothing drains the buffer while it is filled.
+        final AsyncAccessLogWriter accessLogWriter = new AsyncAccessLogWriter(file, 2);
+        for (int i = 0; i < 5; i++) {
+            accessLogWriter.log(completedLog());
+        }
+        assertThat(accessLogWriter.droppedCount(), equalTo(3L));
+
+        accessLogWriter.start();
+        accessLogWriter.shutdown().join();
+
+        assertThat(Files.readAllLines(file).size(), equalTo(2));
+        final StringBuilder metrics = new StringBuilder();
+        accessLogWriter.appendTo(metrics);
+        assertThat(metrics.toString(), containsString("sample_access_log_written_total 2\n"));
+        assertThat(metrics.toString(), containsString("sample_access_log_dropped_total 3\n"));
+    }
+
+    @Test
+    void skips_records_which_cannot_be_formatted(@TempDir final Path directory) throws Exception {
+        final Path file = directory.resolve("access.log");
+        final AsyncAccessLogWriter accessLogWriter = AsyncAccessLogWriter.of(file);
+
+        // A log without a response fails to format.
+        accessLogWriter.log(ServiceRequestContext.of(HttpRequest.of(HttpMethod.GET, "/")).log().partial());
+        accessLogWriter.log(completedLog());
+        accessLogWriter.shutdown().get(10, TimeUnit.SECONDS);
+
+        assertThat(Files.readAllLines(file).size(), equalTo(1));
+        assertThat(accessLogWriter.writtenCount(), equalTo(1L));
+        assertThat(accessLogWriter.droppedCount(), equalTo(1L));
+    }
+
+    @Test
+    void counts_records_offered_after_shutdown_as_dropped(@TempDir final Path directory) {
+        final AsyncAccessLogWriter accessLogWriter = AsyncAccessLogWriter.of(directory.resolve("access.log"), 1);
+        accessLogWriter.shutdown().join();
+
+        accessLogWriter.log(ServiceRequestContext.of(HttpRequest.of(HttpMethod.GET, "/")).log().partial());
+
+        assertThat(accessLogWriter.droppedCount(), equalTo(1L));
+    }
+
+    private static RequestLog completedLog() {
+        final ServiceRequestContext ctx = ServiceRequestContext.of(HttpRequest.of(HttpMethod.GET, "/"));
+        ctx.logBuilder().endRequest();
+        ctx.logBuilder().responseHeaders(ResponseHeaders.of(HttpStatus.OK));
+        ctx.logBuilder().endResponse();
+        return ctx.log().whenComplete().join();
+    }
+}
@@ -0,0 +1,60 @@
+package io.venable.samples.armeria.accesslog;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+class BoundedRingBufferTest {
+
+    @Test
+    void rejects_offers_when_full_and_drains_in_order() {
+        final BoundedRingBuffer<Integer> buffer = new BoundedRingBuffer<>(3);
+        assertThat(buffer.capacity(), equalTo(4));
+
+        for (int i = 0; i < 4; i++) {
+            assertThat(buffer.offer(i), equalTo(true));
+        }
+        assertThat(buffer.offer(4), equalTo(false));
+
+        final List<Integer> drained = new ArrayList<>();
+        assertThat(buffer.drain(drained::add, 3), equalTo(3));
+        assertThat(buffer.offer(5), equalTo(true));
+        assertThat(buffer.drain(drained::add, 10), equalTo(2));
+
+        assertThat(drained, equalTo(List.of(0, 1, 2, 3, 5)));
+    }
+
+    @Test
+    void concurrent_producers_lose_nothing_that_was_accepted() throws InterruptedException {
+        final BoundedRingBuffer<Integer> buffer = new BoundedRingBuffer<>(64);
+        final int producers = 4;
+        final int perProducer = 10_000;
+        final AtomicInteger accepted = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(producers);
+
+        for (int p = 0; p < producers; p++) {
+            new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    if (buffer.offer(i)) {
+                        accepted.incrementAndGet();
+                    }
+                }
+                done.countDown();
+            }).start();
+        }
+
+        final AtomicInteger consumed = new AtomicInteger();
+        while (done.getCount() > 0) {
+            buffer.drain(value -> consumed.incrementAndGet(), 16);
+        }
+        buffer.drain(value -> consumed.incrementAndGet(), Integer.MAX_VALUE);
+
+        assertThat(consumed.get(), equalTo(accepted.get()));
+    }
+}
@@ -0,0 +1,200 @@
+package io.venable.samples.armeria.caching;
+
+import com.linecorp.armeria.common.AggregatedHttpResponse;
+import com.linecorp.armeria.common.HttpData;
+import com.linecorp.armeria.common.HttpHeaderNames;
+import com.linecorp.armeria.common.HttpMethod;
+import com.linecorp.armeria.common.HttpRequest;
+import com.linecorp.armeria.common.HttpResponse;
+import com.linecorp.armeria.common.HttpStatus;
+import com.linecorp.armeria.common.MediaType;
+import com.linecorp.armeria.common.RequestHeaders;
+import com.linecorp.armeria.common.ResponseHeaders;
+import com.linecorp.armeria.server.HttpService;
+import com.linecorp.armeria.server.ServiceRequestContext;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+class SingleFlightTest {
+
+    private final AtomicInteger served = new AtomicInteger();
+    private final CompletableFuture<Void> release = new CompletableFuture<>();
+    private final HttpService slowService = (ctx, req) -> {
+        final int call = served.incrementAndGet();
+        return HttpResponse.of(release.thenApply(
+                unused -> HttpResponse.of(HttpStatus.OK, MediaType.PLAIN_TEXT_UTF_8, "call " + call)));
+    };
+    private final AtomicLong nanos = new AtomicLong();
+
+    @Test
+    void concurrent_identical_requests_share_one_call() throws Exception {
+        final SingleFlight singleFlight = SingleFlight.of("test", Collections.singletonList("accept-encoding"));
+        final HttpService service = slowService.decorate(singleFlight.newDecorator());
+
+        final List<CompletableFuture<AggregatedHttpResponse>> responses = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            responses.add(serve(service, get("/")).aggregate());
+        }
+        release.complete(null);
+
+        for (final CompletableFuture<AggregatedHttpResponse> response : responses) {
+            assertThat(response.get(10, TimeUnit.SECONDS).contentUtf8(), equalTo("call 1"));
+        }
+        assertThat(served.get(), equalTo(1));
+        assertThat(singleFlight.invocationCount(), equalTo(1L));
+        assertThat(singleFlight.fanOutCount(), equalTo(4L));
+
+        // The flight is over, so the next request calls the service again.
+        assertThat(serve(service, get("/")).aggregate().get(10, TimeUnit.SECONDS).contentUtf8(), equalTo("call 2"));
+    }
+
+    @Test
+    void requests_differing_in_a_key_header_or_method_are_not_coalesced() throws Exception {
+        final SingleFlight singleFlight = SingleFlight.of("test", Collections.singletonList("accept-encoding"));
+        final HttpService service = slowService.decorate(singleFlight.newDecorator());
+
+        final CompletableFuture<AggregatedHttpResponse> plain = serve(service, get("/")).aggregate();
+        final CompletableFuture<AggregatedHttpResponse> gzip = serve(service, RequestHeaders.builder(HttpMethod.GET, "/")
+                .set(HttpHeaderNames.ACCEPT_ENCODING, "gzip").build()).aggregate();
+        final CompletableFuture<AggregatedHttpResponse> post =
+                serve(service, RequestHeaders.of(HttpMethod.POST, "/")).aggregate();
+        release.complete(null);
+
+        CompletableFuture.allOf(plain, gzip, post).get(10, TimeUnit.SECONDS);
+        assertThat(served.get(), equalTo(3));
+        assertThat(singleFlight.fanOutCount(), equalTo(0L));
+    }
+
+    @Test
+    void caches_responses_until_they_expire() throws Exception {
+        final SingleFlight singleFlight = newCachingSingleFlight(16);
+        final HttpService service = slowService.decorate(singleFlight.newDecorator());
+        release.complete(null);
+
+        assertThat(serve(service, get("/")).aggregate().get(10, TimeUnit.SECONDS).contentUtf8(), equalTo("call 1"));
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(999));
+        assertThat(serve(service, get("/")).aggregate().get(10, TimeUnit.SECONDS).contentUtf8(), equalTo("call 1"));
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+        assertThat(serve(service, get("/")).aggregate().get(10, TimeUnit.SECONDS).contentUtf8(), equalTo("call 2"));
+
+        assertThat(singleFlight.cacheHitCount(), equalTo(1L));
+        assertThat(singleFlight.cacheMissCount(), equalTo(2L));
+    }
+
+    @Test
+    void evicts_the_oldest_entry_beyond_max_entries() throws Exception {
+        final SingleFlight singleFlight = newCachingSingleFlight(2);
+        final HttpService service = slowService.decorate(singleFlight.newDecorator());
+        release.complete(null);
+
+        for (final String path : new String[] { "/a", "/b", "/c", "/b", "/a" }) {
+            serve(service, get(path)).aggregate().get(10, TimeUnit.SECONDS);
+        }
+
+        // "/a" was dropped for "/c", and "/b" was still cached.
+        assertThat(served.get(), equalTo(4));
+        assertThat(singleFlight.cacheHitCount(), equalTo(1L));
+    }
+
+    @Test
+    void answers_matching_if_none_match_with_not_modified() throws Exception {
+        final SingleFlight singleFlight = newCachingSingleFlight(16);
+        final HttpService service = slowService.decorate(singleFlight.newDecorator());
+        release.complete(null);
+
+        final AggregatedHttpResponse first = serve(service, get("/")).aggregate().get(10, TimeUnit.SECONDS);
+        final String etag = first.headers().get(HttpHeaderNames.ETAG);
+        assertThat(etag, notNullValue());
+
+        final AggregatedHttpResponse revalidated = serve(service, RequestHeaders.builder(HttpMethod.GET, "/")
+                .set(HttpHeaderNames.IF_NONE_MATCH, "\"other\", W/" + etag).build()).aggregate().get(10, TimeUnit.SECONDS);
+        assertThat(revalidated.status(), equalTo(HttpStatus.NOT_MODIFIED));
+        assertThat(revalidated.headers().get(HttpHeaderNames.ETAG), equalTo(etag));
+        assertThat(revalidated.content().isEmpty(), equalTo(true));
+
+        final AggregatedHttpResponse changed = serve(service, RequestHeaders.builder(HttpMethod.GET, "/")
+                .set(HttpHeaderNames.IF_NONE_MATCH, "\"other\"").build()).aggregate().get(10, TimeUnit.SECONDS);
+        assertThat(changed.status(), equalTo(HttpStatus.OK));
+        assertThat(singleFlight.notModifiedCount(), equalTo(1L));
+    }
+
+    @Test
+    void requests_with_credentials_pass_through() throws Exception {
+        final SingleFlight singleFlight = newCachingSingleFlight(16);
+        final HttpService service = slowService.decorate(singleFlight.newDecorator());
+
+        final RequestHeaders authorized = RequestHeaders.builder(HttpMethod.GET, "/")
+                .set(HttpHeaderNames.AUTHORIZATION, "Bearer secret").build();
+        final CompletableFuture<AggregatedHttpResponse> first = serve(service, authorized).aggregate();
+        final CompletableFuture<AggregatedHttpResponse> second = serve(service, authorized).aggregate();
+        release.complete(null);
+
+        CompletableFuture.allOf(first, second).get(10, TimeUnit.SECONDS);
+        assertThat(serve(service, authorized).aggregate().get(10, TimeUnit.SECONDS).contentUtf8(), equalTo("call 3"));
+        assertThat(singleFlight.invocationCount(), equalTo(0L));
+        assertThat(singleFlight.cacheMissCount(), equalTo(0L));
+    }
+
+    @Test
+    void private_responses_are_neither_shared_nor_cached() throws Exception {
+        final SingleFlight singleFlight = newCachingSingleFlight(16);
+        final HttpService service = ((HttpService) (ctx, req) -> {
+            final int call = served.incrementAndGet();
+            return HttpResponse.of(release.thenApply(unused -> HttpResponse.of(
+                    ResponseHeaders.builder(HttpStatus.OK)
+                                   .contentType(MediaType.PLAIN_TEXT_UTF_8)
+                                   .set(HttpHeaderNames.CACHE_CONTROL, "max-age=60, private")
+                                   .build(),
+                    HttpData.ofUtf8("call " + call))));
+        }).decorate(singleFlight.newDecorator());
+
+        final CompletableFuture<AggregatedHttpResponse> leader = serve(service, get("/")).aggregate();
+        final CompletableFuture<AggregatedHttpResponse> waiter = serve(service, get("/")).aggregate();
+        release.complete(null);
+
+        assertThat(leader.get(10, TimeUnit.SECONDS).contentUtf8(), equalTo("call 1"));
+        assertThat(waiter.get(10, TimeUnit.SECONDS).contentUtf8(), equalTo("call 2"));
+        assertThat(serve(service, get("/")).aggregate().get(10, TimeUnit.SECONDS).contentUtf8(), equalTo("call 3"));
+        assertThat(singleFlight.fanOutCount(), equalTo(0L));
+        assertThat(singleFlight.cacheHitCount(), equalTo(0L));
+    }
+
+    @Test
+    void tells_which_responses_may_be_shared() {
+        assertThat(SingleFlight.isShareable(ResponseHeaders.of(HttpStatus.OK)), equalTo(true));
+        assertThat(SingleFlight.isShareable(ResponseHeaders.of(HttpStatus.OK,
+                HttpHeaderNames.CACHE_CONTROL, "public, max-age=60")), equalTo(true));
+        assertThat(SingleFlight.isShareable(ResponseHeaders.of(HttpStatus.OK,
+                HttpHeaderNames.CACHE_CONTROL, "No-Store")), equalTo(false));
+        assertThat(SingleFlight.isShareable(ResponseHeaders.of(HttpStatus.OK,
+                HttpHeaderNames.CACHE_CONTROL, "private=\"x-user\"")), equalTo(false));
+        assertThat(SingleFlight.isShareable(ResponseHeaders.of(HttpStatus.OK,
+                HttpHeaderNames.SET_COOKIE, "session=1")), equalTo(false));
+    }
+
+    private SingleFlight newCachingSingleFlight(final int maxEntries) {
+        return SingleFlight.of("test", Collections.singletonList("accept-encoding"), Duration.ofSeconds(1),
+                               maxEntries, nanos::get);
+    }
+
+    private static RequestHeaders get(final String path) {
+        return RequestHeaders.of(HttpMethod.GET, path);
+    }
+
+    private static HttpResponse serve(final HttpService service, final RequestHeaders headers) throws Exception {
+        final HttpRequest request = HttpRequest.of(headers);
+        return service.serve(ServiceRequestContext.of(request), request);
+    }
+}
@@ -0,0 +1,109 @@
+package io.venable.samples.armeria.client;
+
+import com.linecorp.armeria.client.ClientFactory;
+import com.linecorp.armeria.client.ClientFactoryBuilder;
+import com.linecorp.armeria.client.ConnectionPoolListener;
+import com.linecorp.armeria.client.WebClient;
+import com.linecorp.armeria.common.AggregatedHttpResponse;
+import com.linecorp.armeria.common.HttpResponse;
+import com.linecorp.armeria.common.SessionProtocol;
+import com.linecorp.armeria.server.Server;
+import io.netty.util.AttributeMap;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ClientProfileTest {
+
+    private static final Duration SLOW_ECHO_DELAY = Duration.ofMillis(500);
+
+    private Server server;
+
+    @BeforeEach
+    void setUp() {
+        // A server of its own, since the sample server has no route which stays busy for a set time.
+        server = Server.builder()
+                .http(8080)
+                .service("/echo", (ctx, req) -> HttpResponse.of(req.aggregate().thenApply(
+                        request -> HttpResponse.of(request.contentUtf8()))))
+                .service("/slow-echo", (ctx, req) -> HttpResponse.of(req.aggregate().thenApply(
+                        request -> HttpResponse.delayed(HttpResponse.of(request.contentUtf8()), SLOW_ECHO_DELAY))))
+                .build();
+        server.start().join();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop().join();
+    }
+
+    @Test
+    void http1_pooled_opens_a_connection_per_request_up_to_the_limit() throws InterruptedException {
+        assertThat(sendSlowEchoes(ClientProfile.of(ConnectionMode.HTTP1_POOLED, 1, 4)), equalTo(4));
+    }
+
+    @Test
+    void http1_pipelined_sends_every_request_on_one_connection() throws InterruptedException {
+        assertThat(sendSlowEchoes(ClientProfile.of(ConnectionMode.HTTP1_PIPELINED, 1, 0)), equalTo(1));
+    }
+
+    @Test
+    void h2c_multiplexes_every_request_on_one_connection() throws InterruptedException {
+        assertThat(sendSlowEchoes(ClientProfile.of()), equalTo(1));
+    }
+
+    @Test
+    void parses_connection_modes() {
+        assertThat(ConnectionMode.of("http1-pipelined"), equalTo(ConnectionMode.HTTP1_PIPELINED));
+        assertThat(ConnectionMode.of("H2C").sessionProtocol(), equalTo(SessionProtocol.H2C));
+        assertThrows(IllegalArgumentException.class, () -> ClientProfile.of(ConnectionMode.H2C, 0, 0));
+    }
+
+    /**
+     * Sends eight slow echoes a few milliseconds apart, so that all are in flight together but each is written
+     * before the next is sent, and returns the number of connections opened, counting the first.
+     */
+    private static int sendSlowEchoes(final ClientProfile profile) throws InterruptedException {
+        final AtomicInteger opened = new AtomicInteger();
+        final ClientFactoryBuilder clientFactoryBuilder = ClientFactory.builder()
+                .connectionPoolListener(new ConnectionPoolListener() {
+                    @Override
+                    public void connectionOpen(final SessionProtocol protocol, final InetSocketAddress remoteAddr,
+                                               final InetSocketAddress localAddr, final AttributeMap attrs) {
+                        opened.incrementAndGet();
+                    }
+
+                    @Override
+                    public void connectionClosed(final SessionProtocol protocol, final InetSocketAddress remoteAddr,
+                                                 final InetSocketAddress localAddr, final AttributeMap attrs) {
+                    }
+                });
+        profile.applyTo(clientFactoryBuilder);
+        try (ClientFactory clientFactory = clientFactoryBuilder.build()) {
+            final WebClient webClient = profile.newWebClientBuilder(clientFactory, "127.0.0.1", 8080).build();
+            // Opens the first connection, which an HTTP/1 request sent while it is being opened would not wait for.
+            assertThat(webClient.post("/echo", "hello").aggregate().join().contentUtf8(), equalTo("hello"));
+
+            final List<CompletableFuture<AggregatedHttpResponse>> responses = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                responses.add(webClient.post("/slow-echo", "hello " + i).aggregate());
+                Thread.sleep(20);
+            }
+            for (int i = 0; i < responses.size(); i++) {
+                assertThat(responses.get(i).join().contentUtf8(), equalTo("hello " + i));
+            }
+        }
+        return opened.get();
+    }
+}
@@ -0,0 +1,74 @@
+package io.venable.samples.armeria.compression;
+
+import com.linecorp.armeria.common.MediaType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThan;
+
+class PrecompressedServiceTest {
+    private byte[] content;
+    private PrecompressedService service;
+
+    @BeforeEach
+    void setUp() {
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            text.append("Hello, Armeria! ").append(i).append('\n');
+        }
+        content = text.toString().getBytes(StandardCharsets.UTF_8);
+        service = PrecompressedService.of(MediaType.PLAIN_TEXT_UTF_8, content);
+    }
+
+    @Test
+    void serves_identity_without_accept_encoding() {
+        assertThat(service.contentLength(null), equalTo(content.length));
+        assertThat(service.contentLength("identity"), equalTo(content.length));
+    }
+
+    @Test
+    void serves_accepted_variant() {
+        assertThat(service.contentLength("gzip"), equalTo(compressed(Codec.GZIP)));
+        assertThat(service.contentLength("deflate, gzip;q=0.5"), equalTo(compressed(Codec.DEFLATE)));
+        assertThat(service.contentLength("gzip;q=0, deflate;q=0"), equalTo(content.length));
+    }
+
+    @Test
+    void prefers_brotli_on_equal_quality() {
+        assertThat(Codec.BROTLI.isAvailable(), equalTo(true));
+        assertThat(service.contentLength("gzip, deflate, br, zstd"), equalTo(compressed(Codec.BROTLI)));
+        assertThat(service.contentLength("*"), equalTo(compressed(Codec.BROTLI)));
+        assertThat(service.contentLength("br;q=0, *"), equalTo(compressed(Codec.ZSTD)));
+    }
+
+    @Test
+    void does_not_compress_short_content() {
+        final PrecompressedService shortService = PrecompressedService.of(MediaType.PLAIN_TEXT_UTF_8, "Hello!");
+
+        assertThat(shortService.contentLength("gzip, br"), equalTo(6));
+    }
+
+    @Test
+    void gzip_variant_decompresses_to_content() throws IOException {
+        final byte[] gzip = Codec.GZIP.compress(content, Codec.GZIP.maxLevel());
+        assertThat(gzip.length, lessThan(content.length / 4));
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzip))) {
+            in.transferTo(out);
+        }
+        assertThat(out.toByteArray(), equalTo(content));
+    }
+
+    private int compressed(final Codec codec) {
+        return codec.compress(content, codec.maxLevel()).length;
+    }
+}
@@ -0,0 +1,74 @@
+package io.venable.samples.armeria.http;
+
+import com.linecorp.armeria.client.WebClient;
+import io.venable.samples.armeria.AllocationMeter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Fails the build when a change makes a request allocate more than its budget.
+ * <p>
+ * The bytes are those allocated by the whole JVM per round trip, client included, since the client and
+ * the server share Armeria's event loops. Budgets were set about 15% above the measured allocation, and
+ * the part which scales with the payload is tight enough that one more full copy of a large body fails.
+ * When a change lowers allocation, lower the budget with it.
+ */
+class AllocationBudgetTest {
+    private static final int WARMUPS = 300;
+    private static final int ITERATIONS = 300;
+
+    /**
+     * {@code GET /} serves a prebuilt body, so its budget does not depend on a payload.
+     */
+    private static final long ROOT_BUDGET = 28 * 1024;
+    private static final long ECHO_BASE_BUDGET = 32 * 1024;
+    /**
+     * Measured at about four bytes per payload byte for large bodies.
+     */
+    private static final double ECHO_BUDGET_PER_PAYLOAD_BYTE = 4.5;
+
+    private SampleHttpServer server;
+    private WebClient webClient;
+    private AllocationMeter meter;
+
+    @BeforeEach
+    void setUp() {
+        meter = AllocationMeter.ofCurrentJvm();
+        assumeTrue(meter != null, "This JVM does not count allocated bytes per thread");
+        server = SampleHttpServer.createServer();
+
+        webClient = WebClient.builder("http://127.0.0.1:8080").maxResponseLength(0).build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (server != null) {
+            server.shutdown().join();
+        }
+    }
+
+    @Test
+    void GET_root_stays_within_budget() {
+        final long allocated = meter.bytesPerRun(WARMUPS, ITERATIONS, () -> webClient.get("/").aggregate().join());
+
+        assertThat("bytes allocated per GET /", allocated, lessThanOrEqualTo(ROOT_BUDGET));
+    }
+
+    @Test
+    void POST_echo_stays_within_budget_for_every_payload_size() {
+        for (final int payloadSize : new int[] { 0, 1024, 64 * 1024, 256 * 1024 }) {
+            final byte[] payload = new byte[payloadSize];
+            final long allocated = meter.bytesPerRun(WARMUPS, ITERATIONS,
+                    () -> webClient.post("/echo", payload).aggregate().join());
+
+            final long budget = ECHO_BASE_BUDGET + (long) (ECHO_BUDGET_PER_PAYLOAD_BYTE * payloadSize);
+            assertThat("bytes allocated per POST /echo of " + payloadSize + " bytes",
+                    allocated, lessThanOrEqualTo(budget));
+        }
+    }
+}
@@ -8,14 +8,17 @@ import com.linecorp.armeria.common.ClosedSessionException;
 import com.linecorp.armeria.common.HttpResponse;
 import com.linecorp.armeria.common.HttpStatus;
 import com.linecorp.armeria.server.Server;
+import com.linecorp.armeria.server.ServerBuilder;
 import io.netty.handler.codec.DecoderException;
 import io.netty.handler.ssl.ClientAuth;
+import io.venable.samples.armeria.tls.ServerTls;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import javax.net.ssl.SSLHandshakeException;
 import java.io.File;
+import java.nio.file.Paths;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
@@ -36,11 +39,10 @@ public class MutualTLSTest {
     void setUp() {
         rootMessage = "Welcome " + UUID.randomUUID();
 
-        server = Server.builder()
-                .https(8443)
-                .tls(
-                        new File("src/test/resources/cert.pem"),
-                        new File("src/test/resources/key.pem"))
+        final ServerBuilder serverBuilder = Server.builder().https(8443);
+        ServerTls.of(Paths.get("src/test/resources/cert.pem"), Paths.get("src/test/resources/key.pem"))
+                .applyTo(serverBuilder);
+        server = serverBuilder
                 .tlsCustomizer(sslContextBuilder -> sslContextBuilder.trustManager(
                         new File("src/test/resources/cert.pem")
                 ))
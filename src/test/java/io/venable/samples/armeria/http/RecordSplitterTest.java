@@ -0,0 +1,117 @@
+package io.venable.samples.armeria.http;
+
+import com.linecorp.armeria.common.HttpData;
+import com.linecorp.armeria.common.HttpStatus;
+import com.linecorp.armeria.server.HttpStatusException;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RecordSplitterTest {
+
+    @Test
+    void passes_chunks_of_whole_lines_through() {
+        final RecordSplitter splitter = new RecordSplitter(RecordFraming.LINES, 16);
+        final HttpData chunk = HttpData.ofUtf8("{\"a\":1}\n{\"b\":2}\n");
+
+        assertThat(splitter.split(chunk), sameInstance(chunk));
+        assertThat(splitter.finish().isEmpty(), equalTo(true));
+    }
+
+    @Test
+    void carries_lines_across_chunks() {
+        final RecordSplitter splitter = new RecordSplitter(RecordFraming.LINES, 16);
+
+        assertThat(splitter.split(HttpData.ofUtf8("one\ntw")).toStringUtf8(), equalTo("one\n"));
+        assertThat(splitter.split(HttpData.ofUtf8("o")).isEmpty(), equalTo(true));
+        assertThat(splitter.split(HttpData.ofUtf8("\nthree\nfo")).toStringUtf8(), equalTo("two\nthree\n"));
+        assertThat(splitter.finish().toStringUtf8(), equalTo("fo"));
+    }
+
+    @Test
+    void releases_pooled_chunks_which_are_not_passed_on() {
+        final RecordSplitter splitter = new RecordSplitter(RecordFraming.LINES, 16);
+        final ByteBuf first = pooled("one\ntw");
+        final ByteBuf second = pooled("o\n");
+        final ByteBuf whole = pooled("three\n");
+        final ByteBuf tooLong = pooled("abcdefghijklmnopq");
+
+        assertThat(splitter.split(HttpData.wrap(first)).toStringUtf8(), equalTo("one\n"));
+        assertThat(splitter.split(HttpData.wrap(second)).toStringUtf8(), equalTo("two\n"));
+        final HttpData passedOn = HttpData.wrap(whole);
+        assertThat(splitter.split(passedOn), sameInstance(passedOn));
+        assertThrows(HttpStatusException.class, () -> splitter.split(HttpData.wrap(tooLong)));
+
+        assertThat(first.refCnt(), equalTo(0));
+        assertThat(second.refCnt(), equalTo(0));
+        assertThat(whole.refCnt(), equalTo(1));
+        assertThat(tooLong.refCnt(), equalTo(0));
+        passedOn.close();
+    }
+
+    @Test
+    void rejects_line_longer_than_maximum() {
+        final RecordSplitter splitter = new RecordSplitter(RecordFraming.LINES, 4);
+        splitter.split(HttpData.ofUtf8("abc"));
+
+        final HttpStatusException exception = assertThrows(HttpStatusException.class,
+                () -> splitter.split(HttpData.ofUtf8("de")));
+        assertThat(exception.httpStatus(), equalTo(HttpStatus.REQUEST_ENTITY_TOO_LARGE));
+    }
+
+    @Test
+    void carries_length_prefixed_records_across_chunks() {
+        final RecordSplitter splitter = new RecordSplitter(RecordFraming.LENGTH_PREFIXED, 16);
+        final byte[] batch = lengthPrefixed("one", "", "three");
+
+        // Cut inside the second length prefix, then inside the third record.
+        assertThat(splitter.split(HttpData.wrap(batch, 0, 9)).array(), equalTo(lengthPrefixed("one")));
+        assertThat(splitter.split(HttpData.wrap(batch, 9, 6)).array(), equalTo(lengthPrefixed("")));
+        assertThat(splitter.split(HttpData.wrap(batch, 15, batch.length - 15)).array(),
+                equalTo(lengthPrefixed("three")));
+        assertThat(splitter.finish().isEmpty(), equalTo(true));
+    }
+
+    @Test
+    void rejects_truncated_length_prefixed_record() {
+        final RecordSplitter splitter = new RecordSplitter(RecordFraming.LENGTH_PREFIXED, 16);
+        final byte[] batch = lengthPrefixed("three");
+        splitter.split(HttpData.wrap(batch, 0, batch.length - 1));
+
+        final HttpStatusException exception = assertThrows(HttpStatusException.class, splitter::finish);
+        assertThat(exception.httpStatus(), equalTo(HttpStatus.BAD_REQUEST));
+    }
+
+    @Test
+    void rejects_length_prefix_over_maximum() {
+        final RecordSplitter splitter = new RecordSplitter(RecordFraming.LENGTH_PREFIXED, 4);
+
+        assertThrows(HttpStatusException.class, () -> splitter.split(HttpData.wrap(lengthPrefixed("three"))));
+    }
+
+    private static ByteBuf pooled(final String content) {
+        final byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        return PooledByteBufAllocator.DEFAULT.directBuffer(bytes.length).writeBytes(bytes);
+    }
+
+    static byte[] lengthPrefixed(final String... records) {
+        int length = 0;
+        for (final String record : records) {
+            length += Integer.BYTES + record.getBytes(StandardCharsets.UTF_8).length;
+        }
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+        for (final String record : records) {
+            final byte[] bytes = record.getBytes(StandardCharsets.UTF_8);
+            buffer.putInt(bytes.length).put(bytes);
+        }
+        return buffer.array();
+    }
+}
@@ -1,16 +1,41 @@
 package io.venable.samples.armeria.http;
 
+import com.linecorp.armeria.client.ClientFactory;
 import com.linecorp.armeria.client.WebClient;
+import com.linecorp.armeria.client.WebClientBuilder;
+import com.linecorp.armeria.client.websocket.WebSocketClient;
+import com.linecorp.armeria.client.websocket.WebSocketSession;
 import com.linecorp.armeria.common.AggregatedHttpResponse;
+import com.linecorp.armeria.common.HttpData;
+import com.linecorp.armeria.common.HttpHeaderNames;
+import com.linecorp.armeria.common.HttpMethod;
+import com.linecorp.armeria.common.HttpRequest;
+import com.linecorp.armeria.common.HttpRequestWriter;
 import com.linecorp.armeria.common.HttpResponse;
 import com.linecorp.armeria.common.HttpStatus;
+import com.linecorp.armeria.common.MediaType;
+import com.linecorp.armeria.common.RequestHeaders;
+import com.linecorp.armeria.common.stream.StreamMessage;
+import com.linecorp.armeria.common.websocket.WebSocketFrame;
+import com.linecorp.armeria.common.websocket.WebSocketFrameType;
+import com.linecorp.armeria.common.websocket.WebSocketWriter;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
 import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
 
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.notNullValue;
@@ -30,7 +55,7 @@ class SampleHttpServerTest {
 
     @AfterEach
     void tearDown() {
-        server.shutdown();
+        server.shutdown().join();
     }
 
     @Test
@@ -50,6 +75,140 @@ class SampleHttpServerTest {
         assertThat(aggregatedHttpResponse.contentUtf8(), equalTo(data));
     }
 
+    @Test
+    void POST_echo_preserves_non_ASCII_content() throws ExecutionException, InterruptedException {
+        final String data = "h\u00e9llo w\u00f6rld \u2603 " + UUID.randomUUID();
+        final AggregatedHttpResponse aggregatedHttpResponse = webClient.post("echo", data).aggregate().get();
+
+        assertThat(aggregatedHttpResponse.status(), equalTo(HttpStatus.OK));
+        assertThat(aggregatedHttpResponse.contentUtf8(), equalTo(data));
+    }
+
+    @Test
+    void POST_echo_stream() throws ExecutionException, InterruptedException {
+        final String data = "h\u00e9llo w\u00f6rld \u2603 " + UUID.randomUUID();
+        final AggregatedHttpResponse aggregatedHttpResponse = webClient.post("echo/stream", data).aggregate().get();
+
+        assertThat(aggregatedHttpResponse.status(), equalTo(HttpStatus.OK));
+        assertThat(aggregatedHttpResponse.contentUtf8(), equalTo(data));
+    }
+
+    @Test
+    void POST_echo_stream_larger_than_max_request_length_over_http1() throws ExecutionException, InterruptedException {
+        assertStreamEchoed(WebClient.builder("h1c://127.0.0.1:8080"));
+    }
+
+    @Test
+    void POST_echo_stream_larger_than_max_request_length_with_a_window_for_the_whole_body()
+            throws ExecutionException, InterruptedException {
+        try (ClientFactory clientFactory = ClientFactory.builder()
+                .http2InitialConnectionWindowSize(64 * 1024 * 1024)
+                .http2InitialStreamWindowSize(64 * 1024 * 1024)
+                .build()) {
+            assertStreamEchoed(WebClient.builder("http://127.0.0.1:8080").factory(clientFactory));
+        }
+    }
+
+    @Test
+    void POST_echo_batch_answers_records_before_the_upload_ends() throws Exception {
+        final HttpRequestWriter request = HttpRequest.streaming(
+                RequestHeaders.of(HttpMethod.POST, "/echo/batch", HttpHeaderNames.CONTENT_TYPE, MediaType.JSON_LINES));
+        final BlockingQueue<String> received = new LinkedBlockingQueue<>();
+        // Aggregating the response on the client would hold it back until the request is complete.
+        final CompletableFuture<Void> response = webClient.execute(request)
+                .peekHeaders(headers -> received.add(headers.contentType().toString()))
+                .peekData(data -> received.add(data.toStringUtf8()))
+                .subscribe();
+
+        request.write(HttpData.ofUtf8("{\"id\":1}\n{\"id\":2}\n{\"id\""));
+        assertThat(received.poll(10, TimeUnit.SECONDS), equalTo(MediaType.JSON_LINES.toString()));
+        assertThat(received.poll(10, TimeUnit.SECONDS), equalTo("{\"id\":1}\n{\"id\":2}\n"));
+        request.write(HttpData.ofUtf8(":3}\n{\"id\":4}"));
+        request.close();
+
+        response.get(10, TimeUnit.SECONDS);
+        assertThat(String.join("", received), equalTo("{\"id\":3}\n{\"id\":4}"));
+    }
+
+    @Test
+    void POST_echo_batch_with_length_prefixed_records() throws ExecutionException, InterruptedException {
+        final byte[] batch = RecordSplitterTest.lengthPrefixed("one", "", "h\u00e9llo\nw\u00f6rld");
+        final AggregatedHttpResponse aggregatedHttpResponse =
+                webClient.execute(HttpRequest.of(HttpMethod.POST, "/echo/batch", MediaType.OCTET_STREAM, batch))
+                        .aggregate().get();
+
+        assertThat(aggregatedHttpResponse.status(), equalTo(HttpStatus.OK));
+        assertThat(aggregatedHttpResponse.content().array(), equalTo(batch));
+    }
+
+    @Test
+    void POST_echo_batch_rejects_unsupported_content_type() throws ExecutionException, InterruptedException {
+        final AggregatedHttpResponse aggregatedHttpResponse =
+                webClient.execute(HttpRequest.of(HttpMethod.POST, "/echo/batch", MediaType.JSON, "[1, 2]"))
+                        .aggregate().get();
+
+        assertThat(aggregatedHttpResponse.status(), equalTo(HttpStatus.UNSUPPORTED_MEDIA_TYPE));
+    }
+
+    @Test
+    void WebSocket_echo_text_and_binary_messages() throws Exception {
+        final WebSocketSession session = WebSocketClient.of("ws://127.0.0.1:8080").connect("/echo/ws").get();
+        final CompletableFuture<List<WebSocketFrame>> inbound = session.inbound().collect();
+        final WebSocketWriter outbound = session.outbound();
+
+        final byte[] binary = new byte[1024];
+        new Random(42).nextBytes(binary);
+        outbound.write("h\u00e9llo w\u00f6rld \u2603");
+        outbound.write(binary);
+        outbound.write("bye");
+        outbound.close();
+
+        final List<WebSocketFrame> frames = inbound.get(10, TimeUnit.SECONDS);
+        assertThat(frames.get(0).type(), equalTo(WebSocketFrameType.TEXT));
+        assertThat(frames.get(0).text(), equalTo("h\u00e9llo w\u00f6rld \u2603"));
+        assertThat(frames.get(1).type(), equalTo(WebSocketFrameType.BINARY));
+        assertThat(frames.get(1).array(), equalTo(binary));
+        assertThat(frames.get(2).text(), equalTo("bye"));
+        assertThat(frames.get(3).type(), equalTo(WebSocketFrameType.CLOSE));
+    }
+
+    @Test
+    void POST_echo_compresses_large_text_for_gzip_clients() throws Exception {
+        final StringBuilder data = new StringBuilder();
+        while (data.length() < 8192) {
+            data.append("{\"id\":").append(data.length()).append(",\"name\":\"sample\"}\n");
+        }
+        final HttpRequest request = HttpRequest.of(
+                RequestHeaders.builder(HttpMethod.POST, "/echo")
+                              .contentType(MediaType.PLAIN_TEXT_UTF_8)
+                              .set(HttpHeaderNames.ACCEPT_ENCODING, "gzip")
+                              .build(),
+                HttpData.ofUtf8(data.toString()));
+        final AggregatedHttpResponse aggregatedHttpResponse = webClient.execute(request).aggregate().get();
+
+        assertThat(aggregatedHttpResponse.status(), equalTo(HttpStatus.OK));
+        assertThat(aggregatedHttpResponse.headers().get(HttpHeaderNames.CONTENT_ENCODING), equalTo("gzip"));
+        assertThat(aggregatedHttpResponse.content().length() < data.length() / 4, equalTo(true));
+        try (GZIPInputStream inputStream = new GZIPInputStream(aggregatedHttpResponse.content().toInputStream())) {
+            assertThat(new String(inputStream.readAllBytes(), StandardCharsets.UTF_8), equalTo(data.toString()));
+        }
+    }
+
+    @Test
+    void POST_echo_does_not_compress_small_responses() throws ExecutionException, InterruptedException {
+        final HttpRequest request = HttpRequest.of(
+                RequestHeaders.builder(HttpMethod.POST, "/echo")
+                              .contentType(MediaType.PLAIN_TEXT_UTF_8)
+                              .set(HttpHeaderNames.ACCEPT_ENCODING, "gzip")
+                              .build(),
+                HttpData.ofUtf8("small"));
+        final AggregatedHttpResponse aggregatedHttpResponse = webClient.execute(request).aggregate().get();
+
+        assertThat(aggregatedHttpResponse.status(), equalTo(HttpStatus.OK));
+        assertThat(aggregatedHttpResponse.headers().contains(HttpHeaderNames.CONTENT_ENCODING), equalTo(false));
+        assertThat(aggregatedHttpResponse.contentUtf8(), equalTo("small"));
+    }
+
     @Test
     void GET_root() throws ExecutionException, InterruptedException {
 
@@ -68,4 +227,52 @@ class SampleHttpServerTest {
         assertThat(aggregatedHttpResponse.contentUtf8(), equalTo("Hello, Armeria!"));
     }
 
-}
\ No newline at end of file
+    @Test
+    void GET_root_revalidates_with_etag() throws Exception {
+        final AggregatedHttpResponse first = webClient.get("/").aggregate().get(10, TimeUnit.SECONDS);
+        final String etag = first.headers().get(HttpHeaderNames.ETAG);
+        assertThat(etag, notNullValue());
+
+        final AggregatedHttpResponse revalidated = webClient.execute(RequestHeaders.builder(HttpMethod.GET, "/")
+                .set(HttpHeaderNames.IF_NONE_MATCH, etag).build()).aggregate().get(10, TimeUnit.SECONDS);
+
+        assertThat(revalidated.status(), equalTo(HttpStatus.NOT_MODIFIED));
+        assertThat(revalidated.headers().get(HttpHeaderNames.ETAG), equalTo(etag));
+    }
+
+    /**
+     * Streams 32 MiB, more than any flow-control window, to {@code /echo/stream} and checks every byte echoed.
+     */
+    private static void assertStreamEchoed(final WebClientBuilder webClientBuilder)
+            throws ExecutionException, InterruptedException {
+        final byte[] chunk = new byte[64 * 1024];
+        new Random(42).nextBytes(chunk);
+        final HttpData[] chunks = new HttpData[512];
+        Arrays.fill(chunks, HttpData.wrap(chunk));
+
+        final HttpRequest request = HttpRequest.of(
+                RequestHeaders.of(HttpMethod.POST, "/echo/stream", HttpHeaderNames.CONTENT_TYPE, MediaType.OCTET_STREAM),
+                StreamMessage.of(chunks));
+
+        final AtomicLong receivedBytes = new AtomicLong();
+        final AtomicBoolean matches = new AtomicBoolean(true);
+        final HttpResponse echoResponse = webClientBuilder
+                .maxResponseLength(0)
+                .build()
+                .execute(request)
+                .peekData(data -> {
+                    final byte[] bytes = data.array();
+                    final long offset = receivedBytes.getAndAdd(bytes.length);
+                    for (int i = 0; i < bytes.length; i++) {
+                        if (bytes[i] != chunk[(int) ((offset + i) % chunk.length)]) {
+                            matches.set(false);
+                            break;
+                        }
+                    }
+                });
+        echoResponse.subscribe().get();
+
+        assertThat(receivedBytes.get(), equalTo((long) chunk.length * chunks.length));
+        assertThat(matches.get(), equalTo(true));
+    }
+}
@@ -0,0 +1,123 @@
+package io.venable.samples.armeria.http;
+
+import com.linecorp.armeria.client.WebClient;
+import com.linecorp.armeria.client.websocket.WebSocketClient;
+import com.linecorp.armeria.client.websocket.WebSocketSession;
+import com.linecorp.armeria.common.AggregatedHttpResponse;
+import com.linecorp.armeria.common.HttpData;
+import com.linecorp.armeria.common.HttpMethod;
+import com.linecorp.armeria.common.HttpRequest;
+import com.linecorp.armeria.common.HttpRequestWriter;
+import com.linecorp.armeria.common.HttpStatus;
+import com.linecorp.armeria.common.MediaType;
+import com.linecorp.armeria.common.RequestHeaders;
+import com.linecorp.armeria.common.websocket.CloseWebSocketFrame;
+import com.linecorp.armeria.common.websocket.WebSocketCloseStatus;
+import com.linecorp.armeria.common.websocket.WebSocketFrame;
+import com.linecorp.armeria.common.websocket.WebSocketFrameType;
+import com.linecorp.armeria.common.websocket.WebSocketWriter;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Runs the whole server with the optional features switched on by its settings.
+ */
+class ServerFeaturesTest {
+
+    @Test
+    void rejects_echo_bodies_over_budget_before_they_arrive() {
+        final Properties properties = new Properties();
+        properties.setProperty("sample.server.echo.maxBufferedBytes", "1024");
+        properties.setProperty("sample.server.echo.overBudget", "reject");
+
+        try (ServerFixture fixture = ServerFixture.start(properties)) {
+            final WebClient webClient = fixture.webClient();
+            // The body is never sent, so the answer must come from the headers alone.
+            final HttpRequestWriter request = HttpRequest.streaming(RequestHeaders.builder(HttpMethod.POST, "/echo")
+                    .contentType(MediaType.PLAIN_TEXT_UTF_8)
+                    .contentLength(4096)
+                    .build());
+            assertThat(webClient.execute(request).aggregate().join().status(),
+                    equalTo(HttpStatus.REQUEST_ENTITY_TOO_LARGE));
+            request.abort();
+
+            assertThat(webClient.post("/echo", "hello").aggregate().join().contentUtf8(), equalTo("hello"));
+            // The streaming echo does not buffer, so it is not limited.
+            final String large = "x".repeat(4096);
+            assertThat(webClient.post("/echo/stream", large).aggregate().join().contentUtf8(), equalTo(large));
+        }
+    }
+
+    @Test
+    void closes_web_sockets_over_the_message_rate() throws Exception {
+        final Properties properties = new Properties();
+        properties.setProperty("sample.server.echo.webSocket.messagesPerSecond", "0.1");
+        properties.setProperty("sample.server.echo.webSocket.burst", "2");
+
+        try (ServerFixture fixture = ServerFixture.start(properties)) {
+            final WebSocketSession session = WebSocketClient.of(fixture.uri("ws")).connect("/echo/ws").get();
+            final CompletableFuture<List<WebSocketFrame>> inbound = session.inbound().collect();
+            final WebSocketWriter outbound = session.outbound();
+            outbound.write("one");
+            outbound.write("two");
+            outbound.write("three");
+
+            final List<WebSocketFrame> frames = inbound.get(10, TimeUnit.SECONDS);
+            outbound.close();
+            assertThat(frames.size(), equalTo(3));
+            assertThat(frames.get(1).text(), equalTo("two"));
+            assertThat(frames.get(2).type(), equalTo(WebSocketFrameType.CLOSE));
+            assertThat(((CloseWebSocketFrame) frames.get(2)).status(), equalTo(WebSocketCloseStatus.POLICY_VIOLATION));
+        }
+    }
+
+    @Test
+    void full_echo_lane_rejects_echoes_but_not_the_root() throws Exception {
+        final Properties properties = new Properties();
+        properties.setProperty("sample.server.echo.lane.maxConcurrency", "1");
+        properties.setProperty("sample.server.echo.lane.maxQueued", "0");
+
+        try (ServerFixture fixture = ServerFixture.start(properties)) {
+            final WebClient webClient = fixture.webClient();
+            // Holds the lane's only place until the upload is finished.
+            final HttpRequestWriter slowUpload = HttpRequest.streaming(RequestHeaders.of(HttpMethod.POST, "/echo/stream"));
+            slowUpload.write(HttpData.ofUtf8("slow"));
+            final CompletableFuture<AggregatedHttpResponse> slowEcho = webClient.execute(slowUpload).aggregate();
+            Thread.sleep(200);
+
+            assertThat(webClient.post("/echo", "fast").aggregate().get(10, TimeUnit.SECONDS).status(),
+                    equalTo(HttpStatus.SERVICE_UNAVAILABLE));
+            assertThat(webClient.get("/").aggregate().get(10, TimeUnit.SECONDS).status(), equalTo(HttpStatus.OK));
+            slowUpload.close();
+            assertThat(slowEcho.get(10, TimeUnit.SECONDS).contentUtf8(), equalTo("slow"));
+        }
+    }
+
+    @Test
+    void is_ready_after_warm_up_and_not_ready_while_draining() {
+        final Properties properties = new Properties();
+        properties.setProperty("sample.server.warmup.rounds", "8");
+        properties.setProperty("sample.server.drain.quietPeriodMillis", "1000");
+
+        try (ServerFixture fixture = ServerFixture.start(properties)) {
+            final WebClient webClient = fixture.webClient();
+            fixture.server().whenReady().join();
+            assertThat(webClient.get(SampleHttpServer.READINESS_PATH).aggregate().join().status(),
+                    equalTo(HttpStatus.OK));
+
+            final CompletableFuture<Void> stopped = fixture.server().shutdown();
+            // The server keeps serving through the quiet period, but no longer asks for traffic.
+            assertThat(webClient.get(SampleHttpServer.READINESS_PATH).aggregate().join().status(),
+                    equalTo(HttpStatus.SERVICE_UNAVAILABLE));
+            assertThat(webClient.post("/echo", "hello").aggregate().join().contentUtf8(), equalTo("hello"));
+            stopped.join();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package io.venable.samples.armeria.http;
+
+import com.linecorp.armeria.client.WebClient;
+import com.linecorp.armeria.common.SessionProtocol;
+
+import java.time.Duration;
+import java.util.Properties;
+
+/**
+ * A {@link SampleHttpServer} on an ephemeral port, started from properties so that end-to-end tests can run
+ * it with the settings under test without waiting for each other's ports.
+ * <p>
+ * The server is ready at once, stops without draining and has no metrics port unless the properties given
+ * say otherwise. Closing the fixture waits until the server has stopped.
+ */
+final class ServerFixture implements AutoCloseable {
+    private final SampleHttpServer server;
+    private final int port;
+
+    private ServerFixture(final SampleHttpServer server) {
+        this.server = server;
+        port = server.activeLocalPort(SessionProtocol.HTTP);
+    }
+
+    /**
+     * Starts a server with the defaults above, overridden by {@code overrides}.
+     */
+    static ServerFixture start(final Properties overrides) {
+        final Properties properties = new Properties();
+        properties.setProperty("sample.server.listeners", "0");
+        properties.setProperty("sample.server.metricsPort", "0");
+        properties.setProperty("sample.server.warmup.rounds", "0");
+        properties.setProperty("sample.server.drain.quietPeriodMillis", "0");
+        properties.putAll(overrides);
+        return new ServerFixture(SampleHttpServer.createServer(ServerSettings.of(properties)));
+    }
+
+    SampleHttpServer server() {
+        return server;
+    }
+
+    /**
+     * Returns the server's URI for {@code scheme}, for example {@code http} or {@code ws}.
+     */
+    String uri(final String scheme) {
+        return scheme + "://127.0.0.1:" + port;
+    }
+
+    WebClient webClient() {
+        return WebClient.builder(uri("http"))
+                .responseTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    @Override
+    public void close() {
+        server.shutdown().join();
+    }
+}
@@ -0,0 +1,127 @@
+package io.venable.samples.armeria.http;
+
+import com.linecorp.armeria.client.WebClient;
+import com.linecorp.armeria.common.HttpStatus;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ServerSettingsTest {
+
+    @Test
+    void defaults_to_port_8080_and_armeria_defaults() {
+        final ServerSettings settings = ServerSettings.of(new Properties());
+
+        assertThat(settings.listeners(), equalTo(List.of(new InetSocketAddress(8080))));
+        assertThat(settings.echoBlockingExecution(), equalTo(BlockingExecution.PLATFORM));
+        assertThat(settings.toString(), containsString("maxNumConnections=unlimited"));
+    }
+
+    @Test
+    void parses_listeners_and_tuning() {
+        final Properties properties = new Properties();
+        properties.setProperty("sample.server.listeners", "8085, 127.0.0.1:8086");
+        properties.setProperty("sample.server.workerThreads", "2");
+        properties.setProperty("sample.server.maxNumConnections", "100");
+        properties.setProperty("sample.server.http2MaxStreamsPerConnection", "50");
+        properties.setProperty("sample.server.echo.blockingExecution", "virtual");
+
+        final ServerSettings settings = ServerSettings.of(properties);
+
+        assertThat(settings.listeners(), equalTo(List.of(new InetSocketAddress(8085),
+                new InetSocketAddress("127.0.0.1", 8086))));
+        assertThat(settings.echoBlockingExecution(), equalTo(BlockingExecution.VIRTUAL));
+        assertThat(settings.toString(), containsString("workerThreads=2, transport="));
+        assertThat(settings.toString(), containsString("maxNumConnections=100"));
+        assertThat(settings.toString(), containsString("http2MaxStreamsPerConnection=50"));
+    }
+
+    @Test
+    void rejects_empty_listeners() {
+        final Properties properties = new Properties();
+        properties.setProperty("sample.server.listeners", " ");
+
+        assertThrows(IllegalArgumentException.class, () -> ServerSettings.of(properties));
+    }
+
+    @Test
+    void loading_a_transport_leaves_the_armeria_flag_alone() {
+        final Properties properties = new Properties();
+        properties.setProperty("sample.server.transport", "nio");
+
+        ServerSettings.of(properties);
+
+        assertThat(System.getProperty("com.linecorp.armeria.transportType"), nullValue());
+    }
+
+    @Test
+    void server_serves_every_listener() {
+        final Properties properties = serverProperties("8085,8086");
+        properties.setProperty("sample.server.workerThreads", "1");
+
+        final SampleHttpServer server = SampleHttpServer.createServer(ServerSettings.of(properties));
+        try {
+            assertThat(WebClient.of("http://127.0.0.1:8085").get("/").aggregate().join().status(),
+                    equalTo(HttpStatus.OK));
+            assertThat(WebClient.of("http://127.0.0.1:8086").get("/").aggregate().join().status(),
+                    equalTo(HttpStatus.OK));
+        } finally {
+            server.shutdown().join();
+        }
+    }
+
+    @Test
+    void server_serves_metrics_on_metrics_port_only() {
+        final Properties properties = serverProperties("8085");
+        properties.setProperty("sample.server.metricsPort", "8087");
+
+        final SampleHttpServer server = SampleHttpServer.createServer(ServerSettings.of(properties));
+        try {
+            final WebClient webClient = WebClient.of("http://127.0.0.1:8085");
+            assertThat(webClient.post("/echo", "hello").aggregate().join().contentUtf8(), equalTo("hello"));
+            assertThat(webClient.get("/metrics").aggregate().join().status(), equalTo(HttpStatus.NOT_FOUND));
+            // The request is recorded when its log completes, which can be just after the response arrived.
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (server.metrics().requestCount("/echo") == 0 && System.nanoTime() < deadline) {
+                Thread.onSpinWait();
+            }
+
+            final WebClient metricsClient = WebClient.of("http://127.0.0.1:8087");
+            assertThat(metricsClient.get("/").aggregate().join().status(), equalTo(HttpStatus.NOT_FOUND));
+            final String metrics = metricsClient.get("/metrics").aggregate().join().contentUtf8();
+            assertThat(metrics, containsString("sample_requests_total{route=\"/echo\"} 1"));
+            assertThat(metrics, containsString("route=\"/echo\",layer=\"copy_decorator\""));
+            assertThat(metrics, containsString("route=\"/echo\",layer=\"service\""));
+            assertThat(metrics, containsString("route=\"/echo\",layer=\"blocking_queue\""));
+            assertThat(metrics, containsString("route=\"/echo\",layer=\"blocking_execution\""));
+            // The echo lane's event loops are watched too, in the same metric families as the worker group's.
+            assertThat(metrics, containsString("sample_event_loop_stalls_total{group=\"worker\"} "));
+            assertThat(metrics, containsString("sample_event_loop_stalls_total{group=\"echo-lane\"} "));
+            assertThat(metrics.split("# TYPE sample_event_loop_stalls_total ", -1).length, equalTo(2));
+        } finally {
+            server.shutdown().join();
+        }
+    }
+
+    /**
+     * Returns settings for a server which is ready at once, stops without draining and has no metrics port,
+     * so that tests neither see warm-up requests nor wait for each other's ports.
+     */
+    private static Properties serverProperties(final String listeners) {
+        final Properties properties = new Properties();
+        properties.setProperty("sample.server.listeners", listeners);
+        properties.setProperty("sample.server.metricsPort", "0");
+        properties.setProperty("sample.server.warmup.rounds", "0");
+        properties.setProperty("sample.server.drain.quietPeriodMillis", "0");
+        return properties;
+    }
+}
@@ -7,12 +7,15 @@ import com.linecorp.armeria.common.AggregatedHttpResponse;
 import com.linecorp.armeria.common.HttpResponse;
 import com.linecorp.armeria.common.HttpStatus;
 import com.linecorp.armeria.server.Server;
+import com.linecorp.armeria.server.ServerBuilder;
+import io.venable.samples.armeria.tls.ServerTls;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import javax.net.ssl.SSLHandshakeException;
 import java.io.File;
+import java.nio.file.Paths;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
@@ -33,11 +36,10 @@ public class TLSTest {
     void setUp() {
         rootMessage = "Welcome " + UUID.randomUUID();
 
-        server = Server.builder()
-                .https(8443)
-                .tls(
-                        new File("src/test/resources/cert.pem"),
-                        new File("src/test/resources/key.pem"))
+        final ServerBuilder serverBuilder = Server.builder().https(8443);
+        ServerTls.of(Paths.get("src/test/resources/cert.pem"), Paths.get("src/test/resources/key.pem"))
+                .applyTo(serverBuilder);
+        server = serverBuilder
                 .service("/", (ctx, req) -> HttpResponse.of(rootMessage))
                 .build();
 
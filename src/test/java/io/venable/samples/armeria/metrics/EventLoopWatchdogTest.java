@@ -0,0 +1,114 @@
+package io.venable.samples.armeria.metrics;
+
+import com.linecorp.armeria.client.WebClient;
+import com.linecorp.armeria.common.HttpRequest;
+import com.linecorp.armeria.common.HttpResponse;
+import com.linecorp.armeria.common.HttpStatus;
+import com.linecorp.armeria.common.util.EventLoopGroups;
+import com.linecorp.armeria.server.HttpService;
+import com.linecorp.armeria.server.Server;
+import com.linecorp.armeria.server.ServiceRequestContext;
+import com.linecorp.armeria.server.SimpleDecoratingHttpService;
+import io.netty.channel.EventLoopGroup;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class EventLoopWatchdogTest {
+
+    @Test
+    void strict_watchdog_names_the_blocking_decorator() {
+        final Server server = Server.builder()
+                .http(8088)
+                .workerGroup(1)
+                .service("/", (ctx, req) -> HttpResponse.of("Hello, Armeria!"))
+                .decorator(SleepingDecorator::new)
+                .build();
+        server.start().join();
+
+        final EventLoopWatchdog watchdog =
+                EventLoopWatchdog.strict("test", server.config().workerGroup(), Duration.ofMillis(100));
+        try {
+            assertThat(WebClient.of("http://127.0.0.1:8088").get("/").aggregate().join().status(),
+                    equalTo(HttpStatus.OK));
+
+            final EventLoopWatchdog.StallException stall =
+                    assertThrows(EventLoopWatchdog.StallException.class, watchdog::close);
+            assertThat(stall.getMessage(), containsString("blocked in " + SleepingDecorator.class.getName() + ".serve"));
+            assertThat(watchdog.stallCount(), equalTo(1L));
+
+            final StringBuilder out = new StringBuilder();
+            watchdog.appendTo(out);
+            assertThat(out.toString(), containsString("sample_event_loop_stalls_total{group=\"test\"} 1\n"));
+        } finally {
+            server.stop().join();
+        }
+    }
+
+    @Test
+    void counts_a_loop_stalled_for_good_with_its_stack() throws Exception {
+        final EventLoopGroup group = EventLoopGroups.newEventLoopGroup(1);
+        final CountDownLatch wedged = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        try {
+            // Wedged before the watchdog starts, so that no probe has run on it yet.
+            group.execute(() -> {
+                wedged.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            wedged.await();
+            final EventLoopWatchdog watchdog = EventLoopWatchdog.strict("wedged", group, Duration.ofMillis(100));
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (watchdog.stallCount() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertThat(watchdog.stallCount(), equalTo(1L));
+            final StringBuilder out = new StringBuilder();
+            watchdog.appendTo(out);
+            assertThat(out.toString(), containsString("sample_event_loop_stalls_total{group=\"wedged\"} 1\n"));
+            assertThat(out.toString(), containsString("sample_event_loop_stall_duration_seconds_count{group=\"wedged\"} 0\n"));
+
+            release.countDown();
+            final EventLoopWatchdog.StallException stall =
+                    assertThrows(EventLoopWatchdog.StallException.class, watchdog::close);
+            assertThat(stall.getMessage(), containsString("blocked in " + EventLoopWatchdogTest.class.getName()));
+        } finally {
+            release.countDown();
+            group.shutdownGracefully().syncUninterruptibly();
+        }
+    }
+
+    @Test
+    void culprit_skips_framework_frames() {
+        final StackTraceElement[] stack = {
+                new StackTraceElement("java.lang.Thread", "sleep", null, -1),
+                new StackTraceElement("com.example.SlowService", "serve", "SlowService.java", 42),
+                new StackTraceElement("io.netty.channel.nio.NioEventLoop", "run", null, -1),
+        };
+
+        assertThat(EventLoopWatchdog.culprit(stack), equalTo(stack[1]));
+    }
+
+    private static final class SleepingDecorator extends SimpleDecoratingHttpService {
+        SleepingDecorator(final HttpService delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public HttpResponse serve(final ServiceRequestContext ctx, final HttpRequest req) throws Exception {
+            Thread.sleep(500);
+            return unwrap().serve(ctx, req);
+        }
+    }
+}
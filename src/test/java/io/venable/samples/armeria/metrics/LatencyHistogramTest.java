@@ -0,0 +1,31 @@
+package io.venable.samples.armeria.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+class LatencyHistogramTest {
+
+    @Test
+    void records_into_cumulative_buckets() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(TimeUnit.MICROSECONDS.toNanos(50));
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(3));
+        histogram.record(TimeUnit.SECONDS.toNanos(60));
+
+        final StringBuilder out = new StringBuilder();
+        histogram.appendTo(out, "latency", "route=\"/\"");
+
+        assertThat(histogram.count(), equalTo(3L));
+        assertThat(out.toString(), containsString("latency_bucket{route=\"/\",le=\"5.0E-5\"} 1\n"));
+        assertThat(out.toString(), containsString("latency_bucket{route=\"/\",le=\"0.0025\"} 1\n"));
+        assertThat(out.toString(), containsString("latency_bucket{route=\"/\",le=\"0.005\"} 2\n"));
+        assertThat(out.toString(), containsString("latency_bucket{route=\"/\",le=\"10.0\"} 2\n"));
+        assertThat(out.toString(), containsString("latency_bucket{route=\"/\",le=\"+Inf\"} 3\n"));
+        assertThat(out.toString(), containsString("latency_count{route=\"/\"} 3\n"));
+    }
+}
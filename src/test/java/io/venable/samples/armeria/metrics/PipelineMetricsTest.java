@@ -0,0 +1,143 @@
+package io.venable.samples.armeria.metrics;
+
+import com.linecorp.armeria.common.AggregatedHttpResponse;
+import com.linecorp.armeria.common.HttpHeaderNames;
+import com.linecorp.armeria.common.HttpMethod;
+import com.linecorp.armeria.common.HttpRequest;
+import com.linecorp.armeria.common.HttpResponse;
+import com.linecorp.armeria.common.HttpStatus;
+import com.linecorp.armeria.common.ResponseHeaders;
+import com.linecorp.armeria.common.logging.RequestLogBuilder;
+import com.linecorp.armeria.common.util.BlockingTaskExecutor;
+import com.linecorp.armeria.common.util.SafeCloseable;
+import com.linecorp.armeria.server.HttpService;
+import com.linecorp.armeria.server.Route;
+import com.linecorp.armeria.server.ServiceRequestContext;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThan;
+
+class PipelineMetricsTest {
+
+    private final PipelineMetrics metrics = new PipelineMetrics();
+
+    @Test
+    void times_each_layer_from_entering_it_until_the_response_ends() throws Exception {
+        final HttpService innerService = (ctx, req) -> HttpResponse.of(HttpStatus.OK);
+        final HttpService service = innerService.decorate(metrics.newDecorator(Layer.SERVICE))
+                .decorate((delegate, ctx, req) -> {
+                    // Time spent between the two layers, which only the outer one covers.
+                    Thread.sleep(50);
+                    return delegate.serve(ctx, req);
+                })
+                .decorate(metrics.newDecorator(Layer.COPY_DECORATOR));
+
+        final ServiceRequestContext ctx = newContext("/echo");
+        final AggregatedHttpResponse response = service.serve(ctx, ctx.request()).aggregate().join();
+        Thread.sleep(20);
+        completeLog(ctx, response);
+
+        assertThat(metrics.requestCount("/echo"), equalTo(1L));
+        for (final Layer layer : new Layer[] { Layer.TOTAL, Layer.COPY_DECORATOR, Layer.SERVICE }) {
+            assertThat(metrics.layerCount("/echo", layer), equalTo(1L));
+        }
+        assertThat(metrics.layerCount("/echo", Layer.BLOCKING_EXECUTION), equalTo(0L));
+
+        final String rendered = metrics.render();
+        final double total = layerSeconds(rendered, "/echo", Layer.TOTAL);
+        final double copyDecorator = layerSeconds(rendered, "/echo", Layer.COPY_DECORATOR);
+        final double serviceLayer = layerSeconds(rendered, "/echo", Layer.SERVICE);
+        assertThat(serviceLayer, greaterThanOrEqualTo(0.02));
+        assertThat(copyDecorator - serviceLayer, greaterThanOrEqualTo(0.05));
+        assertThat(total, greaterThanOrEqualTo(copyDecorator));
+    }
+
+    @Test
+    void attributes_blocking_allocations_to_the_route_which_submitted_them() throws Exception {
+        final BlockingTaskExecutor executor = metrics.newBlockingTaskExecutor("pipeline-metrics-test");
+        try {
+            final ServiceRequestContext allocating = newContext("/allocating");
+            try (SafeCloseable ignored = allocating.push()) {
+                assertThat(executor.submit(() -> new byte[8 * 1024 * 1024]).get(10, TimeUnit.SECONDS).length,
+                        equalTo(8 * 1024 * 1024));
+            }
+            final ServiceRequestContext idle = newContext("/idle");
+            try (SafeCloseable ignored = idle.push()) {
+                executor.submit(() -> { }).get(10, TimeUnit.SECONDS);
+            }
+            // Not a request's work, so not recorded.
+            executor.submit(() -> new byte[1024]).get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat(metrics.layerCount("/allocating", Layer.BLOCKING_QUEUE), equalTo(1L));
+        assertThat(metrics.layerCount("/allocating", Layer.BLOCKING_EXECUTION), equalTo(1L));
+        assertThat(metrics.layerCount("/idle", Layer.BLOCKING_EXECUTION), equalTo(1L));
+        final String rendered = metrics.render();
+        assertThat(counter(rendered, "sample_blocking_allocated_bytes_total", "/allocating"),
+                greaterThanOrEqualTo(8L * 1024 * 1024));
+        assertThat(counter(rendered, "sample_blocking_allocated_bytes_total", "/idle"), lessThan(1024L * 1024));
+    }
+
+    @Test
+    void renders_every_family_once_with_the_routes_sorted_and_the_included_sources_last() throws Exception {
+        metrics.include(out -> out.append("# TYPE sample_test_total counter\nsample_test_total 7\n"));
+        final HttpService innerService = (ctx, req) -> HttpResponse.of(HttpStatus.OK);
+        final HttpService service = innerService.decorate(metrics.newDecorator(Layer.SERVICE));
+        for (final String path : new String[] { "/b", "/a", "/b" }) {
+            final ServiceRequestContext ctx = newContext(path);
+            final AggregatedHttpResponse response = service.serve(ctx, ctx.request()).aggregate().join();
+            completeLog(ctx, response);
+        }
+
+        final AggregatedHttpResponse scraped = metrics.prometheusService()
+                .serve(newContext("/metrics"), HttpRequest.of(HttpMethod.GET, "/metrics")).aggregate().join();
+        assertThat(scraped.headers().get(HttpHeaderNames.CONTENT_TYPE), containsString("version=0.0.4"));
+        final String rendered = scraped.contentUtf8();
+        assertThat(rendered, containsString("# TYPE sample_requests_total counter\n" +
+                                            "sample_requests_total{route=\"/a\"} 1\n" +
+                                            "sample_requests_total{route=\"/b\"} 2\n"));
+        assertThat(rendered.split("# TYPE sample_layer_duration_seconds ", -1).length, equalTo(2));
+        assertThat(rendered, containsString("sample_layer_duration_seconds_count{route=\"/b\",layer=\"service\"} 2\n"));
+        assertThat(rendered.endsWith("sample_test_total 7\n"), equalTo(true));
+    }
+
+    private static ServiceRequestContext newContext(final String path) {
+        return ServiceRequestContext.builder(HttpRequest.of(HttpMethod.GET, path))
+                .route(Route.builder().path(path).build())
+                .build();
+    }
+
+    private static void completeLog(final ServiceRequestContext ctx, final AggregatedHttpResponse response) {
+        final RequestLogBuilder logBuilder = ctx.logBuilder();
+        logBuilder.endRequest();
+        logBuilder.responseHeaders(ResponseHeaders.of(response.status()));
+        logBuilder.endResponse();
+        ctx.log().whenComplete().join();
+    }
+
+    private static double layerSeconds(final String rendered, final String route, final Layer layer) {
+        return Double.parseDouble(value(rendered, "sample_layer_duration_seconds_sum{route=\"" + route +
+                                                  "\",layer=\"" + layer.label() + "\"}"));
+    }
+
+    private static long counter(final String rendered, final String name, final String route) {
+        return Long.parseLong(value(rendered, name + "{route=\"" + route + "\"}"));
+    }
+
+    private static String value(final String rendered, final String series) {
+        final Matcher matcher = Pattern.compile("^" + Pattern.quote(series) + " (\\S+)$", Pattern.MULTILINE)
+                                       .matcher(rendered);
+        assertThat(series, matcher.find(), equalTo(true));
+        return matcher.group(1);
+    }
+}
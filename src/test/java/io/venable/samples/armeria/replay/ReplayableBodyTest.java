@@ -0,0 +1,123 @@
+package io.venable.samples.armeria.replay;
+
+import com.linecorp.armeria.client.WebClient;
+import com.linecorp.armeria.common.AggregatedHttpResponse;
+import com.linecorp.armeria.common.CommonPools;
+import com.linecorp.armeria.common.HttpData;
+import com.linecorp.armeria.common.HttpMethod;
+import com.linecorp.armeria.common.HttpRequest;
+import com.linecorp.armeria.common.HttpResponse;
+import com.linecorp.armeria.common.HttpStatus;
+import com.linecorp.armeria.common.MediaType;
+import com.linecorp.armeria.common.RequestHeaders;
+import com.linecorp.armeria.server.Server;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ReplayableBodyTest {
+
+    private static final RequestHeaders HEADERS = RequestHeaders.of(HttpMethod.POST, "/");
+
+    @Test
+    void body_under_memory_cap_is_kept_in_memory() throws ExecutionException, InterruptedException {
+        final byte[] data = randomBytes(16 * 1024);
+
+        try (ReplayableBody body = collect(data, 4 * 1024, 64 * 1024)) {
+            assertThat(body.isSpilled(), equalTo(false));
+            assertThat(body.length(), equalTo((long) data.length));
+            assertThat(replay(body), equalTo(data));
+            assertThat(replay(body), equalTo(data));
+        }
+    }
+
+    @Test
+    void body_over_memory_cap_is_spilled_to_disk() throws ExecutionException, InterruptedException {
+        final byte[] data = randomBytes(ReplayableBody.REPLAY_CHUNK_SIZE * 3 + 123);
+
+        try (ReplayableBody body = collect(data, 8 * 1024, 16 * 1024)) {
+            assertThat(body.isSpilled(), equalTo(true));
+            assertThat(body.length(), equalTo((long) data.length));
+            assertThat(replay(body), equalTo(data));
+            assertThat(replay(body), equalTo(data));
+        }
+    }
+
+    @Test
+    void replay_in_flight_outlives_the_spill_file() throws ExecutionException, InterruptedException {
+        final byte[] data = randomBytes(ReplayableBody.REPLAY_CHUNK_SIZE * 2 + 7);
+        final ReplayableBody body = collect(data, 8 * 1024, 16 * 1024);
+        final HttpRequest replay = body.toHttpRequest(HEADERS);
+
+        body.close();
+
+        assertThat(Files.exists(body.spillFile()), equalTo(false));
+        assertThat(replay.aggregate().get().content().array(), equalTo(data));
+    }
+
+    @Test
+    void closed_body_cannot_be_replayed() throws ExecutionException, InterruptedException {
+        final ReplayableBody body = collect(randomBytes(1024), 256, 64 * 1024);
+        body.close();
+
+        assertThrows(IllegalStateException.class, () -> body.toHttpRequest(HEADERS));
+    }
+
+    @Test
+    void decorator_lets_service_replay_body() throws ExecutionException, InterruptedException {
+        final Server server = Server.builder()
+                .http(8082)
+                .service("/", (ctx, req) -> HttpResponse.of(req.aggregate().thenCompose(first ->
+                        ReplayDecorator.body(ctx).toHttpRequest(req.headers()).aggregate().thenApply(second ->
+                                HttpResponse.of(HttpStatus.OK, MediaType.OCTET_STREAM,
+                                        HttpData.wrap(concat(first.content().array(), second.content().array())))))))
+                .decorator(ReplayDecorator.newDecorator(1024))
+                .build();
+        server.start().join();
+
+        try {
+            final byte[] data = randomBytes(32 * 1024);
+            final AggregatedHttpResponse aggregatedHttpResponse =
+                    WebClient.of("http://127.0.0.1:8082").post("/", data).aggregate().get();
+
+            assertThat(aggregatedHttpResponse.status(), equalTo(HttpStatus.OK));
+            assertThat(aggregatedHttpResponse.content().array(), equalTo(concat(data, data)));
+        } finally {
+            server.stop().join();
+        }
+    }
+
+    private static ReplayableBody collect(final byte[] data, final int chunkSize, final long memoryCap)
+            throws ExecutionException, InterruptedException {
+        final HttpData[] chunks = new HttpData[(data.length + chunkSize - 1) / chunkSize];
+        for (int i = 0; i < chunks.length; i++) {
+            final int offset = i * chunkSize;
+            chunks[i] = HttpData.copyOf(data, offset, Math.min(chunkSize, data.length - offset));
+        }
+        return ReplayableBody.collect(HttpRequest.of(HEADERS, chunks), memoryCap,
+                CommonPools.workerGroup().next(), CommonPools.blockingTaskExecutor()).get();
+    }
+
+    private static byte[] replay(final ReplayableBody body) throws ExecutionException, InterruptedException {
+        return body.toHttpRequest(HEADERS).aggregate().get().content().array();
+    }
+
+    private static byte[] randomBytes(final int length) {
+        final byte[] data = new byte[length];
+        new Random(42).nextBytes(data);
+        return data;
+    }
+
+    private static byte[] concat(final byte[] first, final byte[] second) {
+        final byte[] result = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+}
@@ -0,0 +1,87 @@
+package io.venable.samples.armeria.request_timeout;
+
+import com.linecorp.armeria.client.WebClient;
+import com.linecorp.armeria.common.AggregatedHttpResponse;
+import com.linecorp.armeria.common.HttpData;
+import com.linecorp.armeria.common.HttpMethod;
+import com.linecorp.armeria.common.HttpRequest;
+import com.linecorp.armeria.common.HttpStatus;
+import com.linecorp.armeria.common.MediaType;
+import com.linecorp.armeria.common.RequestHeaders;
+import com.linecorp.armeria.common.stream.StreamMessage;
+import com.linecorp.armeria.common.stream.StreamWriter;
+import com.linecorp.armeria.server.Server;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.hasItem;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+class RequestTimeoutExperimentTest {
+
+    private Server server;
+    private WebClient webClient;
+
+    @BeforeEach
+    void setUp() {
+        server = RequestTimeoutExperiment.newServer(8083, Duration.ofMillis(500));
+        server.start().join();
+        webClient = WebClient.of("http://127.0.0.1:8083");
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop().join();
+    }
+
+    @Test
+    void POST_completes_within_the_timeout() throws ExecutionException, InterruptedException {
+        final AggregatedHttpResponse aggregatedHttpResponse = post().get();
+
+        assertThat(aggregatedHttpResponse.status(), equalTo(HttpStatus.OK));
+        assertThat(aggregatedHttpResponse.contentUtf8(), equalTo("Hello, Armeria!"));
+    }
+
+    @Test
+    void POST_with_incomplete_body_times_out_with_408_through_the_throttling_decorators()
+            throws ExecutionException, InterruptedException {
+        final StreamWriter<HttpData> body = StreamMessage.streaming();
+        body.write(HttpData.ofUtf8("{"));
+        final HttpRequest request = HttpRequest.of(RequestHeaders.builder(HttpMethod.POST, "/test")
+                .contentType(MediaType.JSON)
+                .contentLength(100)
+                .build(), body);
+
+        final AggregatedHttpResponse aggregatedHttpResponse = webClient.execute(request).aggregate().get();
+
+        assertThat(aggregatedHttpResponse.status(), equalTo(HttpStatus.REQUEST_TIMEOUT));
+    }
+
+    @Test
+    void POST_burst_from_one_client_is_rate_limited() throws ExecutionException, InterruptedException {
+        final List<CompletableFuture<AggregatedHttpResponse>> responses = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            responses.add(post());
+        }
+
+        final List<HttpStatus> statuses = new ArrayList<>();
+        for (final CompletableFuture<AggregatedHttpResponse> response : responses) {
+            statuses.add(response.get().status());
+        }
+
+        assertThat(statuses, hasItem(HttpStatus.OK));
+        assertThat(statuses, hasItem(HttpStatus.TOO_MANY_REQUESTS));
+    }
+
+    private CompletableFuture<AggregatedHttpResponse> post() {
+        return webClient.post("/test", HttpData.ofUtf8("{}")).aggregate();
+    }
+}
@@ -0,0 +1,53 @@
+package io.venable.samples.armeria.throttling;
+
+import com.linecorp.armeria.common.HttpMethod;
+import com.linecorp.armeria.common.HttpRequest;
+import com.linecorp.armeria.common.HttpStatus;
+import com.linecorp.armeria.common.ResponseHeaders;
+import com.linecorp.armeria.server.ServiceRequestContext;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutionException;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+class AdaptiveConcurrencyLimitingStrategyTest {
+
+    @Test
+    void rejects_requests_over_the_limit_until_one_completes() throws ExecutionException, InterruptedException {
+        final AdaptiveConcurrencyLimitingStrategy<HttpRequest> strategy = AdaptiveConcurrencyLimitingStrategy.of(2, 1, 10);
+
+        final ServiceRequestContext first = newContext();
+        final ServiceRequestContext second = newContext();
+        final ServiceRequestContext third = newContext();
+
+        assertThat(accept(strategy, first), equalTo(true));
+        assertThat(accept(strategy, second), equalTo(true));
+        assertThat(accept(strategy, third), equalTo(false));
+        assertThat(strategy.inFlight(), equalTo(2));
+
+        complete(first);
+
+        assertThat(strategy.inFlight(), equalTo(1));
+        assertThat(accept(strategy, third), equalTo(true));
+    }
+
+    private static boolean accept(final AdaptiveConcurrencyLimitingStrategy<HttpRequest> strategy,
+                                  final ServiceRequestContext ctx) throws ExecutionException, InterruptedException {
+        return strategy.accept(ctx, ctx.request()).toCompletableFuture().get();
+    }
+
+    private static ServiceRequestContext newContext() {
+        return ServiceRequestContext.of(HttpRequest.of(HttpMethod.GET, "/"));
+    }
+
+    private static void complete(final ServiceRequestContext ctx) {
+        ctx.logBuilder().endRequest();
+        ctx.logBuilder().responseHeaders(ResponseHeaders.of(HttpStatus.OK));
+        ctx.logBuilder().endResponse();
+        ctx.log().whenComplete().join();
+        // The log may complete on the event loop; wait for it so the strategy's callback has run.
+        ctx.eventLoop().submit(() -> { }).syncUninterruptibly();
+    }
+}
@@ -0,0 +1,61 @@
+package io.venable.samples.armeria.throttling;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+class BulkheadTest {
+
+    private final Bulkhead bulkhead = Bulkhead.of("test", 2, 2);
+
+    @Test
+    void grants_waiters_in_order() {
+        assertThat(bulkhead.tryAcquire(), equalTo(true));
+        assertThat(bulkhead.tryAcquire(), equalTo(true));
+        final CompletableFuture<Void> first = bulkhead.acquireWhenAvailable();
+        final CompletableFuture<Void> second = bulkhead.acquireWhenAvailable();
+
+        bulkhead.release();
+
+        assertThat(first.isDone(), equalTo(true));
+        assertThat(second.isDone(), equalTo(false));
+        // A free place goes to the waiter, not to a newcomer.
+        bulkhead.release();
+        assertThat(bulkhead.tryAcquire(), equalTo(false));
+        assertThat(second.isDone(), equalTo(true));
+        assertThat(bulkhead.active(), equalTo(2));
+        assertThat(bulkhead.queued(), equalTo(0));
+    }
+
+    @Test
+    void rejects_when_the_queue_is_full() {
+        assertThat(bulkhead.tryAcquire(), equalTo(true));
+        assertThat(bulkhead.tryAcquire(), equalTo(true));
+        bulkhead.acquireWhenAvailable();
+        bulkhead.acquireWhenAvailable();
+
+        assertThat(bulkhead.acquireWhenAvailable(), nullValue());
+        assertThat(bulkhead.queued(), equalTo(2));
+        assertThat(bulkhead.rejectedCount(), equalTo(1L));
+    }
+
+    @Test
+    void cancelled_waiter_leaves_the_queue() {
+        assertThat(bulkhead.tryAcquire(), equalTo(true));
+        assertThat(bulkhead.tryAcquire(), equalTo(true));
+        final CompletableFuture<Void> cancelled = bulkhead.acquireWhenAvailable();
+        final CompletableFuture<Void> next = bulkhead.acquireWhenAvailable();
+
+        cancelled.cancel(false);
+        assertThat(bulkhead.queued(), equalTo(1));
+        bulkhead.release();
+
+        assertThat(next.isDone(), equalTo(true));
+        assertThat(bulkhead.active(), equalTo(2));
+        assertThat(bulkhead.queued(), equalTo(0));
+    }
+}
@@ -0,0 +1,122 @@
+package io.venable.samples.armeria.throttling;
+
+import com.linecorp.armeria.common.HttpData;
+import com.linecorp.armeria.common.HttpMethod;
+import com.linecorp.armeria.common.HttpRequest;
+import com.linecorp.armeria.common.HttpRequestWriter;
+import com.linecorp.armeria.common.HttpResponse;
+import com.linecorp.armeria.common.HttpStatus;
+import com.linecorp.armeria.common.RequestHeaders;
+import com.linecorp.armeria.common.ResponseHeaders;
+import com.linecorp.armeria.server.HttpService;
+import com.linecorp.armeria.server.HttpStatusException;
+import com.linecorp.armeria.server.ServiceRequestContext;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ByteBudgetDecoratorTest {
+
+    private final ByteBudget budget = ByteBudget.of(1000);
+    private final AtomicInteger served = new AtomicInteger();
+    private final HttpService aggregatingService = (ctx, req) -> {
+        served.incrementAndGet();
+        return HttpResponse.of(req.aggregate().thenApply(aggregated -> HttpResponse.of(HttpStatus.OK)));
+    };
+
+    @Test
+    void rejects_request_larger_than_budget() throws Exception {
+        final ByteBudgetDecorator decorator = newDecorator(ByteBudgetDecorator.OverBudget.WAIT);
+
+        final ServiceRequestContext ctx = newContext(1001);
+
+        assertThat(status(decorator.serve(ctx, ctx.request())), equalTo(HttpStatus.REQUEST_ENTITY_TOO_LARGE));
+        assertThat(served.get(), equalTo(0));
+        assertThat(budget.reservedBytes(), equalTo(0L));
+    }
+
+    @Test
+    void rejects_request_over_budget() throws Exception {
+        final ByteBudgetDecorator decorator = newDecorator(ByteBudgetDecorator.OverBudget.REJECT);
+
+        final ServiceRequestContext first = newContext(600);
+        decorator.serve(first, first.request());
+        final ServiceRequestContext second = newContext(600);
+
+        assertThat(status(decorator.serve(second, second.request())), equalTo(HttpStatus.SERVICE_UNAVAILABLE));
+        assertThat(decorator.rejectedCount(), equalTo(1L));
+
+        complete(first);
+        assertThat(budget.reservedBytes(), equalTo(0L));
+    }
+
+    @Test
+    void holds_request_until_bytes_are_released() throws Exception {
+        final ByteBudgetDecorator decorator = newDecorator(ByteBudgetDecorator.OverBudget.WAIT);
+
+        final ServiceRequestContext first = newContext(600);
+        decorator.serve(first, first.request());
+        final ServiceRequestContext second = newContext(600);
+        final HttpResponse response = decorator.serve(second, second.request());
+
+        TimeUnit.MILLISECONDS.sleep(100);
+        assertThat(served.get(), equalTo(1));
+        assertThat(budget.waiting(), equalTo(1));
+        assertThat(decorator.waitedCount(), equalTo(1L));
+
+        complete(first);
+
+        assertThat(status(response), equalTo(HttpStatus.OK));
+        assertThat(served.get(), equalTo(2));
+        assertThat(budget.reservedBytes(), equalTo(600L));
+    }
+
+    @Test
+    void aborts_request_without_content_length_once_it_outgrows_the_budget() throws Exception {
+        final ByteBudgetDecorator decorator = newDecorator(ByteBudgetDecorator.OverBudget.WAIT);
+        final HttpRequestWriter request = HttpRequest.streaming(HttpMethod.POST, "/echo");
+        final ServiceRequestContext ctx = ServiceRequestContext.of(request);
+
+        final HttpResponse response = decorator.serve(ctx, request);
+        request.write(HttpData.wrap(new byte[600]));
+        request.write(HttpData.wrap(new byte[600]));
+        request.close();
+
+        final CompletionException exception = assertThrows(CompletionException.class,
+                () -> response.aggregate().join());
+        assertThat(exception.getCause(), instanceOf(HttpStatusException.class));
+        assertThat(((HttpStatusException) exception.getCause()).httpStatus(),
+                equalTo(HttpStatus.REQUEST_ENTITY_TOO_LARGE));
+        assertThat(decorator.rejectedCount(), equalTo(1L));
+    }
+
+    private ByteBudgetDecorator newDecorator(final ByteBudgetDecorator.OverBudget overBudget) {
+        return new ByteBudgetDecorator(aggregatingService, budget, overBudget);
+    }
+
+    private static ServiceRequestContext newContext(final long contentLength) {
+        final HttpRequest request = HttpRequest.of(
+                RequestHeaders.builder(HttpMethod.POST, "/echo").contentLength(contentLength).build(),
+                HttpData.wrap(new byte[(int) contentLength]));
+        return ServiceRequestContext.of(request);
+    }
+
+    private static HttpStatus status(final HttpResponse response) {
+        return response.aggregate().join().status();
+    }
+
+    private static void complete(final ServiceRequestContext ctx) {
+        ctx.logBuilder().endRequest();
+        ctx.logBuilder().responseHeaders(ResponseHeaders.of(HttpStatus.OK));
+        ctx.logBuilder().endResponse();
+        ctx.log().whenComplete().join();
+        ctx.eventLoop().submit(() -> { }).syncUninterruptibly();
+    }
+}
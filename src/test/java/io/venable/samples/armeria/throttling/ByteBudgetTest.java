@@ -0,0 +1,43 @@
+package io.venable.samples.armeria.throttling;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+class ByteBudgetTest {
+
+    private final ByteBudget budget = ByteBudget.of(1000);
+
+    @Test
+    void grants_waiters_in_order() {
+        assertThat(budget.tryReserve(800), equalTo(true));
+        final CompletableFuture<Void> large = budget.reserveWhenAvailable(900);
+        // Fits, but would overtake the waiter.
+        assertThat(budget.tryReserve(100), equalTo(false));
+        final CompletableFuture<Void> small = budget.reserveWhenAvailable(100);
+
+        budget.release(800);
+
+        assertThat(large.isDone(), equalTo(true));
+        assertThat(small.isDone(), equalTo(true));
+        assertThat(budget.reservedBytes(), equalTo(1000L));
+        assertThat(budget.waiting(), equalTo(0));
+    }
+
+    @Test
+    void cancelled_waiter_lets_the_next_one_through() {
+        assertThat(budget.tryReserve(500), equalTo(true));
+        final CompletableFuture<Void> large = budget.reserveWhenAvailable(900);
+        final CompletableFuture<Void> small = budget.reserveWhenAvailable(400);
+        assertThat(small.isDone(), equalTo(false));
+
+        large.cancel(false);
+
+        assertThat(small.isDone(), equalTo(true));
+        assertThat(budget.reservedBytes(), equalTo(900L));
+        assertThat(budget.waiting(), equalTo(0));
+    }
+}
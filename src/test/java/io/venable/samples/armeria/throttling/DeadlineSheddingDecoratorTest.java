@@ -0,0 +1,114 @@
+package io.venable.samples.armeria.throttling;
+
+import com.linecorp.armeria.common.HttpMethod;
+import com.linecorp.armeria.common.HttpRequest;
+import com.linecorp.armeria.common.HttpResponse;
+import com.linecorp.armeria.common.HttpStatus;
+import com.linecorp.armeria.common.ResponseHeaders;
+import com.linecorp.armeria.common.logging.RequestLogProperty;
+import com.linecorp.armeria.common.util.TimeoutMode;
+import com.linecorp.armeria.server.HttpService;
+import com.linecorp.armeria.server.ServiceRequestContext;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+class DeadlineSheddingDecoratorTest {
+
+    private static final long MILLISECOND = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final AtomicLong now = new AtomicLong();
+    private final AtomicInteger served = new AtomicInteger();
+    private final HttpService countingService = (ctx, req) -> {
+        served.incrementAndGet();
+        return HttpResponse.of(HttpStatus.OK);
+    };
+
+    @Test
+    void sheds_request_that_cannot_finish_before_its_deadline() throws Exception {
+        final DeadlineSheddingDecorator decorator = new DeadlineSheddingDecorator(countingService, now::get);
+
+        final ServiceRequestContext slow = newContext(1_000);
+        decorator.serve(slow, slow.request());
+        now.addAndGet(400 * MILLISECOND);
+        complete(slow);
+        assertThat(decorator.serviceTimeNanos(), equalTo(400 * MILLISECOND));
+
+        final ServiceRequestContext queued = newContext(1_000);
+        now.addAndGet(700 * MILLISECOND);
+        final HttpResponse response = decorator.serve(queued, queued.request());
+
+        assertThat(response.aggregate().join().status(), equalTo(HttpStatus.REQUEST_TIMEOUT));
+        assertThat(served.get(), equalTo(1));
+        assertThat(decorator.shedCount(), equalTo(1L));
+    }
+
+    @Test
+    void serves_request_with_enough_time_left() throws Exception {
+        final DeadlineSheddingDecorator decorator = new DeadlineSheddingDecorator(countingService, now::get);
+
+        final ServiceRequestContext slow = newContext(1_000);
+        decorator.serve(slow, slow.request());
+        now.addAndGet(400 * MILLISECOND);
+        complete(slow);
+
+        final ServiceRequestContext queued = newContext(1_000);
+        now.addAndGet(100 * MILLISECOND);
+        final HttpResponse response = decorator.serve(queued, queued.request());
+
+        assertThat(response.aggregate().join().status(), equalTo(HttpStatus.OK));
+        assertThat(served.get(), equalTo(2));
+        assertThat(decorator.shedCount(), equalTo(0L));
+    }
+
+    @Test
+    void slow_reader_does_not_shed_other_requests() throws Exception {
+        final DeadlineSheddingDecorator decorator = new DeadlineSheddingDecorator(countingService, now::get);
+
+        // The service answers in 10 ms, but the client takes 5 s to download the response.
+        final ServiceRequestContext slowReader = newContext(10_000);
+        decorator.serve(slowReader, slowReader.request());
+        now.addAndGet(10 * MILLISECOND);
+        sendResponseHeaders(slowReader);
+        now.addAndGet(5_000 * MILLISECOND);
+        complete(slowReader);
+        assertThat(decorator.serviceTimeNanos(), equalTo(10 * MILLISECOND));
+
+        final ServiceRequestContext queued = newContext(1_000);
+        now.addAndGet(500 * MILLISECOND);
+        final HttpResponse response = decorator.serve(queued, queued.request());
+
+        assertThat(response.aggregate().join().status(), equalTo(HttpStatus.OK));
+        assertThat(decorator.shedCount(), equalTo(0L));
+    }
+
+    private ServiceRequestContext newContext(final long timeoutMillis) {
+        final ServiceRequestContext ctx = ServiceRequestContext.of(HttpRequest.of(HttpMethod.GET, "/"));
+        // The timeout is applied on the event loop, so wait for it to take effect.
+        ctx.eventLoop().submit(() -> ctx.setRequestTimeoutMillis(TimeoutMode.SET_FROM_START, timeoutMillis))
+                .syncUninterruptibly();
+        now.set(ctx.log().partial().requestStartTimeNanos());
+        return ctx;
+    }
+
+    private static void sendResponseHeaders(final ServiceRequestContext ctx) {
+        ctx.logBuilder().responseHeaders(ResponseHeaders.of(HttpStatus.OK));
+        ctx.log().whenAvailable(RequestLogProperty.RESPONSE_HEADERS).join();
+        ctx.eventLoop().submit(() -> { }).syncUninterruptibly();
+    }
+
+    private static void complete(final ServiceRequestContext ctx) {
+        if (!ctx.log().isAvailable(RequestLogProperty.RESPONSE_HEADERS)) {
+            sendResponseHeaders(ctx);
+        }
+        ctx.logBuilder().endRequest();
+        ctx.logBuilder().endResponse();
+        ctx.log().whenComplete().join();
+        ctx.eventLoop().submit(() -> { }).syncUninterruptibly();
+    }
+}
@@ -0,0 +1,70 @@
+package io.venable.samples.armeria.throttling;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class GradientLimitTest {
+
+    private static final long BASELINE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    @Test
+    void limit_grows_while_latency_is_stable() {
+        final GradientLimit limit = new GradientLimit(10, 1, 1000);
+
+        for (int i = 0; i < 200; i++) {
+            limit.onSample(BASELINE_NANOS, limit.limit());
+        }
+
+        assertThat(limit.limit(), greaterThan(10));
+    }
+
+    @Test
+    void limit_shrinks_when_latency_rises() {
+        final GradientLimit limit = new GradientLimit(100, 1, 1000);
+        for (int i = 0; i < 600; i++) {
+            limit.onSample(BASELINE_NANOS, 0);
+        }
+
+        for (int i = 0; i < 100; i++) {
+            limit.onSample(BASELINE_NANOS * 4, limit.limit());
+        }
+
+        assertThat(limit.limit(), lessThan(100));
+    }
+
+    @Test
+    void limit_does_not_grow_when_underutilized() {
+        final GradientLimit limit = new GradientLimit(10, 1, 1000);
+
+        for (int i = 0; i < 200; i++) {
+            limit.onSample(BASELINE_NANOS, 1);
+        }
+
+        assertThat(limit.limit(), equalTo(10));
+    }
+
+    @Test
+    void drops_back_off_but_stay_within_bounds() {
+        final GradientLimit limit = new GradientLimit(10, 5, 1000);
+
+        for (int i = 0; i < 100; i++) {
+            limit.onDrop();
+        }
+
+        assertThat(limit.limit(), equalTo(5));
+    }
+
+    @Test
+    void invalid_limits_throw() {
+        assertThrows(IllegalArgumentException.class, () -> new GradientLimit(0, 1, 10));
+        assertThrows(IllegalArgumentException.class, () -> new GradientLimit(5, 6, 10));
+        assertThrows(IllegalArgumentException.class, () -> new GradientLimit(5, 1, 4));
+    }
+}
@@ -0,0 +1,145 @@
+package io.venable.samples.armeria.throttling;
+
+import com.linecorp.armeria.common.HttpMethod;
+import com.linecorp.armeria.common.HttpRequest;
+import com.linecorp.armeria.common.RequestHeaders;
+import com.linecorp.armeria.server.ServiceRequestContext;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+class KeyedRateLimitingStrategyTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final AtomicLong now = new AtomicLong();
+
+    @Test
+    void limits_each_key_independently() {
+        final KeyedRateLimitingStrategy<HttpRequest> strategy = newStrategy(2, 100);
+
+        assertThat(strategy.tryAcquire("noisy"), equalTo(true));
+        assertThat(strategy.tryAcquire("noisy"), equalTo(true));
+        assertThat(strategy.tryAcquire("noisy"), equalTo(false));
+        assertThat(strategy.tryAcquire("quiet"), equalTo(true));
+
+        now.addAndGet(SECOND);
+
+        assertThat(strategy.tryAcquire("noisy"), equalTo(true));
+    }
+
+    @Test
+    void evicts_idle_keys() {
+        final KeyedRateLimitingStrategy<HttpRequest> strategy = newStrategy(1, 100);
+        strategy.tryAcquire("first");
+        strategy.tryAcquire("second");
+        assertThat(strategy.trackedKeys(), equalTo(2));
+
+        now.addAndGet(10 * SECOND);
+        strategy.tryAcquire("third");
+
+        assertThat(strategy.trackedKeys(), equalTo(1));
+    }
+
+    @Test
+    void sweeps_a_batch_of_keys_per_request() {
+        final int keys = 3 * KeyedRateLimitingStrategy.SWEEP_BATCH_SIZE;
+        final KeyedRateLimitingStrategy<HttpRequest> strategy = newStrategy(1, keys + 1);
+        for (int i = 0; i < keys; i++) {
+            strategy.tryAcquire("idle-" + i);
+        }
+
+        now.addAndGet(10 * SECOND);
+        strategy.tryAcquire("active");
+
+        assertThat(strategy.trackedKeys(), equalTo(keys + 1 - KeyedRateLimitingStrategy.SWEEP_BATCH_SIZE));
+
+        strategy.tryAcquire("active");
+        strategy.tryAcquire("active");
+        strategy.tryAcquire("active");
+
+        assertThat(strategy.trackedKeys(), equalTo(1));
+    }
+
+    @Test
+    void rejects_new_keys_while_full_of_active_keys() {
+        final KeyedRateLimitingStrategy<HttpRequest> strategy = newStrategy(2, 2);
+        strategy.tryAcquire("first");
+        strategy.tryAcquire("second");
+
+        assertThat(strategy.tryAcquire("third"), equalTo(false));
+        assertThat(strategy.tryAcquire("first"), equalTo(true));
+
+        now.addAndGet(2 * SECOND);
+
+        assertThat(strategy.tryAcquire("third"), equalTo(true));
+        assertThat(strategy.trackedKeys(), equalTo(1));
+    }
+
+    @Test
+    void requests_racing_with_the_sweep_get_no_extra_burst() throws Exception {
+        final int threads = 4;
+        final KeyedRateLimitingStrategy<HttpRequest> strategy = newStrategy(2, 100);
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int round = 0; round < 500; round++) {
+                // The bucket is full and due for eviction, so the first request of the round starts a sweep.
+                now.addAndGet(10 * SECOND);
+                final CyclicBarrier barrier = new CyclicBarrier(threads);
+                final AtomicInteger acquired = new AtomicInteger();
+                final List<Future<?>> futures = new ArrayList<>();
+                for (int i = 0; i < threads; i++) {
+                    futures.add(executor.submit(() -> {
+                        barrier.await();
+                        for (int j = 0; j < 3; j++) {
+                            if (strategy.tryAcquire("key")) {
+                                acquired.incrementAndGet();
+                            }
+                        }
+                        return null;
+                    }));
+                }
+                for (final Future<?> future : futures) {
+                    future.get(10, TimeUnit.SECONDS);
+                }
+                assertThat("round " + round, acquired.get(), equalTo(2));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void byHeader_uses_header_value_as_key() throws ExecutionException, InterruptedException {
+        final KeyedRateLimitingStrategy<HttpRequest> strategy = KeyedRateLimitingStrategy.byHeader("x-client-id", 1, 1);
+
+        assertThat(accept(strategy, "a"), equalTo(true));
+        assertThat(accept(strategy, "a"), equalTo(false));
+        assertThat(accept(strategy, "b"), equalTo(true));
+    }
+
+    private KeyedRateLimitingStrategy<HttpRequest> newStrategy(final int burst, final int maxKeys) {
+        return new KeyedRateLimitingStrategy<>(ctx -> "", 1, burst, SECOND, maxKeys, now::get);
+    }
+
+    private static boolean accept(final KeyedRateLimitingStrategy<HttpRequest> strategy, final String clientId)
+            throws ExecutionException, InterruptedException {
+        final HttpRequest request = HttpRequest.of(RequestHeaders.builder(HttpMethod.GET, "/")
+                .add("x-client-id", clientId)
+                .build());
+        final ServiceRequestContext ctx = ServiceRequestContext.of(request);
+        return strategy.accept(ctx, request).toCompletableFuture().get();
+    }
+}
@@ -0,0 +1,37 @@
+package io.venable.samples.armeria.throttling;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MessageRateLimitTest {
+
+    private final AtomicLong ticker = new AtomicLong();
+    private final MessageRateLimit rateLimit = MessageRateLimit.of(10, 2);
+
+    @Test
+    void gives_every_connection_its_own_burst() {
+        final MessageRateLimit.Limiter first = rateLimit.newLimiter(ticker::get);
+        final MessageRateLimit.Limiter second = rateLimit.newLimiter(ticker::get);
+
+        assertThat(first.tryAcquire(), equalTo(true));
+        assertThat(first.tryAcquire(), equalTo(true));
+        assertThat(first.tryAcquire(), equalTo(false));
+        assertThat(second.tryAcquire(), equalTo(true));
+
+        ticker.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        assertThat(first.tryAcquire(), equalTo(true));
+        assertThat(first.tryAcquire(), equalTo(false));
+    }
+
+    @Test
+    void rejects_invalid_rates() {
+        assertThrows(IllegalArgumentException.class, () -> MessageRateLimit.of(0, 1));
+        assertThrows(IllegalArgumentException.class, () -> MessageRateLimit.of(1, 0));
+    }
+}
@@ -0,0 +1,53 @@
+package io.venable.samples.armeria.throttling;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+class TokenBucketTest {
+
+    private static final long INTERVAL = 100;
+
+    @Test
+    void allows_burst_then_one_permit_per_interval() {
+        final TokenBucket bucket = new TokenBucket(INTERVAL, 3 * INTERVAL, 0);
+
+        assertThat(bucket.tryAcquire(0), equalTo(true));
+        assertThat(bucket.tryAcquire(0), equalTo(true));
+        assertThat(bucket.tryAcquire(0), equalTo(true));
+        assertThat(bucket.tryAcquire(0), equalTo(false));
+
+        assertThat(bucket.tryAcquire(INTERVAL - 1), equalTo(false));
+        assertThat(bucket.tryAcquire(INTERVAL), equalTo(true));
+        assertThat(bucket.tryAcquire(INTERVAL), equalTo(false));
+    }
+
+    @Test
+    void is_idle_once_refilled_for_the_idle_time() {
+        final TokenBucket bucket = new TokenBucket(INTERVAL, 3 * INTERVAL, 0);
+        bucket.tryAcquire(0);
+        bucket.tryAcquire(0);
+
+        assertThat(bucket.isIdle(2 * INTERVAL - 1, 0), equalTo(false));
+        assertThat(bucket.isIdle(2 * INTERVAL, 0), equalTo(true));
+        assertThat(bucket.isIdle(2 * INTERVAL, 1_000), equalTo(false));
+        assertThat(bucket.isIdle(2 * INTERVAL + 1_000, 1_000), equalTo(true));
+    }
+
+    @Test
+    void retires_only_when_idle_and_then_refuses_permits() {
+        final TokenBucket bucket = new TokenBucket(INTERVAL, 3 * INTERVAL, 0);
+        bucket.tryAcquire(0);
+
+        assertThat(bucket.retire(INTERVAL - 1, 0), equalTo(false));
+        assertThat(bucket.tryAcquire(INTERVAL - 1), equalTo(true));
+        assertThat(bucket.retire(INTERVAL, 0), equalTo(false));
+        assertThat(bucket.retire(2 * INTERVAL, 0), equalTo(true));
+
+        assertThat(bucket.isRetired(), equalTo(true));
+        assertThat(bucket.isIdle(10 * INTERVAL, 0), equalTo(false));
+        assertThat(bucket.tryAcquire(10 * INTERVAL), equalTo(false));
+        assertThat(bucket.retire(10 * INTERVAL, 0), equalTo(true));
+    }
+}
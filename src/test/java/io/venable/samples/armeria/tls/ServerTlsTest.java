@@ -0,0 +1,142 @@
+package io.venable.samples.armeria.tls;
+
+import com.linecorp.armeria.common.HttpResponse;
+import com.linecorp.armeria.common.util.TlsEngineType;
+import com.linecorp.armeria.server.Server;
+import com.linecorp.armeria.server.ServerBuilder;
+import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.GeneralSecurityException;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+class ServerTlsTest {
+
+    private static final Path CERTIFICATE = Paths.get("src/test/resources/cert.pem");
+    private static final Path KEY = Paths.get("src/test/resources/key.pem");
+    private static final Path ALT_CERTIFICATE = Paths.get("src/test/resources/alt-cert.pem");
+    private static final Path ALT_KEY = Paths.get("src/test/resources/alt-key.pem");
+    private static final int PORT = 8446;
+    private static final String BODY = "Hello, Armeria!";
+
+    @Test
+    void reloads_changed_certificate_without_restart(@TempDir final Path directory) throws Exception {
+        final Path certificate = directory.resolve("cert.pem");
+        final Path key = directory.resolve("key.pem");
+        Files.copy(CERTIFICATE, certificate);
+        Files.copy(KEY, key);
+
+        final Server server = newServer(ServerTls.of(certificate, key, Duration.ofMillis(50)));
+        try {
+            assertThat(peerSubject(newClientContext(), "TLSv1.3"), containsString("CN=localhost"));
+
+            // A key which does not match the certificate is rejected and the old pair stays in use.
+            replace(ALT_KEY, key);
+            TimeUnit.MILLISECONDS.sleep(200);
+            assertThat(peerSubject(newClientContext(), "TLSv1.3"), containsString("CN=localhost"));
+
+            replace(ALT_CERTIFICATE, certificate);
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            String subject;
+            do {
+                TimeUnit.MILLISECONDS.sleep(50);
+                subject = peerSubject(newClientContext(), "TLSv1.3");
+            } while (subject.contains("CN=localhost") && System.nanoTime() < deadline);
+            assertThat(subject, containsString("CN=none"));
+        } finally {
+            server.stop().join();
+        }
+    }
+
+    @Test
+    void resumes_TLS_1_2_sessions_with_OpenSSL() throws Exception {
+        final ServerTls serverTls = ServerTls.of(CERTIFICATE, KEY);
+        assertThat(serverTls.engineType(), equalTo(TlsEngineType.OPENSSL));
+        assertResumes(serverTls);
+    }
+
+    @Test
+    void resumes_TLS_1_2_sessions_with_JDK() throws Exception {
+        assertResumes(ServerTls.of(CERTIFICATE, KEY).withEngineType(TlsEngineType.JDK));
+    }
+
+    private static void assertResumes(final ServerTls serverTls) throws Exception {
+        final Server server = newServer(serverTls);
+        try {
+            final SSLContext clientContext = newClientContext();
+            final byte[] first = handshake(clientContext, "TLSv1.2").getId();
+            final byte[] second = handshake(clientContext, "TLSv1.2").getId();
+            assertThat(Arrays.equals(first, second), equalTo(true));
+        } finally {
+            server.stop().join();
+        }
+    }
+
+    private static Server newServer(final ServerTls serverTls) {
+        final ServerBuilder serverBuilder = Server.builder().https(PORT);
+        serverTls.applyTo(serverBuilder);
+        final Server server = serverBuilder.service("/", (ctx, req) -> HttpResponse.of(BODY)).build();
+        server.start().join();
+        return server;
+    }
+
+    private static void replace(final Path source, final Path target) throws IOException {
+        final FileTime previous = Files.getLastModifiedTime(target);
+        Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+        // Make sure the change is visible even on file systems with a coarse modification time.
+        Files.setLastModifiedTime(target, FileTime.fromMillis(previous.toMillis() + 1000));
+    }
+
+    private static SSLContext newClientContext() throws GeneralSecurityException {
+        final SSLContext clientContext = SSLContext.getInstance("TLS");
+        clientContext.init(null, InsecureTrustManagerFactory.INSTANCE.getTrustManagers(), null);
+        return clientContext;
+    }
+
+    private static String peerSubject(final SSLContext clientContext, final String protocol) throws IOException {
+        final SSLSession session = handshake(clientContext, protocol);
+        return ((X509Certificate) session.getPeerCertificates()[0]).getSubjectX500Principal().getName();
+    }
+
+    /**
+     * Sends one request and reads the response, so that the session is complete before it is returned.
+     */
+    private static SSLSession handshake(final SSLContext clientContext, final String protocol) throws IOException {
+        try (SSLSocket socket = (SSLSocket) clientContext.getSocketFactory().createSocket("127.0.0.1", PORT)) {
+            socket.setEnabledProtocols(new String[] { protocol });
+            final OutputStream out = socket.getOutputStream();
+            out.write("GET / HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n"
+                              .getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            final InputStream in = socket.getInputStream();
+            final StringBuilder response = new StringBuilder();
+            final byte[] buffer = new byte[1024];
+            int read;
+            // Stop at the body; the server would only close the connection after its close_notify timeout.
+            while (response.indexOf(BODY) < 0 && (read = in.read(buffer)) >= 0) {
+                response.append(new String(buffer, 0, read, StandardCharsets.US_ASCII));
+            }
+            return socket.getSession();
+        }
+    }
+}